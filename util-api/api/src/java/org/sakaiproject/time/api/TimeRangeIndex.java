@@ -0,0 +1,70 @@
+/**********************************************************************************
+ * $URL$
+ * $Id$
+ ***********************************************************************************
+ *
+ * Copyright (c) 2007 The Sakai Foundation.
+ * 
+ * Licensed under the Educational Community License, Version 1.0 (the "License"); 
+ * you may not use this file except in compliance with the License. 
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.opensource.org/licenses/ecl1.php
+ * 
+ * Unless required by applicable law or agreed to in writing, software 
+ * distributed under the License is distributed on an "AS IS" BASIS, 
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. 
+ * See the License for the specific language governing permissions and 
+ * limitations under the License.
+ *
+ **********************************************************************************/
+
+package org.sakaiproject.time.api;
+
+import java.util.List;
+
+/**
+ * <p>
+ * TimeRangeIndex is a set of TimeRanges, indexed to quickly find those that contain a time, contain a range, or overlap a range. Each range
+ * is indexed by the times actually in it (its firstTime() through its lastTime()), so included and excluded ends are honored.
+ * </p>
+ * <p>
+ * The index is built once from its ranges; changing a range after it is indexed does not move it in the index.
+ * </p>
+ */
+public interface TimeRangeIndex
+{
+	/**
+	 * Find the ranges that contain this time.
+	 * 
+	 * @param time
+	 *        The time.
+	 * @return The ranges (TimeRange) that contain the time, in order of first time (may be empty).
+	 */
+	List getContaining(Time time);
+
+	/**
+	 * Find the ranges that completely contain this range.
+	 * 
+	 * @param range
+	 *        The range.
+	 * @return The ranges (TimeRange) that contain every time in the range, in order of first time (may be empty).
+	 */
+	List getContaining(TimeRange range);
+
+	/**
+	 * Find the ranges that overlap this range.
+	 * 
+	 * @param range
+	 *        The range.
+	 * @return The ranges (TimeRange) that share at least one time with the range, in order of first time (may be empty).
+	 */
+	List getOverlapping(TimeRange range);
+
+	/**
+	 * Access the number of ranges in the index.
+	 * 
+	 * @return The number of ranges.
+	 */
+	int size();
+}
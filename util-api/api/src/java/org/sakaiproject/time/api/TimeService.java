@@ -21,6 +21,9 @@
 
 package org.sakaiproject.time.api;
 
+import java.io.IOException;
+import java.io.Writer;
+import java.util.Collection;
 import java.util.GregorianCalendar;
 import java.util.TimeZone;
 
@@ -37,6 +40,30 @@ public interface TimeService
 	/** Preferences key for user's time zone */
 	public static final String TIMEZONE_KEY = "timezone";
 
+	/** formatLocal() style: as Time.toStringLocal(). */
+	public static final int FORMAT_LOCAL = 0;
+
+	/** formatLocal() style: as Time.toStringLocalFull(). */
+	public static final int FORMAT_LOCAL_FULL = 1;
+
+	/** formatLocal() style: as Time.toStringLocalFullZ(). */
+	public static final int FORMAT_LOCAL_FULL_Z = 2;
+
+	/** formatLocal() style: as Time.toStringLocalShort() and Time.toStringLocalTime(). */
+	public static final int FORMAT_LOCAL_TIME = 3;
+
+	/** formatLocal() style: as Time.toStringLocalTimeZ(). */
+	public static final int FORMAT_LOCAL_TIME_Z = 4;
+
+	/** formatLocal() style: as Time.toStringLocalTime24(). */
+	public static final int FORMAT_LOCAL_TIME_24 = 5;
+
+	/** formatLocal() style: as Time.toStringLocalDate(). */
+	public static final int FORMAT_LOCAL_DATE = 6;
+
+	/** formatLocal() style: as Time.toStringLocalShortDate(). */
+	public static final int FORMAT_LOCAL_SHORT_DATE = 7;
+
 	/**
 	 * Get a time object.
 	 * 
@@ -205,6 +232,59 @@ public interface TimeService
 	 */
 	TimeRange newTimeRange(Time start, Time end);
 
+	/**
+	 * Get a TimeRangeIndex over these ranges, to find those that contain a time or overlap a range without checking each one.
+	 * 
+	 * @param ranges
+	 *        The TimeRanges to index.
+	 * @return A TimeRangeIndex.
+	 */
+	TimeRangeIndex newTimeRangeIndex(Collection ranges);
+
+	/**
+	 * Format many times in the current user's time zone and locale, looking those up once for them all.
+	 * 
+	 * @param times
+	 *        The times, in ms since the epoch.
+	 * @param style
+	 *        The format: one of the FORMAT_LOCAL... values.
+	 * @return The formatted times, in the same order.
+	 * @throws IllegalArgumentException
+	 *         if the style is not one of ours.
+	 */
+	String[] formatLocal(long[] times, int style);
+
+	/**
+	 * Format many times in the current user's time zone and locale, looking those up once for them all.
+	 * 
+	 * @param times
+	 *        The times (Time, or Long ms since the epoch).
+	 * @param style
+	 *        The format: one of the FORMAT_LOCAL... values.
+	 * @return The formatted times, in the collection's order.
+	 * @throws IllegalArgumentException
+	 *         if the style is not one of ours.
+	 */
+	String[] formatLocal(Collection times, int style);
+
+	/**
+	 * Format many times in the current user's time zone and locale, looking those up once for them all, writing them out.
+	 * 
+	 * @param times
+	 *        The times, in ms since the epoch.
+	 * @param style
+	 *        The format: one of the FORMAT_LOCAL... values.
+	 * @param separator
+	 *        What to write between the times (may be null for nothing).
+	 * @param out
+	 *        Where to write them.
+	 * @throws IOException
+	 *         if writing fails.
+	 * @throws IllegalArgumentException
+	 *         if the style is not one of ours.
+	 */
+	void formatLocal(long[] times, int style, String separator, Writer out) throws IOException;
+
 	/**
 	 * Access the local TimeZone.
 	 * 
@@ -213,8 +293,11 @@ public interface TimeService
 	TimeZone getLocalTimeZone();
 
 	/**
-	 * Clear local time zone for specified user
+	 * Clear local time zone for specified user, and the time zone / locale found for the current request. Call it when a user's time zone or
+	 * locale preference changes, and when the current request's user changes (login, logout).
 	 * 
+	 * @param userId
+	 *        The user (may be null, to clear only the current request's).
 	 * @return true if successful
 	 */
 	boolean clearLocalTimeZone(String userId);
@@ -34,6 +34,22 @@ public class TimeService
 
 	public static java.lang.String TIMEZONE_KEY = org.sakaiproject.time.api.TimeService.TIMEZONE_KEY;
 
+	public static int FORMAT_LOCAL = org.sakaiproject.time.api.TimeService.FORMAT_LOCAL;
+
+	public static int FORMAT_LOCAL_FULL = org.sakaiproject.time.api.TimeService.FORMAT_LOCAL_FULL;
+
+	public static int FORMAT_LOCAL_FULL_Z = org.sakaiproject.time.api.TimeService.FORMAT_LOCAL_FULL_Z;
+
+	public static int FORMAT_LOCAL_TIME = org.sakaiproject.time.api.TimeService.FORMAT_LOCAL_TIME;
+
+	public static int FORMAT_LOCAL_TIME_Z = org.sakaiproject.time.api.TimeService.FORMAT_LOCAL_TIME_Z;
+
+	public static int FORMAT_LOCAL_TIME_24 = org.sakaiproject.time.api.TimeService.FORMAT_LOCAL_TIME_24;
+
+	public static int FORMAT_LOCAL_DATE = org.sakaiproject.time.api.TimeService.FORMAT_LOCAL_DATE;
+
+	public static int FORMAT_LOCAL_SHORT_DATE = org.sakaiproject.time.api.TimeService.FORMAT_LOCAL_SHORT_DATE;
+
 	/**
 	 * Access the component instance: special cover only method.
 	 * 
@@ -165,6 +181,39 @@ public class TimeService
 		return service.newTime();
 	}
 
+	public static org.sakaiproject.time.api.TimeRangeIndex newTimeRangeIndex(java.util.Collection param0)
+	{
+		org.sakaiproject.time.api.TimeService service = getInstance();
+		if (service == null) return null;
+
+		return service.newTimeRangeIndex(param0);
+	}
+
+	public static java.lang.String[] formatLocal(long[] param0, int param1)
+	{
+		org.sakaiproject.time.api.TimeService service = getInstance();
+		if (service == null) return null;
+
+		return service.formatLocal(param0, param1);
+	}
+
+	public static java.lang.String[] formatLocal(java.util.Collection param0, int param1)
+	{
+		org.sakaiproject.time.api.TimeService service = getInstance();
+		if (service == null) return null;
+
+		return service.formatLocal(param0, param1);
+	}
+
+	public static void formatLocal(long[] param0, int param1, java.lang.String param2, java.io.Writer param3)
+			throws java.io.IOException
+	{
+		org.sakaiproject.time.api.TimeService service = getInstance();
+		if (service == null) return;
+
+		service.formatLocal(param0, param1, param2, param3);
+	}
+
 	public static java.util.TimeZone getLocalTimeZone()
 	{
 		org.sakaiproject.time.api.TimeService service = getInstance();
@@ -21,20 +21,28 @@
 
 package org.sakaiproject.time.impl;
 
+import java.io.IOException;
+import java.io.Writer;
 import java.text.DateFormat;
+import java.text.FieldPosition;
 import java.text.SimpleDateFormat;
+import java.util.Collection;
+import java.util.Date;
 import java.util.GregorianCalendar;
-import java.util.Hashtable;
+import java.util.Iterator;
 import java.util.Locale;
-import java.util.StringTokenizer;
 import java.util.TimeZone;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.sakaiproject.entity.api.ResourceProperties;
+import org.sakaiproject.thread_local.api.ThreadLocalManager;
 import org.sakaiproject.time.api.Time;
 import org.sakaiproject.time.api.TimeBreakdown;
 import org.sakaiproject.time.api.TimeRange;
+import org.sakaiproject.time.api.TimeRangeIndex;
 import org.sakaiproject.time.api.TimeService;
 import org.sakaiproject.tool.cover.SessionManager;
 import org.sakaiproject.user.api.Preferences;
@@ -60,25 +68,55 @@ public class BasicTimeService implements TimeService
 	protected GregorianCalendar M_GCal = null;
 
 	/**
-	 * The formatter for our special GMT format(s)
+	 * The formatter for our special GMT format(s) - a copy per thread, so they are used without locking
 	 */
-	protected DateFormat M_fmtA = null;
+	protected ThreadLocalDateFormat M_fmtA = null;
 
-	protected DateFormat M_fmtB = null;
+	protected ThreadLocalDateFormat M_fmtB = null;
 
-	protected DateFormat M_fmtC = null;
+	protected ThreadLocalDateFormat M_fmtC = null;
 
-	protected DateFormat M_fmtD = null;
+	protected ThreadLocalDateFormat M_fmtD = null;
 
-	protected DateFormat M_fmtE = null;
+	protected ThreadLocalDateFormat M_fmtE = null;
 
-	protected DateFormat M_fmtG = null;
+	protected ThreadLocalDateFormat M_fmtG = null;
 
-	// Map of Timezone/Locales to LocalTzFormat objects
-	private Hashtable M_localeTzMap = new Hashtable();
+	/**
+	 * Arithmetic formatting / parsing for formats A and E, the timestamps we store
+	 */
+	protected GmtTimestampFormat M_gmtA = null;
+
+	protected GmtTimestampFormat M_gmtE = null;
+
+	/**
+	 * The RFC 822 format for toStringRFC822Local() - in the server's time zone and locale
+	 */
+	protected Rfc822Format M_rfc822 = null;
+
+	// Map of Timezone ids to maps of Locale ids to LocalTzFormat objects
+	private ConcurrentHashMap M_localeTzMap = new ConcurrentHashMap();
+
+	// How many LocalTzFormat objects are in M_localeTzMap
+	private AtomicInteger M_localeTzCount = new AtomicInteger();
+
+	// The most LocalTzFormat objects we keep - far more than the time zone / locale pairs in use
+	protected static final int MAX_LOCAL_TZ_FORMATS = 2000;
+
+	// Map of TimeZones to their ZoneOffsetTables
+	private ConcurrentHashMap M_zoneOffsets = new ConcurrentHashMap();
+
+	// The most ZoneOffsetTables we keep - far more than the time zones in use
+	protected static final int MAX_ZONE_OFFSET_TABLES = 1000;
+
+	// How many characters formatLocal() gathers before writing them out
+	protected static final int FORMAT_BUFFER_SIZE = 4096;
 
-	// Map of userIds to Timezone/Locales
-	private Hashtable M_userTzMap = new Hashtable();
+	// ThreadLocalManager binding name for the current request's LocalTzFormat
+	protected static final String USER_TZ_LOCALE = BasicTimeService.class.getName() + ".userTzLocale";
+
+	// Cache of userIds to Timezone/Locales
+	protected ExpiringCache M_userTzMap = null;
 
 	// Default Timezone/Locale
    protected String[] M_tz_locale_default = new String[] { TimeZone.getDefault().getID(), Locale.getDefault().toString() };
@@ -90,6 +128,76 @@ public class BasicTimeService implements TimeService
 	 * Dependencies and their setter methods
 	 *********************************************************************************************************************************************************************************************************************************************************/
 
+	/** Dependency: ThreadLocalManager (optional - without it nothing is kept for the request). */
+	protected ThreadLocalManager m_threadLocalManager = null;
+
+	/**
+	 * Dependency: ThreadLocalManager, to keep the current user's time zone / locale for the rest of the request.
+	 * 
+	 * @param manager
+	 *        The ThreadLocalManager.
+	 */
+	public void setThreadLocalManager(ThreadLocalManager manager)
+	{
+		m_threadLocalManager = manager;
+	}
+
+	/** The most users whose time zone / locale we cache. */
+	protected int m_userCacheSize = 10000;
+
+	/**
+	 * Configuration: the most users whose time zone / locale we cache.
+	 * 
+	 * @param value
+	 *        The cache size.
+	 */
+	public void setUserCacheSize(int value)
+	{
+		m_userCacheSize = value;
+	}
+
+	/** How long (seconds) we cache a user's time zone / locale, so changes made elsewhere are seen (0 for no limit). */
+	protected int m_userCacheSeconds = 3600;
+
+	/**
+	 * Configuration: how long (seconds) we cache a user's time zone / locale (0 for no limit).
+	 * 
+	 * @param value
+	 *        The time to live, in seconds.
+	 */
+	public void setUserCacheSeconds(int value)
+	{
+		m_userCacheSeconds = value;
+	}
+
+	/** The first year of the time zone offset tables. */
+	protected int m_offsetFirstYear = 1970;
+
+	/**
+	 * Configuration: the first year covered by the time zone offset tables; local times outside the tables go to the TimeZone.
+	 * 
+	 * @param value
+	 *        The year.
+	 */
+	public void setOffsetFirstYear(int value)
+	{
+		m_offsetFirstYear = value;
+	}
+
+	/** The last year of the time zone offset tables. */
+	protected int m_offsetLastYear = 2037;
+
+	/**
+	 * Configuration: the last year covered by the time zone offset tables; local times outside the tables go to the TimeZone.
+	 * 
+	 * @param value
+	 *        The year.
+	 */
+	public void setOffsetLastYear(int value)
+	{
+		m_offsetLastYear = value;
+	}
+
 	/**********************************************************************************************************************************************************************************************************************************************************
 	 * Init and Destroy
 	 *********************************************************************************************************************************************************************************************************************************************************/
@@ -102,7 +210,10 @@ public class BasicTimeService implements TimeService
 		/** The time zone for our GMT times. */
 		M_tz = TimeZone.getTimeZone("GMT");
 
-		M_log.info("init()");
+		M_userTzMap = new ExpiringCache(m_userCacheSize, m_userCacheSeconds * 1000L);
+
+		M_log.info("init(): user cache size: " + m_userCacheSize + " seconds: " + m_userCacheSeconds + " offset years: "
+				+ m_offsetFirstYear + " - " + m_offsetLastYear);
 
 		/**
 		 * a calendar to clone for GMT time construction
@@ -110,19 +221,31 @@ public class BasicTimeService implements TimeService
 		M_GCal = getCalendar(M_tz, 0, 0, 0, 0, 0, 0, 0);
 
 		// Note: formatting for GMT time representations
-		M_fmtA = (DateFormat)(new SimpleDateFormat("yyyyMMddHHmmssSSS"));
-		M_fmtB = DateFormat.getDateTimeInstance(DateFormat.MEDIUM, DateFormat.SHORT);
-		M_fmtC = DateFormat.getTimeInstance(DateFormat.SHORT);
-		M_fmtD = DateFormat.getDateInstance(DateFormat.MEDIUM);
-		M_fmtE = (DateFormat)(new SimpleDateFormat("yyyyMMddHHmmss"));
-		M_fmtG = (DateFormat)(new SimpleDateFormat("yyyy/DDD/HH/")); // that's year, day of year, hour
-
-		M_fmtA.setTimeZone(M_tz);
-		M_fmtB.setTimeZone(M_tz);
-		M_fmtC.setTimeZone(M_tz);
-		M_fmtD.setTimeZone(M_tz);
-		M_fmtE.setTimeZone(M_tz);
-		M_fmtG.setTimeZone(M_tz);
+		DateFormat fmtA = (DateFormat)(new SimpleDateFormat("yyyyMMddHHmmssSSS"));
+		DateFormat fmtB = DateFormat.getDateTimeInstance(DateFormat.MEDIUM, DateFormat.SHORT);
+		DateFormat fmtC = DateFormat.getTimeInstance(DateFormat.SHORT);
+		DateFormat fmtD = DateFormat.getDateInstance(DateFormat.MEDIUM);
+		DateFormat fmtE = (DateFormat)(new SimpleDateFormat("yyyyMMddHHmmss"));
+		DateFormat fmtG = (DateFormat)(new SimpleDateFormat("yyyy/DDD/HH/")); // that's year, day of year, hour
+
+		fmtA.setTimeZone(M_tz);
+		fmtB.setTimeZone(M_tz);
+		fmtC.setTimeZone(M_tz);
+		fmtD.setTimeZone(M_tz);
+		fmtE.setTimeZone(M_tz);
+		fmtG.setTimeZone(M_tz);
+
+		M_fmtA = new ThreadLocalDateFormat(fmtA);
+		M_fmtB = new ThreadLocalDateFormat(fmtB);
+		M_fmtC = new ThreadLocalDateFormat(fmtC);
+		M_fmtD = new ThreadLocalDateFormat(fmtD);
+		M_fmtE = new ThreadLocalDateFormat(fmtE);
+		M_fmtG = new ThreadLocalDateFormat(fmtG);
+
+		M_gmtA = new GmtTimestampFormat(M_fmtA, true);
+		M_gmtE = new GmtTimestampFormat(M_fmtE, false);
+
+		M_rfc822 = new Rfc822Format(TimeZone.getDefault(), Locale.getDefault());
 	}
 
 	/**
@@ -130,7 +253,27 @@ public class BasicTimeService implements TimeService
 	 */
 	public void destroy()
 	{
-		M_log.info("destroy()");
+		M_log.info("destroy(): user cache " + M_userTzMap);
+	}
+
+	/**
+	 * Find the formats for the current user's time zone and locale. The user's are found once per request and kept with the request
+	 * (through the ThreadLocalManager, which drops them when the request ends); later calls in the request use them without looking at the
+	 * session. If the request's user changes (login, logout), clearLocalTimeZone() makes the next call find them again.
+	 * 
+	 * @return The LocalTzFormat for the current user.
+	 */
+	protected LocalTzFormat getUserLocalTzFormat()
+	{
+		if (m_threadLocalManager == null) return getLocalTzFormat(getUserTimezoneLocale());
+
+		LocalTzFormat tzFormat = (LocalTzFormat) m_threadLocalManager.get(USER_TZ_LOCALE);
+		if (tzFormat != null) return tzFormat;
+
+		tzFormat = getLocalTzFormat(getUserTimezoneLocale());
+		m_threadLocalManager.set(USER_TZ_LOCALE, tzFormat);
+
+		return tzFormat;
 	}
 
    /** Return string with user's prefered timezone _and_ prefered locale
@@ -163,19 +306,114 @@ public class BasicTimeService implements TimeService
 		return timeZoneLocale;
 	}
 
+	/**
+	 * Access the user time zone / locale cache, for its size and hit, miss, eviction and expiration counts.
+	 * 
+	 * @return The user time zone / locale cache.
+	 */
+	public ExpiringCache getUserTimezoneCache()
+	{
+		return M_userTzMap;
+	}
+
+	/**
+	 * Find the formats for this time zone and locale, making them the first time the pair is asked for.
+	 * 
+	 * @param timeZoneLocale
+	 *        The time zone id and locale id.
+	 * @return The LocalTzFormat for the pair.
+	 */
 	protected LocalTzFormat getLocalTzFormat(String[] timeZoneLocale)
 	{
-		LocalTzFormat tzFormat = (LocalTzFormat) M_localeTzMap.get(timeZoneLocale);
+		ConcurrentHashMap locales = (ConcurrentHashMap) M_localeTzMap.get(timeZoneLocale[0]);
+		if (locales == null)
+		{
+			locales = new ConcurrentHashMap();
+			ConcurrentHashMap existing = (ConcurrentHashMap) M_localeTzMap.putIfAbsent(timeZoneLocale[0], locales);
+			if (existing != null) locales = existing;
+		}
 
+		LocalTzFormat tzFormat = (LocalTzFormat) locales.get(timeZoneLocale[1]);
 		if (tzFormat == null)
 		{
 			tzFormat = new LocalTzFormat(timeZoneLocale[0], timeZoneLocale[1]);
-			M_localeTzMap.put(timeZoneLocale, tzFormat);
+			LocalTzFormat existing = (LocalTzFormat) locales.putIfAbsent(timeZoneLocale[1], tzFormat);
+			if (existing != null) return existing;
+
+			// if something is asking for an unreasonable number of pairs, start over rather than grow without bound
+			if (M_localeTzCount.incrementAndGet() > MAX_LOCAL_TZ_FORMATS)
+			{
+				M_log.warn("getLocalTzFormat: more than " + MAX_LOCAL_TZ_FORMATS + " time zone / locale pairs, clearing");
+				M_localeTzMap.clear();
+				M_localeTzCount.set(0);
+			}
 		}
 
 		return tzFormat;
 	}
 
+	/**
+	 * Find the offset table for this time zone, making it the first time the zone is asked for.
+	 * 
+	 * @param zone
+	 *        The time zone.
+	 * @return The ZoneOffsetTable for the zone.
+	 */
+	protected ZoneOffsetTable getZoneOffsetTable(TimeZone zone)
+	{
+		// TimeZones are equal when their ids and rules are
+		ZoneOffsetTable table = (ZoneOffsetTable) M_zoneOffsets.get(zone);
+		if (table == null)
+		{
+			if (M_zoneOffsets.size() >= MAX_ZONE_OFFSET_TABLES)
+			{
+				M_log.warn("getZoneOffsetTable: more than " + MAX_ZONE_OFFSET_TABLES + " time zones, clearing");
+				M_zoneOffsets.clear();
+			}
+
+			table = new ZoneOffsetTable(zone, m_offsetFirstYear, m_offsetLastYear);
+			ZoneOffsetTable existing = (ZoneOffsetTable) M_zoneOffsets.putIfAbsent(table.getZone(), table);
+			if (existing != null) table = existing;
+		}
+
+		return table;
+	}
+
+	/**
+	 * Find the time of a local date and time in a zone, as getCalendar(zone, ...).getTimeInMillis() would.
+	 * 
+	 * @param zone
+	 *        The time zone.
+	 * @param year
+	 *        full year (i.e. 1999, 2000)
+	 * @param month
+	 *        month in year (1..12)
+	 * @param day
+	 *        day in month (1..31)
+	 * @param hour
+	 *        hour in day (0..23)
+	 * @param minute
+	 *        minute in hour (0..59)
+	 * @param second
+	 *        second in minute (0..59)
+	 * @param millisecond
+	 *        millisecond in second (0..999)
+	 * @return The time, in ms since the epoch.
+	 */
+	protected long toUtc(TimeZone zone, int year, int month, int day, int hour, int minute, int second, int millisecond)
+	{
+		// the offset table, for dates in its years (out of range days, hours and such carry over as the lenient calendar's do)
+		if ((month >= 1) && (month <= 12) && (year >= m_offsetFirstYear) && (year <= m_offsetLastYear))
+		{
+			long wall = GmtTimestampFormat.daysFromCivil(year, month, day) * GmtTimestampFormat.MS_PER_DAY + hour * 3600000L + minute
+					* 60000L + second * 1000L + millisecond;
+			ZoneOffsetTable table = getZoneOffsetTable(zone);
+			if (table.covers(wall)) return table.toUtc(wall);
+		}
+
+		return getCalendar(zone, year, month - 1, day, hour, minute, second, millisecond).getTimeInMillis();
+	}
+
 	/**********************************************************************************************************************************************************************************************************************************************************
 	 * Work interface methods: org.sakai.service.time.TimeService
 	 *********************************************************************************************************************************************************************************************************************************************************/
@@ -240,7 +478,7 @@ public class BasicTimeService implements TimeService
 	 */
 	public Time newTimeLocal(int year, int month, int day, int hour, int minute, int second, int millisecond)
 	{
-		TimeZone tz_local = getLocalTzFormat(getUserTimezoneLocale()).M_tz_local;
+		TimeZone tz_local = getUserLocalTzFormat().M_tz_local;
 		return new MyTime(this,tz_local, year, month, day, hour, minute, second, millisecond);
 	}
 
@@ -249,7 +487,7 @@ public class BasicTimeService implements TimeService
 	 */
 	public Time newTimeLocal(TimeBreakdown breakdown)
 	{
-		TimeZone tz_local = getLocalTzFormat(getUserTimezoneLocale()).M_tz_local;
+		TimeZone tz_local = getUserLocalTzFormat().M_tz_local;
 		return new MyTime(this,tz_local, breakdown);
 	}
 
@@ -301,12 +539,192 @@ public class BasicTimeService implements TimeService
 		return new MyTimeRange(start, end);
 	}
 
+	/**
+	 * {@inheritDoc}
+	 */
+	public TimeRangeIndex newTimeRangeIndex(Collection ranges)
+	{
+		return new MyTimeRangeIndex(ranges);
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	public String[] formatLocal(long[] times, int style)
+	{
+		LocalBatch batch = new LocalBatch(getUserLocalTzFormat(), style);
+
+		// each time is formatted into the same buffer
+		StringBuffer buf = new StringBuffer(64);
+		String[] rv = new String[times.length];
+		for (int i = 0; i < times.length; i++)
+		{
+			buf.setLength(0);
+			batch.format(times[i], buf);
+			rv[i] = buf.toString();
+		}
+
+		return rv;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	public String[] formatLocal(Collection times, int style)
+	{
+		long[] values = new long[times.size()];
+		int i = 0;
+		for (Iterator it = times.iterator(); it.hasNext(); i++)
+		{
+			Object time = it.next();
+			values[i] = (time instanceof Time) ? ((Time) time).getTime() : ((Number) time).longValue();
+		}
+
+		return formatLocal(values, style);
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	public void formatLocal(long[] times, int style, String separator, Writer out) throws IOException
+	{
+		LocalBatch batch = new LocalBatch(getUserLocalTzFormat(), style);
+
+		// gather the formatted times in one buffer, writing it out as it fills
+		StringBuffer buf = new StringBuffer(FORMAT_BUFFER_SIZE + 64);
+		char[] chars = new char[FORMAT_BUFFER_SIZE + 64];
+		for (int i = 0; i < times.length; i++)
+		{
+			if ((i > 0) && (separator != null)) buf.append(separator);
+			batch.format(times[i], buf);
+
+			if ((buf.length() >= FORMAT_BUFFER_SIZE) || (i == times.length - 1))
+			{
+				if (chars.length < buf.length()) chars = new char[buf.length()];
+				buf.getChars(0, buf.length(), chars, 0);
+				out.write(chars, 0, buf.length());
+				buf.setLength(0);
+			}
+		}
+	}
+
+	/**
+	 * LocalBatch formats many times in one local time zone, locale and style, as the Time.toStringLocal... methods do. It picks out the
+	 * format, and this thread's copy of it, once for the whole batch, so it must be used only by the thread that made it.
+	 */
+	protected class LocalBatch
+	{
+		/** The local time zone and locale formats. */
+		protected final LocalTzFormat m_tzFormat;
+
+		/** This thread's copy of the style's format, or null for FORMAT_LOCAL. */
+		protected final DateFormat m_format;
+
+		/** If a trailing AM/PM is to be lowered, as MyTime.fix() does. */
+		protected final boolean m_fix;
+
+		/** Reused for each time. */
+		protected final Date m_date = new Date();
+
+		protected final FieldPosition m_position = new FieldPosition(0);
+
+		protected final char[] m_chars = new char[32];
+
+		/**
+		 * Construct.
+		 * 
+		 * @param tzFormat
+		 *        The local time zone and locale formats.
+		 * @param style
+		 *        The format: one of the TimeService FORMAT_LOCAL... values.
+		 */
+		protected LocalBatch(LocalTzFormat tzFormat, int style)
+		{
+			m_tzFormat = tzFormat;
+			m_fix = (style == FORMAT_LOCAL_FULL) || (style == FORMAT_LOCAL_TIME);
+			switch (style)
+			{
+				case FORMAT_LOCAL:
+					m_format = null;
+					break;
+				case FORMAT_LOCAL_FULL:
+					m_format = tzFormat.M_fmtBl.get();
+					break;
+				case FORMAT_LOCAL_FULL_Z:
+					m_format = tzFormat.M_fmtBlz.get();
+					break;
+				case FORMAT_LOCAL_TIME:
+					m_format = tzFormat.M_fmtCl.get();
+					break;
+				case FORMAT_LOCAL_TIME_Z:
+					m_format = tzFormat.M_fmtClz.get();
+					break;
+				case FORMAT_LOCAL_TIME_24:
+					m_format = tzFormat.M_fmtFl.get();
+					break;
+				case FORMAT_LOCAL_DATE:
+					m_format = tzFormat.M_fmtDl.get();
+					break;
+				case FORMAT_LOCAL_SHORT_DATE:
+					m_format = tzFormat.M_fmtD2.get();
+					break;
+				default:
+					throw new IllegalArgumentException("formatLocal: unknown style: " + style);
+			}
+		}
+
+		/**
+		 * Format a time onto the end of a buffer.
+		 * 
+		 * @param time
+		 *        The time, in ms since the epoch.
+		 * @param buf
+		 *        The buffer to append to.
+		 */
+		protected void format(long time, StringBuffer buf)
+		{
+			if (m_format == null)
+			{
+				// the GMT timestamp of the local wall clock time
+				int len = M_gmtA.format(time + m_tzFormat.M_offsets.getOffset(time), m_chars, 0);
+				buf.append(m_chars, 0, len);
+				return;
+			}
+
+			int start = buf.length();
+			m_date.setTime(time);
+			m_format.format(m_date, buf, m_position);
+			if (m_fix) fix(buf, start);
+		}
+	}
+
+	/**
+	 * Lower the case of a trailing AM/PM in the buffer, as MyTime.fix() does for a string.
+	 * 
+	 * @param buf
+	 *        The buffer.
+	 * @param start
+	 *        Where in the buffer the formatted time starts.
+	 */
+	protected void fix(StringBuffer buf, int start)
+	{
+		int len = buf.length();
+		if ((len - start < 2) || (buf.charAt(len - 1) != 'M')) return;
+
+		char c = buf.charAt(len - 2);
+		if ((c == 'A') || (c == 'P'))
+		{
+			buf.setCharAt(len - 2, Character.toLowerCase(c));
+			buf.setCharAt(len - 1, 'm');
+		}
+	}
+
 	/**
 	 * {@inheritDoc}
 	 */
 	public TimeZone getLocalTimeZone()
 	{
-		return getLocalTzFormat(getUserTimezoneLocale()).M_tz_local;
+		return getUserLocalTzFormat().M_tz_local;
 	}
 
 	/**
@@ -314,7 +732,11 @@ public class BasicTimeService implements TimeService
 	 */
 	public boolean clearLocalTimeZone(String userId)
 	{
-		M_userTzMap.remove(userId);
+		if (userId != null) M_userTzMap.remove(userId);
+
+		// the request's user may be the one changed, or may have just logged in or out: forget what the request has
+		if (m_threadLocalManager != null) m_threadLocalManager.set(USER_TZ_LOCALE, null);
+
 		return true;
 	}
 
@@ -366,22 +788,23 @@ public class BasicTimeService implements TimeService
 		// a calendar to clone for GMT time construction
 		public GregorianCalendar M_GCall = null;
 
-		// The formatter for our special local timezone format(s)
-		public DateFormat M_fmtAl = null;
+		// The offsets of our local timezone
+		public ZoneOffsetTable M_offsets = null;
 
-		public DateFormat M_fmtBl = null;
+		// The formatter for our special local timezone format(s) - a copy per thread, each thread keeping copies for a few time zone / locales
+		public ThreadCachedDateFormat M_fmtBl = null;
 
-		public DateFormat M_fmtBlz = null;
+		public ThreadCachedDateFormat M_fmtBlz = null;
 
-		public DateFormat M_fmtCl = null;
+		public ThreadCachedDateFormat M_fmtCl = null;
 
-		public DateFormat M_fmtClz = null;
+		public ThreadCachedDateFormat M_fmtClz = null;
 
-		public DateFormat M_fmtDl = null;
+		public ThreadCachedDateFormat M_fmtDl = null;
 
-		public DateFormat M_fmtD2 = null;
+		public ThreadCachedDateFormat M_fmtD2 = null;
 
-		public DateFormat M_fmtFl = null;
+		public ThreadCachedDateFormat M_fmtFl = null;
 
 		private LocalTzFormat()
 		{
@@ -398,24 +821,23 @@ public class BasicTimeService implements TimeService
          else
             M_locale = new Locale(langLoc[0]);
 
-			M_fmtAl = (DateFormat)(new SimpleDateFormat("yyyyMMddHHmmssSSS"));
-			M_fmtBl = DateFormat.getDateTimeInstance(DateFormat.MEDIUM, DateFormat.SHORT, M_locale);
-			M_fmtBlz = DateFormat.getDateTimeInstance(DateFormat.MEDIUM, DateFormat.LONG, M_locale);
-			M_fmtCl = DateFormat.getTimeInstance(DateFormat.SHORT, M_locale);
-			M_fmtClz = DateFormat.getTimeInstance(DateFormat.LONG, M_locale);
-			M_fmtDl = DateFormat.getDateInstance(DateFormat.MEDIUM, M_locale);
-			M_fmtD2 = DateFormat.getDateInstance(DateFormat.SHORT, M_locale);
-			M_fmtFl = (DateFormat)(new SimpleDateFormat("HH:mm:ss"));
+			DateFormat fmtBl = DateFormat.getDateTimeInstance(DateFormat.MEDIUM, DateFormat.SHORT, M_locale);
+			DateFormat fmtBlz = DateFormat.getDateTimeInstance(DateFormat.MEDIUM, DateFormat.LONG, M_locale);
+			DateFormat fmtCl = DateFormat.getTimeInstance(DateFormat.SHORT, M_locale);
+			DateFormat fmtClz = DateFormat.getTimeInstance(DateFormat.LONG, M_locale);
+			DateFormat fmtDl = DateFormat.getDateInstance(DateFormat.MEDIUM, M_locale);
+			DateFormat fmtD2 = DateFormat.getDateInstance(DateFormat.SHORT, M_locale);
+			DateFormat fmtFl = (DateFormat)(new SimpleDateFormat("HH:mm:ss"));
 
          // Strip the seconds from the Blz and Clz (default) formats         
          try
          {
-            SimpleDateFormat sdf = ((SimpleDateFormat)M_fmtBlz);
+            SimpleDateFormat sdf = ((SimpleDateFormat)fmtBlz);
             String pattern = sdf.toLocalizedPattern();
             pattern = pattern.replaceAll(":ss","");
             sdf.applyLocalizedPattern( pattern );
             
-            sdf = ((SimpleDateFormat)M_fmtClz);
+            sdf = ((SimpleDateFormat)fmtClz);
             pattern = sdf.toLocalizedPattern();
             pattern = pattern.replaceAll(":ss","");
             sdf.applyLocalizedPattern( pattern );
@@ -425,16 +847,25 @@ public class BasicTimeService implements TimeService
             // ignore -- not all locales support this
          }
          
-			M_fmtAl.setTimeZone(M_tz_local);
-			M_fmtBl.setTimeZone(M_tz_local);
-			M_fmtBlz.setTimeZone(M_tz_local);
-			M_fmtCl.setTimeZone(M_tz_local);
-			M_fmtClz.setTimeZone(M_tz_local);
-			M_fmtDl.setTimeZone(M_tz_local);
-			M_fmtD2.setTimeZone(M_tz_local);
-			M_fmtFl.setTimeZone(M_tz_local);
+			fmtBl.setTimeZone(M_tz_local);
+			fmtBlz.setTimeZone(M_tz_local);
+			fmtCl.setTimeZone(M_tz_local);
+			fmtClz.setTimeZone(M_tz_local);
+			fmtDl.setTimeZone(M_tz_local);
+			fmtD2.setTimeZone(M_tz_local);
+			fmtFl.setTimeZone(M_tz_local);
+
+			M_fmtBl = new ThreadCachedDateFormat(fmtBl);
+			M_fmtBlz = new ThreadCachedDateFormat(fmtBlz);
+			M_fmtCl = new ThreadCachedDateFormat(fmtCl);
+			M_fmtClz = new ThreadCachedDateFormat(fmtClz);
+			M_fmtDl = new ThreadCachedDateFormat(fmtDl);
+			M_fmtD2 = new ThreadCachedDateFormat(fmtD2);
+			M_fmtFl = new ThreadCachedDateFormat(fmtFl);
 
 			M_GCall = getCalendar(M_tz_local, 0, 0, 0, 0, 0, 0, 0);
+
+			M_offsets = getZoneOffsetTable(M_tz_local);
 		}
 	}
 
@@ -833,155 +1264,13 @@ public class BasicTimeService implements TimeService
 		{
 			try
 			{
-				// separate the string by '[]~-'
-				// (we do want the delimiters as tokens, thus the true param)
-				StringTokenizer tokenizer = new StringTokenizer(str, "[]~-", true);
-
-				int tokenCount = 0;
-				long startMs = -1;
-				long endMs = -1;
-				m_startTime = null;
-				m_endTime = null;
+				CompactTimeRange range = CompactTimeRange.parse(str, M_gmtA);
+				m_startTime = newTime(range.getStart());
 
-				while (tokenizer.hasMoreTokens())
-				{
-					tokenCount++;
-					String next = tokenizer.nextToken();
-
-					switch (tokenCount)
-					{
-						case 1:
-						{
-							if (next.charAt(0) == '=')
-							{
-								// use the rest as a duration in ms
-								startMs = Long.parseLong(next.substring(1));
-							}
-
-							else
-							{
-								m_startTime = newTimeGmt(next);
-							}
-
-						}
-							break;
-
-						case 2:
-						{
-							// set the inclusions
-							switch (next.charAt(0))
-							{
-								// start not included
-								case '[':
-								{
-									m_startIncluded = false;
-									m_endIncluded = true;
-
-								}
-									break;
-
-								// end not included
-								case ']':
-								{
-									m_startIncluded = true;
-									m_endIncluded = false;
-
-								}
-									break;
-
-								// neither included
-								case '~':
-								{
-									m_startIncluded = false;
-									m_endIncluded = false;
-
-								}
-									break;
-
-								// both included
-								case '-':
-								{
-									m_startIncluded = true;
-									m_endIncluded = true;
-
-								}
-									break;
-
-								// trouble!
-								default:
-								{
-									throw new Exception(next.charAt(0) + " invalid");
-								}
-							} // switch (next[0])
-
-						}
-							break;
-
-						case 3:
-						{
-							if (next.charAt(0) == '=')
-							{
-								// use the rest as a duration in ms
-								endMs = Long.parseLong(next.substring(1));
-							}
-
-							else
-							{
-								m_endTime = newTimeGmt(next);
-							}
-
-						}
-							break;
-
-						// trouble!
-						default:
-						{
-							throw new Exception(">3 tokens");
-						}
-					} // switch (tokenCount)
-
-				} // while (tokenizer.hasMoreTokens())
-
-				// if either start or end was in duration, adjust (but not both!)
-				if ((startMs != -1) && (endMs != -1))
-				{
-					throw new Exception("==");
-				}
-
-				if (startMs != -1)
-				{
-					if (m_endTime == null)
-					{
-						throw new Exception("=, * null");
-					}
-					m_startTime = newTime(m_endTime.getTime() - startMs);
-				}
-				else if (endMs != -1)
-				{
-					if (m_startTime == null)
-					{
-						throw new Exception("=, ! null");
-					}
-					m_endTime = newTime(m_startTime.getTime() + endMs);
-				}
-
-				// if there is only one token
-				if (tokenCount == 1)
-				{
-					// end is start, both included
-					m_endTime = m_startTime;
-					m_startIncluded = true;
-					m_endIncluded = true;
-				}
-
-				// start time must be <= end time
-				if (m_startTime.getTime() > m_endTime.getTime())
-				{
-					// reverse them to fix
-					Time t = m_startTime;
-					m_startTime = m_endTime;
-					m_endTime = t;
-				}
+				// a single time is both start and end - the same Time, as for a range made from a single Time
+				m_endTime = CompactTimeRange.isSingleTime(str) ? m_startTime : newTime(range.getEnd());
+				m_startIncluded = range.isStartIncluded();
+				m_endIncluded = range.isEndIncluded();
 			}
 			catch (Exception e)
 			{
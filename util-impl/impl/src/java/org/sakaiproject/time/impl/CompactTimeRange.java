@@ -0,0 +1,360 @@
+/**********************************************************************************
+ * $URL$
+ * $Id$
+ ***********************************************************************************
+ *
+ * Copyright (c) 2007 The Sakai Foundation.
+ * 
+ * Licensed under the Educational Community License, Version 1.0 (the "License"); 
+ * you may not use this file except in compliance with the License. 
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.opensource.org/licenses/ecl1.php
+ * 
+ * Unless required by applicable law or agreed to in writing, software 
+ * distributed under the License is distributed on an "AS IS" BASIS, 
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. 
+ * See the License for the specific language governing permissions and 
+ * limitations under the License.
+ *
+ **********************************************************************************/
+
+package org.sakaiproject.time.impl;
+
+import org.sakaiproject.time.api.TimeRange;
+import org.sakaiproject.time.api.TimeService;
+
+/**
+ * <p>
+ * CompactTimeRange is a time range as a plain value: start and end ms, with whether each end is included packed into flags. It parses and
+ * formats the same strings as MyTimeRange ("start", "start-end", "start[end", "start]end", "start~end", with "=duration" for either
+ * end), without making Time objects, and converts to and from TimeRange.
+ * </p>
+ */
+public final class CompactTimeRange
+{
+	/** Flag: the start is in the range. */
+	public static final int START_INCLUDED = 1;
+
+	/** Flag: the end is in the range. */
+	public static final int END_INCLUDED = 2;
+
+	/** The start time, ms since the epoch - never after the end. */
+	private final long m_start;
+
+	/** The end time, ms since the epoch. */
+	private final long m_end;
+
+	/** START_INCLUDED and / or END_INCLUDED. */
+	private final int m_flags;
+
+	/**
+	 * Construct. If start is after end, they are swapped (the flags stay with the start and end positions, as MyTimeRange does).
+	 * 
+	 * @param start
+	 *        The start time, ms.
+	 * @param end
+	 *        The end time, ms.
+	 * @param flags
+	 *        START_INCLUDED and / or END_INCLUDED.
+	 */
+	public CompactTimeRange(long start, long end, int flags)
+	{
+		m_start = Math.min(start, end);
+		m_end = Math.max(start, end);
+		m_flags = flags & (START_INCLUDED | END_INCLUDED);
+	}
+
+	/**
+	 * Make the compact form of a TimeRange.
+	 * 
+	 * @param range
+	 *        The TimeRange.
+	 * @return The CompactTimeRange.
+	 */
+	public static CompactTimeRange valueOf(TimeRange range)
+	{
+		if (range instanceof BasicTimeService.MyTimeRange)
+		{
+			BasicTimeService.MyTimeRange r = (BasicTimeService.MyTimeRange) range;
+			return new CompactTimeRange(r.m_startTime.getTime(), r.m_endTime.getTime(), (r.m_startIncluded ? START_INCLUDED : 0)
+					| (r.m_endIncluded ? END_INCLUDED : 0));
+		}
+
+		// an end is included if fudging it changes nothing
+		long start = range.firstTime(0).getTime();
+		long end = range.lastTime(0).getTime();
+		int flags = ((range.firstTime(1).getTime() == start) ? START_INCLUDED : 0) | ((range.lastTime(1).getTime() == end) ? END_INCLUDED : 0);
+		return new CompactTimeRange(start, end, flags);
+	}
+
+	/**
+	 * Make a TimeRange for this range.
+	 * 
+	 * @param service
+	 *        The TimeService to make it with.
+	 * @return The TimeRange.
+	 */
+	public TimeRange toTimeRange(TimeService service)
+	{
+		return service.newTimeRange(service.newTime(m_start), service.newTime(m_end), isStartIncluded(), isEndIncluded());
+	}
+
+	/**
+	 * Parse a range string, as MyTimeRange does.
+	 * 
+	 * @param value
+	 *        The string.
+	 * @param format
+	 *        The format for the times ("yyyyMMddHHmmssSSS", GMT).
+	 * @return The range.
+	 * @throws IllegalArgumentException
+	 *         if the string is not a valid range.
+	 */
+	public static CompactTimeRange parse(String value, GmtTimestampFormat format)
+	{
+		final int len = value.length();
+		if (len == 0) throw new IllegalArgumentException("empty");
+
+		// find the one separator, if any
+		int sep = separator(value, 0);
+		if (sep == 0) throw new IllegalArgumentException("no start: " + value);
+
+		// a single time: start and end, both included
+		if (sep == -1)
+		{
+			if (value.charAt(0) == '=') throw new IllegalArgumentException("=, single: " + value);
+			long time = parseTime(value, format);
+			return new CompactTimeRange(time, time, START_INCLUDED | END_INCLUDED);
+		}
+
+		if (sep == len - 1) throw new IllegalArgumentException("no end: " + value);
+		if (separator(value, sep + 1) != -1) throw new IllegalArgumentException(">3 tokens: " + value);
+
+		int flags;
+		switch (value.charAt(sep))
+		{
+			case '[':
+				flags = END_INCLUDED;
+				break;
+			case ']':
+				flags = START_INCLUDED;
+				break;
+			case '~':
+				flags = 0;
+				break;
+			default:
+				flags = START_INCLUDED | END_INCLUDED;
+		}
+
+		String startToken = value.substring(0, sep);
+		String endToken = value.substring(sep + 1);
+		boolean startDuration = (startToken.charAt(0) == '=');
+		boolean endDuration = (endToken.charAt(0) == '=');
+		if (startDuration && endDuration) throw new IllegalArgumentException("==: " + value);
+
+		// if either start or end is a duration, it is relative to the other
+		if (startDuration)
+		{
+			long end = parseTime(endToken, format);
+			return new CompactTimeRange(end - Long.parseLong(startToken.substring(1)), end, flags);
+		}
+		long start = parseTime(startToken, format);
+		if (endDuration)
+		{
+			return new CompactTimeRange(start, start + Long.parseLong(endToken.substring(1)), flags);
+		}
+		return new CompactTimeRange(start, parseTime(endToken, format), flags);
+	}
+
+	/**
+	 * Format the range, as MyTimeRange does.
+	 * 
+	 * @param format
+	 *        The format for the times ("yyyyMMddHHmmssSSS", GMT).
+	 * @return The range string.
+	 */
+	public String toString(GmtTimestampFormat format)
+	{
+		if (m_start == m_end) return format.format(m_start);
+
+		char[] buf = new char[64];
+		int pos = format.format(m_start, buf, 0);
+		switch (m_flags)
+		{
+			case START_INCLUDED | END_INCLUDED:
+				buf[pos++] = '-';
+				break;
+			case 0:
+				buf[pos++] = '~';
+				break;
+			case END_INCLUDED:
+				buf[pos++] = '[';
+				break;
+			default:
+				buf[pos++] = ']';
+		}
+		pos = format.format(m_end, buf, pos);
+
+		return new String(buf, 0, pos);
+	}
+
+	/**
+	 * @return The start time, ms.
+	 */
+	public long getStart()
+	{
+		return m_start;
+	}
+
+	/**
+	 * @return The end time, ms.
+	 */
+	public long getEnd()
+	{
+		return m_end;
+	}
+
+	/**
+	 * @return START_INCLUDED and / or END_INCLUDED.
+	 */
+	public int getFlags()
+	{
+		return m_flags;
+	}
+
+	/**
+	 * @return true if the start is in the range.
+	 */
+	public boolean isStartIncluded()
+	{
+		return (m_flags & START_INCLUDED) != 0;
+	}
+
+	/**
+	 * @return true if the end is in the range.
+	 */
+	public boolean isEndIncluded()
+	{
+		return (m_flags & END_INCLUDED) != 0;
+	}
+
+	/**
+	 * @return The first time (ms) actually in the range.
+	 */
+	public long getFirst()
+	{
+		return isStartIncluded() ? m_start : m_start + 1;
+	}
+
+	/**
+	 * @return The last time (ms) actually in the range.
+	 */
+	public long getLast()
+	{
+		return isEndIncluded() ? m_end : m_end - 1;
+	}
+
+	/**
+	 * @return The duration, in ms, from the first to the last time in the range.
+	 */
+	public long duration()
+	{
+		return getLast() - getFirst();
+	}
+
+	/**
+	 * @param time
+	 *        The time, ms.
+	 * @return true if the time is in the range.
+	 */
+	public boolean contains(long time)
+	{
+		return (time >= getFirst()) && (time <= getLast());
+	}
+
+	/**
+	 * @param other
+	 *        The other range.
+	 * @return true if every time in the other range is in this one.
+	 */
+	public boolean contains(CompactTimeRange other)
+	{
+		return contains(other.getFirst()) && contains(other.getLast());
+	}
+
+	/**
+	 * @param other
+	 *        The other range.
+	 * @return true if the ranges share at least one time.
+	 */
+	public boolean overlaps(CompactTimeRange other)
+	{
+		// an empty range (both ends excluded, nothing between) overlaps nothing
+		return (getFirst() <= other.getLast()) && (other.getFirst() <= getLast()) && (getFirst() <= getLast())
+				&& (other.getFirst() <= other.getLast());
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	public boolean equals(Object obj)
+	{
+		if (!(obj instanceof CompactTimeRange)) return false;
+		CompactTimeRange other = (CompactTimeRange) obj;
+		return (other.m_start == m_start) && (other.m_end == m_end) && (other.m_flags == m_flags);
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	public int hashCode()
+	{
+		long h = m_start * 31 + m_end;
+		return (int) (h ^ (h >>> 32)) * 4 + m_flags;
+	}
+
+	/**
+	 * Check if a range string is a single time, with no separator.
+	 * 
+	 * @param value
+	 *        The string.
+	 * @return true if the string has none of "[]~-", false if it does.
+	 */
+	public static boolean isSingleTime(String value)
+	{
+		return separator(value, 0) == -1;
+	}
+
+	/**
+	 * @return The position of the first of "[]~-" at or after from, or -1 if there are none.
+	 */
+	private static int separator(String value, int from)
+	{
+		final int len = value.length();
+		for (int i = from; i < len; i++)
+		{
+			char c = value.charAt(i);
+			if ((c == '[') || (c == ']') || (c == '~') || (c == '-')) return i;
+		}
+		return -1;
+	}
+
+	/**
+	 * Parse a time token.
+	 * 
+	 * @throws IllegalArgumentException
+	 *         if it is not a time.
+	 */
+	private static long parseTime(String token, GmtTimestampFormat format)
+	{
+		try
+		{
+			return format.parse(token);
+		}
+		catch (NullPointerException e)
+		{
+			throw new IllegalArgumentException("invalid time: " + token);
+		}
+	}
+}
@@ -0,0 +1,275 @@
+/**********************************************************************************
+ * $URL$
+ * $Id$
+ ***********************************************************************************
+ *
+ * Copyright (c) 2007 The Sakai Foundation.
+ * 
+ * Licensed under the Educational Community License, Version 1.0 (the "License"); 
+ * you may not use this file except in compliance with the License. 
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.opensource.org/licenses/ecl1.php
+ * 
+ * Unless required by applicable law or agreed to in writing, software 
+ * distributed under the License is distributed on an "AS IS" BASIS, 
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. 
+ * See the License for the specific language governing permissions and 
+ * limitations under the License.
+ *
+ **********************************************************************************/
+
+package org.sakaiproject.time.impl;
+
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * <p>
+ * ExpiringCache is a size bounded, approximately least recently used cache whose entries also expire a fixed time after they are put. It
+ * counts hits, misses, evictions (for size) and expirations, for monitoring. It is safe for use by many threads, and takes no lock to find
+ * or cache a value.
+ * </p>
+ * <p>
+ * Each entry notes when it was last used. When a put takes the cache over its size, one thread sweeps it: the expired entries go, and if
+ * that is not enough, the least recently used entries go until a tenth of the room is free again. So the cost of a sweep is spread over
+ * many puts, and the cache may briefly be a little over its size while one runs.
+ * </p>
+ */
+public class ExpiringCache
+{
+	/** The most entries kept. */
+	protected final int m_maxSize;
+
+	/** How long, in ms, an entry lives (0 for no limit). */
+	protected final long m_ttl;
+
+	/** key -> Entry. */
+	protected final ConcurrentHashMap m_map;
+
+	/** Set while a thread is sweeping. */
+	protected final AtomicBoolean m_sweeping = new AtomicBoolean(false);
+
+	/** The counts. */
+	protected final AtomicLong m_hits = new AtomicLong();
+
+	protected final AtomicLong m_misses = new AtomicLong();
+
+	protected final AtomicLong m_evictions = new AtomicLong();
+
+	protected final AtomicLong m_expirations = new AtomicLong();
+
+	/**
+	 * Construct.
+	 * 
+	 * @param maxSize
+	 *        The most entries to keep; the least recently used go first.
+	 * @param ttl
+	 *        How long, in ms, an entry lives after it is put (0 for no limit).
+	 */
+	public ExpiringCache(int maxSize, long ttl)
+	{
+		m_maxSize = maxSize;
+		m_ttl = ttl;
+		m_map = new ConcurrentHashMap(Math.min(maxSize, 1024));
+	}
+
+	/**
+	 * Find a cached value.
+	 * 
+	 * @param key
+	 *        The key.
+	 * @return The value, or null if not cached (or expired).
+	 */
+	public Object get(Object key)
+	{
+		Entry entry = (Entry) m_map.get(key);
+		if (entry == null)
+		{
+			m_misses.incrementAndGet();
+			return null;
+		}
+
+		long now = System.currentTimeMillis();
+		if (now >= entry.m_expires)
+		{
+			if (m_map.remove(key, entry)) m_expirations.incrementAndGet();
+			m_misses.incrementAndGet();
+			return null;
+		}
+
+		// only write when it changes, so threads reading the same entry don't keep writing it
+		if (entry.m_used != now) entry.m_used = now;
+
+		m_hits.incrementAndGet();
+		return entry.m_value;
+	}
+
+	/**
+	 * Cache a value.
+	 * 
+	 * @param key
+	 *        The key.
+	 * @param value
+	 *        The value.
+	 */
+	public void put(Object key, Object value)
+	{
+		long now = System.currentTimeMillis();
+		long expires = (m_ttl > 0) ? now + m_ttl : Long.MAX_VALUE;
+		m_map.put(key, new Entry(value, expires, now));
+
+		if (m_map.size() > m_maxSize) sweep();
+	}
+
+	/**
+	 * Forget a cached value.
+	 * 
+	 * @param key
+	 *        The key.
+	 */
+	public void remove(Object key)
+	{
+		m_map.remove(key);
+	}
+
+	/**
+	 * Forget all cached values.
+	 */
+	public void clear()
+	{
+		m_map.clear();
+	}
+
+	/**
+	 * @return The number of entries cached (some may have expired but not yet been noticed).
+	 */
+	public int size()
+	{
+		return m_map.size();
+	}
+
+	/**
+	 * @return The number of gets that found a value.
+	 */
+	public long getHits()
+	{
+		return m_hits.get();
+	}
+
+	/**
+	 * @return The number of gets that found no value (including those that found an expired one).
+	 */
+	public long getMisses()
+	{
+		return m_misses.get();
+	}
+
+	/**
+	 * @return The number of entries dropped to keep within the size limit.
+	 */
+	public long getEvictions()
+	{
+		return m_evictions.get();
+	}
+
+	/**
+	 * @return The number of entries dropped because they expired.
+	 */
+	public long getExpirations()
+	{
+		return m_expirations.get();
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	public String toString()
+	{
+		return "size: " + m_map.size() + "/" + m_maxSize + " hits: " + m_hits + " misses: " + m_misses + " evictions: " + m_evictions
+				+ " expirations: " + m_expirations;
+	}
+
+	/**
+	 * Bring the cache back under its size. If another thread is already sweeping, leave it to that one - it checks the size again when it
+	 * is done, so puts made while it sweeps are not missed.
+	 */
+	protected void sweep()
+	{
+		while ((m_map.size() > m_maxSize) && m_sweeping.compareAndSet(false, true))
+		{
+			try
+			{
+				sweepOnce();
+			}
+			finally
+			{
+				m_sweeping.set(false);
+			}
+		}
+	}
+
+	/**
+	 * Drop the expired entries, then the least recently used, leaving a tenth of the room free.
+	 */
+	protected void sweepOnce()
+	{
+		// drop the expired, noting when the rest were last used
+		long now = System.currentTimeMillis();
+		long[] used = new long[m_map.size() + 16];
+		int count = 0;
+		for (Iterator i = m_map.entrySet().iterator(); i.hasNext();)
+		{
+			Map.Entry e = (Map.Entry) i.next();
+			Entry entry = (Entry) e.getValue();
+			if (now >= entry.m_expires)
+			{
+				if (m_map.remove(e.getKey(), entry)) m_expirations.incrementAndGet();
+			}
+			else if (count < used.length)
+			{
+				used[count++] = entry.m_used;
+			}
+		}
+
+		int excess = m_map.size() - (m_maxSize - m_maxSize / 10);
+		if ((excess <= 0) || (count == 0)) return;
+
+		// drop those last used no later than the excess'th oldest
+		Arrays.sort(used, 0, count);
+		long oldest = used[Math.min(excess, count) - 1];
+		for (Iterator i = m_map.entrySet().iterator(); i.hasNext() && (excess > 0);)
+		{
+			Map.Entry e = (Map.Entry) i.next();
+			Entry entry = (Entry) e.getValue();
+			if ((entry.m_used <= oldest) && m_map.remove(e.getKey(), entry))
+			{
+				m_evictions.incrementAndGet();
+				excess--;
+			}
+		}
+	}
+
+	/**
+	 * A cached value, when it expires, and when it was last used.
+	 */
+	protected static class Entry
+	{
+		protected final Object m_value;
+
+		protected final long m_expires;
+
+		protected volatile long m_used;
+
+		protected Entry(Object value, long expires, long used)
+		{
+			m_value = value;
+			m_expires = expires;
+			m_used = used;
+		}
+	}
+}
@@ -0,0 +1,271 @@
+/**********************************************************************************
+ * $URL$
+ * $Id$
+ ***********************************************************************************
+ *
+ * Copyright (c) 2007 The Sakai Foundation.
+ * 
+ * Licensed under the Educational Community License, Version 1.0 (the "License"); 
+ * you may not use this file except in compliance with the License. 
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.opensource.org/licenses/ecl1.php
+ * 
+ * Unless required by applicable law or agreed to in writing, software 
+ * distributed under the License is distributed on an "AS IS" BASIS, 
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. 
+ * See the License for the specific language governing permissions and 
+ * limitations under the License.
+ *
+ **********************************************************************************/
+
+package org.sakaiproject.time.impl;
+
+import java.text.ParsePosition;
+
+/**
+ * <p>
+ * GmtTimestampFormat formats and parses our fixed width GMT timestamps, "yyyyMMddHHmmssSSS" (or "yyyyMMddHHmmss" without the millis), with
+ * plain arithmetic - no Calendar, no Date and no locking. It produces exactly what SimpleDateFormat does for the same pattern in GMT.
+ * </p>
+ * <p>
+ * Times from 1600 through 9999 are handled directly. Anything else (the Julian calendar years before the Gregorian cutover, years with
+ * more than four digits, strings that need SimpleDateFormat's lenient parsing) is passed to the fallback format.
+ * </p>
+ */
+public class GmtTimestampFormat
+{
+	/** Milliseconds in a day. */
+	protected static final long MS_PER_DAY = 24L * 60L * 60L * 1000L;
+
+	/** The earliest time we handle directly: 1600-01-01 00:00:00.000 GMT. */
+	protected static final long MIN_TIME = daysFromCivil(1600, 1, 1) * MS_PER_DAY;
+
+	/** Just past the latest time we handle directly: 10000-01-01 00:00:00.000 GMT. */
+	protected static final long MAX_TIME = daysFromCivil(10000, 1, 1) * MS_PER_DAY;
+
+	/** The format to use for what we don't handle directly; same pattern, GMT. */
+	protected final ThreadLocalDateFormat m_fallback;
+
+	/** true to include the milliseconds. */
+	protected final boolean m_millis;
+
+	/** The length of our strings. */
+	protected final int m_length;
+
+	/**
+	 * Construct.
+	 * 
+	 * @param fallback
+	 *        The SimpleDateFormat equivalent, set to GMT, for times and strings we don't handle directly.
+	 * @param millis
+	 *        true for "yyyyMMddHHmmssSSS", false for "yyyyMMddHHmmss".
+	 */
+	public GmtTimestampFormat(ThreadLocalDateFormat fallback, boolean millis)
+	{
+		m_fallback = fallback;
+		m_millis = millis;
+		m_length = millis ? 17 : 14;
+	}
+
+	/**
+	 * Format a time.
+	 * 
+	 * @param time
+	 *        The time, in ms since the epoch.
+	 * @return The formatted time.
+	 */
+	public String format(long time)
+	{
+		if ((time < MIN_TIME) || (time >= MAX_TIME)) return m_fallback.format(time);
+
+		char[] buf = new char[m_length];
+		format(time, buf, 0);
+		return new String(buf, 0, m_length);
+	}
+
+	/**
+	 * Format a time into a buffer, which can be reused for many times.
+	 * 
+	 * @param time
+	 *        The time, in ms since the epoch.
+	 * @param buf
+	 *        The buffer.
+	 * @param offset
+	 *        Where in the buffer to start.
+	 * @return The position in the buffer just after the formatted time.
+	 */
+	public int format(long time, char[] buf, int offset)
+	{
+		if ((time < MIN_TIME) || (time >= MAX_TIME))
+		{
+			String s = m_fallback.format(time);
+			s.getChars(0, s.length(), buf, offset);
+			return offset + s.length();
+		}
+
+		// split into days and the ms into the day, rounding the days down for times before the epoch
+		long days = time / MS_PER_DAY;
+		int ms = (int) (time - days * MS_PER_DAY);
+		if (ms < 0)
+		{
+			days--;
+			ms += MS_PER_DAY;
+		}
+
+		int pos = offset;
+		pos = digits(civilDate(days), 8, buf, pos);
+		pos = digits(ms / 3600000, 2, buf, pos);
+		pos = digits((ms / 60000) % 60, 2, buf, pos);
+		pos = digits((ms / 1000) % 60, 2, buf, pos);
+		if (m_millis) pos = digits(ms % 1000, 3, buf, pos);
+
+		return pos;
+	}
+
+	/**
+	 * Break a time down into its GMT fields, as formatting it as "yyyyMMddHHmmssSSS" and reading the numbers back would - but only for
+	 * times we handle directly.
+	 * 
+	 * @param time
+	 *        The time, in ms since the epoch (add a zone's offset first for the fields in that zone).
+	 * @param fields
+	 *        Filled with the year, month (1..12), day, hour, minute, second and millisecond.
+	 * @return true if the fields were filled in, false if the time is outside what we handle directly.
+	 */
+	public static boolean breakdown(long time, int[] fields)
+	{
+		if ((time < MIN_TIME) || (time >= MAX_TIME)) return false;
+
+		// split into days and the ms into the day, rounding the days down for times before the epoch
+		long days = time / MS_PER_DAY;
+		int ms = (int) (time - days * MS_PER_DAY);
+		if (ms < 0)
+		{
+			days--;
+			ms += MS_PER_DAY;
+		}
+
+		int date = civilDate(days);
+		fields[0] = date / 10000;
+		fields[1] = (date / 100) % 100;
+		fields[2] = date % 100;
+		fields[3] = ms / 3600000;
+		fields[4] = (ms / 60000) % 60;
+		fields[5] = (ms / 1000) % 60;
+		fields[6] = ms % 1000;
+
+		return true;
+	}
+
+	/**
+	 * @return The (proleptic Gregorian) date of the days since 1970-01-01, as the number yyyyMMdd.
+	 */
+	protected static int civilDate(long days)
+	{
+		int z = (int) days + 719468;
+		int era = (z >= 0 ? z : z - 146096) / 146097;
+		int doe = z - era * 146097;
+		int yoe = (doe - doe / 1460 + doe / 36524 - doe / 146096) / 365;
+		int doy = doe - (365 * yoe + yoe / 4 - yoe / 100);
+		int mp = (5 * doy + 2) / 153;
+		int day = doy - (153 * mp + 2) / 5 + 1;
+		int month = (mp < 10) ? mp + 3 : mp - 9;
+		int year = yoe + era * 400 + ((month <= 2) ? 1 : 0);
+		return year * 10000 + month * 100 + day;
+	}
+
+	/**
+	 * Parse a time, as the fallback's parse(value, new ParsePosition(0)).getTime() would.
+	 * 
+	 * @param value
+	 *        The string to parse.
+	 * @return The time, in ms since the epoch.
+	 * @throws NullPointerException
+	 *         if the value cannot be parsed (as the fallback's null Date would).
+	 */
+	public long parse(String value)
+	{
+		// only exactly our length, all digits, with every field in range - anything else gets SimpleDateFormat's lenient treatment
+		if (value.length() != m_length) return fallbackParse(value);
+		for (int i = 0; i < m_length; i++)
+		{
+			char c = value.charAt(i);
+			if ((c < '0') || (c > '9')) return fallbackParse(value);
+		}
+
+		int year = number(value, 0, 4);
+		int month = number(value, 4, 2);
+		int day = number(value, 6, 2);
+		int hour = number(value, 8, 2);
+		int minute = number(value, 10, 2);
+		int second = number(value, 12, 2);
+		int ms = m_millis ? number(value, 14, 3) : 0;
+
+		if ((year < 1600) || (month < 1) || (month > 12) || (day < 1) || (day > daysInMonth(year, month)) || (hour > 23) || (minute > 59)
+				|| (second > 59))
+		{
+			return fallbackParse(value);
+		}
+
+		return daysFromCivil(year, month, day) * MS_PER_DAY + hour * 3600000L + minute * 60000L + second * 1000L + ms;
+	}
+
+	/**
+	 * Parse with the fallback format.
+	 */
+	protected long fallbackParse(String value)
+	{
+		return m_fallback.parse(value, new ParsePosition(0)).getTime();
+	}
+
+	/**
+	 * Write a zero padded number.
+	 * 
+	 * @return The position just after the digits.
+	 */
+	protected static int digits(int value, int width, char[] buf, int pos)
+	{
+		for (int i = pos + width - 1; i >= pos; i--)
+		{
+			buf[i] = (char) ('0' + (value % 10));
+			value /= 10;
+		}
+		return pos + width;
+	}
+
+	/**
+	 * Read a number from digits known to be there.
+	 */
+	protected static int number(String value, int pos, int width)
+	{
+		int rv = 0;
+		for (int i = pos; i < pos + width; i++)
+		{
+			rv = rv * 10 + (value.charAt(i) - '0');
+		}
+		return rv;
+	}
+
+	/**
+	 * @return The number of days in the month (1..12) of the (Gregorian) year.
+	 */
+	protected static int daysInMonth(int year, int month)
+	{
+		if (month == 2) return (((year % 4) == 0) && (((year % 100) != 0) || ((year % 400) == 0))) ? 29 : 28;
+		return ((month == 4) || (month == 6) || (month == 9) || (month == 11)) ? 30 : 31;
+	}
+
+	/**
+	 * @return The days since 1970-01-01 of this (proleptic Gregorian) date.
+	 */
+	protected static long daysFromCivil(int year, int month, int day)
+	{
+		int y = (month <= 2) ? year - 1 : year;
+		int era = (y >= 0 ? y : y - 399) / 400;
+		int yoe = y - era * 400;
+		int doy = (153 * (month + ((month > 2) ? -3 : 9)) + 2) / 5 + day - 1;
+		int doe = yoe * 365 + yoe / 4 - yoe / 100 + doy;
+		return era * 146097L + doe - 719468L;
+	}
+}
@@ -21,11 +21,6 @@
 
 package org.sakaiproject.time.impl;
 
-import java.text.ParsePosition;
-import java.text.DateFormat;
-import java.util.Date;
-import java.text.SimpleDateFormat;
-import java.util.GregorianCalendar;
 import java.util.TimeZone;
 
 import org.sakaiproject.time.api.Time;
@@ -56,13 +51,7 @@ public class MyTime implements Time
 	{
 		this.timeService = timeService;
 		// use formatter A: yyyyMMddHHmmssSSS
-		Date d = null;
-		synchronized (timeService.M_fmtA)
-		{
-			ParsePosition pos = new ParsePosition(0);
-			d = timeService.M_fmtA.parse(str, pos);
-		}
-		m_millisecondsSince = d.getTime();
+		m_millisecondsSince = timeService.M_gmtA.parse(str);
 	}
 
 	/**
@@ -109,9 +98,7 @@ public class MyTime implements Time
 	public MyTime(BasicTimeService timeService, TimeZone zone, int year, int month, int day, int hour, int minute, int second, int millisecond)
 	{
 		this.timeService = timeService;
-		GregorianCalendar cal = timeService.getCalendar(zone, year, month - 1, day, hour,
-				minute, second, millisecond);
-		m_millisecondsSince = cal.getTimeInMillis();
+		m_millisecondsSince = timeService.toUtc(zone, year, month, day, hour, minute, second, millisecond);
 	}
 
 	/**
@@ -125,9 +112,8 @@ public class MyTime implements Time
 	public MyTime(BasicTimeService timeService, TimeZone zone, TimeBreakdown tb)
 	{
 		this.timeService = timeService;
-		GregorianCalendar cal = timeService.getCalendar(zone, tb.getYear(), tb.getMonth() - 1,
-				tb.getDay(), tb.getHour(), tb.getMin(), tb.getSec(), tb.getMs());
-		m_millisecondsSince = cal.getTimeInMillis();
+		m_millisecondsSince = timeService.toUtc(zone, tb.getYear(), tb.getMonth(), tb.getDay(), tb.getHour(), tb.getMin(),
+				tb.getSec(), tb.getMs());
 	}
 
 	/**
@@ -143,14 +129,7 @@ public class MyTime implements Time
 	 */
 	public String toString()
 	{
-		String s = null;
-		synchronized (timeService.M_fmtA)
-		{
-			// format
-			s = timeService.M_fmtA.format(new Date(getTime()));
-		}
-
-		return s;
+		return timeService.M_gmtA.format(getTime());
 	}
 
 	/**
@@ -158,14 +137,7 @@ public class MyTime implements Time
 	 */
 	public String toStringSql()
 	{
-		String s = null;
-		synchronized (timeService.M_fmtE)
-		{
-			// format
-			s = timeService.M_fmtE.format(new Date(getTime()));
-		}
-
-		return s;
+		return timeService.M_gmtE.format(getTime());
 	}
 
 	/**
@@ -173,15 +145,9 @@ public class MyTime implements Time
 	 */
 	public String toStringLocal()
 	{
-		String s = null;
-		DateFormat fmtAl = timeService.getLocalTzFormat(timeService.getUserTimezoneLocale()).M_fmtAl;
-		synchronized (fmtAl)
-		{
-			// format
-			s = fmtAl.format(new Date(getTime()));
-		}
-
-		return s;
+		// the GMT timestamp of the local wall clock time
+		ZoneOffsetTable offsets = timeService.getUserLocalTzFormat().M_offsets;
+		return timeService.M_gmtA.format(getTime() + offsets.getOffset(getTime()));
 	}
 
 	/**
@@ -189,12 +155,7 @@ public class MyTime implements Time
 	 */
 	public String toStringGmtFull()
 	{
-		String s = null;
-		synchronized (timeService.M_fmtB)
-		{
-			// format
-			s = timeService.M_fmtB.format(new Date(getTime()));
-		}
+		String s = timeService.M_fmtB.format(getTime());
 
 		// lower the case of AM/PM
 		s = fix(s);
@@ -207,13 +168,7 @@ public class MyTime implements Time
 	 */
 	public String toStringLocalFull()
 	{
-		String s = null;
-		DateFormat fmtBl = timeService.getLocalTzFormat(timeService.getUserTimezoneLocale()).M_fmtBl;
-		synchronized (fmtBl)
-		{
-			// format
-			s = fmtBl.format(new Date(getTime()));
-		}
+		String s = timeService.getUserLocalTzFormat().M_fmtBl.format(getTime());
 
 		// lower the case of AM/PM
 		s = fix(s);
@@ -226,15 +181,7 @@ public class MyTime implements Time
 	 */
 	public String toStringLocalFullZ()
 	{
-		String s = null;
-		DateFormat fmtBlz = timeService.getLocalTzFormat(timeService.getUserTimezoneLocale()).M_fmtBlz;
-		synchronized (fmtBlz)
-		{
-			// format
-			s = fmtBlz.format(new Date(getTime()));
-		}
-
-		return s;
+		return timeService.getUserLocalTzFormat().M_fmtBlz.format(getTime());
 	}
 
 	/**
@@ -242,12 +189,7 @@ public class MyTime implements Time
 	 */
 	public String toStringGmtShort()
 	{
-		String s = null;
-		synchronized (timeService.M_fmtC)
-		{
-			// format
-			s = timeService.M_fmtC.format(new Date(getTime()));
-		}
+		String s = timeService.M_fmtC.format(getTime());
 
 		// lower the case of AM/PM
 		s = fix(s);
@@ -260,13 +202,7 @@ public class MyTime implements Time
 	 */
 	public String toStringLocalShort()
 	{
-		String s = null;
-		DateFormat fmtCl = timeService.getLocalTzFormat(timeService.getUserTimezoneLocale()).M_fmtCl;
-		synchronized (fmtCl)
-		{
-			// format
-			s = fmtCl.format(new Date(getTime()));
-		}
+		String s = timeService.getUserLocalTzFormat().M_fmtCl.format(getTime());
 
 		// lower the case of AM/PM
 		s = fix(s);
@@ -279,12 +215,7 @@ public class MyTime implements Time
 	 */
 	public String toStringGmtTime()
 	{
-		String s = null;
-		synchronized (timeService.M_fmtC)
-		{
-			// format
-			s = timeService.M_fmtC.format(new Date(getTime()));
-		}
+		String s = timeService.M_fmtC.format(getTime());
 
 		// lower the case of AM/PM
 		s = fix(s);
@@ -297,13 +228,7 @@ public class MyTime implements Time
 	 */
 	public String toStringLocalTime()
 	{
-		String s = null;
-		DateFormat fmtCl = timeService.getLocalTzFormat(timeService.getUserTimezoneLocale()).M_fmtCl;
-		synchronized (fmtCl)
-		{
-			// format
-			s = fmtCl.format(new Date(getTime()));
-		}
+		String s = timeService.getUserLocalTzFormat().M_fmtCl.format(getTime());
 
 		// lower the case of AM/PM
 		s = fix(s);
@@ -316,16 +241,7 @@ public class MyTime implements Time
 	 */
 	public String toStringLocalTimeZ()
 	{
-
-		String s = null;
-		DateFormat fmtClz = timeService.getLocalTzFormat(timeService.getUserTimezoneLocale()).M_fmtClz;
-
-		synchronized (fmtClz)
-		{
-			// format
-			s = fmtClz.format(new Date(getTime()));
-		}
-		return s;
+		return timeService.getUserLocalTzFormat().M_fmtClz.format(getTime());
 	}
 
 	/**
@@ -333,15 +249,7 @@ public class MyTime implements Time
 	 */
 	public String toStringLocalTime24()
 	{
-		String s = null;
-		DateFormat fmtFl = timeService.getLocalTzFormat(timeService.getUserTimezoneLocale()).M_fmtFl;
-		synchronized (fmtFl)
-		{
-			// format
-			s = fmtFl.format(new Date(getTime()));
-		}
-
-		return s;
+		return timeService.getUserLocalTzFormat().M_fmtFl.format(getTime());
 	}
 
 	/**
@@ -349,14 +257,7 @@ public class MyTime implements Time
 	 */
 	public String toStringGmtDate()
 	{
-		String s = null;
-		synchronized (timeService.M_fmtD)
-		{
-			// format
-			s = timeService.M_fmtD.format(new Date(getTime()));
-		}
-
-		return s;
+		return timeService.M_fmtD.format(getTime());
 	}
 
 	/**
@@ -364,15 +265,7 @@ public class MyTime implements Time
 	 */
 	public String toStringLocalDate()
 	{
-		String s = null;
-		DateFormat fmtDl = timeService.getLocalTzFormat(timeService.getUserTimezoneLocale()).M_fmtDl;
-		synchronized (fmtDl)
-		{
-			// format
-			s = fmtDl.format(new Date(getTime()));
-		}
-
-		return s;
+		return timeService.getUserLocalTzFormat().M_fmtDl.format(getTime());
 	}
 
 	/**
@@ -380,15 +273,7 @@ public class MyTime implements Time
 	 */
 	public String toStringLocalShortDate()
 	{
-		String s = null;
-		DateFormat fmtD2 = timeService.getLocalTzFormat(timeService.getUserTimezoneLocale()).M_fmtD2;
-		synchronized (fmtD2)
-		{
-			// format
-			s = fmtD2.format(new Date(getTime()));
-		}
-
-		return s;
+		return timeService.getUserLocalTzFormat().M_fmtD2.format(getTime());
 	}
 
 
@@ -397,7 +282,7 @@ public class MyTime implements Time
 	 */
 	public String toStringRFC822Local()
 	{
-        	return new SimpleDateFormat("EEE', 'dd' 'MMM' 'yyyy' 'HH:mm:ss' 'Z").format(new Date(getTime()));
+		return timeService.M_rfc822.format(getTime());
 	}
 
 	/**
@@ -405,14 +290,7 @@ public class MyTime implements Time
 	 */
 	public String toStringFilePath()
 	{
-		String s = null;
-		synchronized (timeService.M_fmtG)
-		{
-			// format
-			s = timeService.M_fmtG.format(new Date(getTime()));
-		}
-
-		return s;
+		return timeService.M_fmtG.format(getTime());
 	}
 
 	/**
@@ -495,12 +373,10 @@ public class MyTime implements Time
 	 */
 	public TimeBreakdown breakdownGmt()
 	{
-		String s = toString();
-		TimeBreakdown b = timeService.newTimeBreakdown(Integer.parseInt(s.substring(0, 4)),
-				Integer.parseInt(s.substring(4, 6)), Integer.parseInt(s.substring(6, 8)), Integer.parseInt(s.substring(8, 10)),
-				Integer.parseInt(s.substring(10, 12)), Integer.parseInt(s.substring(12, 14)), Integer.parseInt(s.substring(14)));
+		int[] fields = new int[7];
+		if (!GmtTimestampFormat.breakdown(getTime(), fields)) return breakdown(toString());
 
-		return b;
+		return breakdown(fields);
 	}
 
 	/**
@@ -508,7 +384,34 @@ public class MyTime implements Time
 	 */
 	public TimeBreakdown breakdownLocal()
 	{
-		String s = toStringLocal();
+		ZoneOffsetTable offsets = timeService.getUserLocalTzFormat().M_offsets;
+		int[] fields = new int[7];
+		if (!GmtTimestampFormat.breakdown(getTime() + offsets.getOffset(getTime()), fields)) return breakdown(toStringLocal());
+
+		return breakdown(fields);
+	}
+
+	/**
+	 * Make a breakdown from the fields.
+	 * 
+	 * @param fields
+	 *        The year, month, day, hour, minute, second and millisecond.
+	 * @return The TimeBreakdown.
+	 */
+	protected TimeBreakdown breakdown(int[] fields)
+	{
+		return timeService.newTimeBreakdown(fields[0], fields[1], fields[2], fields[3], fields[4], fields[5], fields[6]);
+	}
+
+	/**
+	 * Make a breakdown by reading the numbers back from a formatted time, for times the arithmetic does not handle.
+	 * 
+	 * @param s
+	 *        The time, formatted "yyyyMMddHHmmssSSS".
+	 * @return The TimeBreakdown.
+	 */
+	protected TimeBreakdown breakdown(String s)
+	{
 		TimeBreakdown b = timeService.newTimeBreakdown(Integer.parseInt(s.substring(0, 4)),
 				Integer.parseInt(s.substring(4, 6)), Integer.parseInt(s.substring(6, 8)), Integer.parseInt(s.substring(8, 10)),
 				Integer.parseInt(s.substring(10, 12)), Integer.parseInt(s.substring(12, 14)), Integer.parseInt(s.substring(14)));
@@ -0,0 +1,205 @@
+/**********************************************************************************
+ * $URL$
+ * $Id$
+ ***********************************************************************************
+ *
+ * Copyright (c) 2007 The Sakai Foundation.
+ * 
+ * Licensed under the Educational Community License, Version 1.0 (the "License"); 
+ * you may not use this file except in compliance with the License. 
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.opensource.org/licenses/ecl1.php
+ * 
+ * Unless required by applicable law or agreed to in writing, software 
+ * distributed under the License is distributed on an "AS IS" BASIS, 
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. 
+ * See the License for the specific language governing permissions and 
+ * limitations under the License.
+ *
+ **********************************************************************************/
+
+package org.sakaiproject.time.impl;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+
+import org.sakaiproject.time.api.Time;
+import org.sakaiproject.time.api.TimeRange;
+import org.sakaiproject.time.api.TimeRangeIndex;
+
+/**
+ * <p>
+ * MyTimeRangeIndex is an implementation of the Time API TimeRangeIndex: a static, augmented interval tree.
+ * </p>
+ * <p>
+ * The ranges are sorted by their first time; the tree is the implicit balanced binary tree over that sorted array (each node the middle of
+ * its slice), with the latest last time in each subtree kept alongside. A query skips any subtree that ends before the time or range
+ * sought, and stops going right once ranges start after it, so it finds k matches of n ranges in O(log n + k).
+ * </p>
+ */
+public class MyTimeRangeIndex implements TimeRangeIndex
+{
+	/** The ranges, sorted by first time. */
+	protected final TimeRange[] m_ranges;
+
+	/** The first time (ms) in each range. */
+	protected final long[] m_first;
+
+	/** The last time (ms) in each range. */
+	protected final long[] m_last;
+
+	/** The latest last time (ms) in the subtree rooted at each node. */
+	protected final long[] m_maxLast;
+
+	/**
+	 * Construct, indexing these ranges.
+	 * 
+	 * @param ranges
+	 *        The ranges (TimeRange) to index; anything else is ignored, as are ranges that contain no time at all.
+	 */
+	public MyTimeRangeIndex(Collection ranges)
+	{
+		List entries = new ArrayList(ranges.size());
+		for (Iterator i = ranges.iterator(); i.hasNext();)
+		{
+			Object o = i.next();
+			if (!(o instanceof TimeRange)) continue;
+			Entry entry = new Entry((TimeRange) o);
+
+			// a range with both ends excluded and nothing between them contains no time
+			if (entry.m_first > entry.m_last) continue;
+			entries.add(entry);
+		}
+
+		// sort by first time
+		Collections.sort(entries, new Comparator()
+		{
+			public int compare(Object a, Object b)
+			{
+				long x = ((Entry) a).m_first;
+				long y = ((Entry) b).m_first;
+				return (x < y) ? -1 : ((x > y) ? 1 : 0);
+			}
+		});
+
+		int size = entries.size();
+		m_ranges = new TimeRange[size];
+		m_first = new long[size];
+		m_last = new long[size];
+		m_maxLast = new long[size];
+		for (int i = 0; i < size; i++)
+		{
+			Entry entry = (Entry) entries.get(i);
+			m_ranges[i] = entry.m_range;
+			m_first[i] = entry.m_first;
+			m_last[i] = entry.m_last;
+		}
+
+		fillMaxLast(0, size);
+	}
+
+	/**
+	 * Fill in m_maxLast for the subtree over [from, to).
+	 * 
+	 * @return The latest last time in the subtree (Long.MIN_VALUE if it is empty).
+	 */
+	protected long fillMaxLast(int from, int to)
+	{
+		if (from >= to) return Long.MIN_VALUE;
+
+		int mid = (from + to) >>> 1;
+		long max = Math.max(m_last[mid], Math.max(fillMaxLast(from, mid), fillMaxLast(mid + 1, to)));
+		m_maxLast[mid] = max;
+		return max;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	public List getContaining(Time time)
+	{
+		List rv = new ArrayList();
+		collect(0, m_ranges.length, time.getTime(), time.getTime(), false, rv);
+		return rv;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	public List getContaining(TimeRange range)
+	{
+		List rv = new ArrayList();
+		long first = range.firstTime().getTime();
+		long last = range.lastTime().getTime();
+		if (first <= last) collect(0, m_ranges.length, first, last, true, rv);
+		return rv;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	public List getOverlapping(TimeRange range)
+	{
+		List rv = new ArrayList();
+		long first = range.firstTime().getTime();
+		long last = range.lastTime().getTime();
+		if (first <= last) collect(0, m_ranges.length, first, last, false, rv);
+		return rv;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	public int size()
+	{
+		return m_ranges.length;
+	}
+
+	/**
+	 * Collect, in order, the ranges in the subtree over [from, to) that overlap (or contain) the times first through last.
+	 * 
+	 * @param containing
+	 *        if true, collect only ranges that contain all of first through last, else any that overlap it.
+	 */
+	protected void collect(int from, int to, long first, long last, boolean containing, List rv)
+	{
+		if (from >= to) return;
+
+		// nothing in this subtree lasts until the first time - or, to contain, until the last time
+		int mid = (from + to) >>> 1;
+		if (m_maxLast[mid] < (containing ? last : first)) return;
+
+		collect(from, mid, first, last, containing, rv);
+
+		// this range, and all to the right, start too late - to overlap, or to contain, for which they must start by the first time
+		if (m_first[mid] > (containing ? first : last)) return;
+
+		if (m_last[mid] >= (containing ? last : first)) rv.add(m_ranges[mid]);
+
+		collect(mid + 1, to, first, last, containing, rv);
+	}
+
+	/**
+	 * A range, with its first and last times, while building.
+	 */
+	protected static class Entry
+	{
+		protected final TimeRange m_range;
+
+		protected final long m_first;
+
+		protected final long m_last;
+
+		protected Entry(TimeRange range)
+		{
+			m_range = range;
+			m_first = range.firstTime().getTime();
+			m_last = range.lastTime().getTime();
+		}
+	}
+}
@@ -0,0 +1,189 @@
+/**********************************************************************************
+ * $URL$
+ * $Id$
+ ***********************************************************************************
+ *
+ * Copyright (c) 2007 The Sakai Foundation.
+ * 
+ * Licensed under the Educational Community License, Version 1.0 (the "License"); 
+ * you may not use this file except in compliance with the License. 
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.opensource.org/licenses/ecl1.php
+ * 
+ * Unless required by applicable law or agreed to in writing, software 
+ * distributed under the License is distributed on an "AS IS" BASIS, 
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. 
+ * See the License for the specific language governing permissions and 
+ * limitations under the License.
+ *
+ **********************************************************************************/
+
+
+package org.sakaiproject.time.impl;
+
+import java.text.DateFormatSymbols;
+import java.text.DecimalFormatSymbols;
+import java.text.SimpleDateFormat;
+import java.util.Arrays;
+import java.util.Calendar;
+import java.util.Locale;
+import java.util.TimeZone;
+
+/**
+ * <p>
+ * Rfc822Format formats times as "EEE', 'dd' 'MMM' 'yyyy' 'HH:mm:ss' 'Z" (such as "Tue, 05 Jun 2007 14:03:07 -0400") in a time zone -
+ * the same as a SimpleDateFormat with that pattern, but computing the fields directly and using a fixed table of the English day and
+ * month names. It is safe for use by many threads.
+ * </p>
+ * <p>
+ * The last few seconds formatted are remembered, since feeds and mail often format the same time many times over. If the locale's
+ * names or digits are not the English ones, or the time is not one we handle directly (see GmtTimestampFormat), a SimpleDateFormat is
+ * used instead.
+ * </p>
+ */
+public class Rfc822Format
+{
+	/** The pattern we format. */
+	public static final String PATTERN = "EEE', 'dd' 'MMM' 'yyyy' 'HH:mm:ss' 'Z";
+
+	/** The day names, Sunday first. */
+	protected static final String[] DAYS = { "Sun", "Mon", "Tue", "Wed", "Thu", "Fri", "Sat" };
+
+	/** The month names. */
+	protected static final String[] MONTHS = { "Jan", "Feb", "Mar", "Apr", "May", "Jun", "Jul", "Aug", "Sep", "Oct", "Nov", "Dec" };
+
+	/** How many seconds we remember (a power of two). */
+	protected static final int MEMO_SIZE = 64;
+
+	/** The time zone. */
+	protected final TimeZone m_zone;
+
+	/** The format to use when we can't format directly. */
+	protected final ThreadLocalDateFormat m_fallback;
+
+	/** true if the locale formats as we do, false to always use the fallback. */
+	protected final boolean m_direct;
+
+	/** Recent results, by second - entries are never changed, only replaced, so no locking is needed. */
+	protected final Entry[] m_memo = new Entry[MEMO_SIZE];
+
+	/**
+	 * Construct.
+	 * 
+	 * @param zone
+	 *        The time zone to format in.
+	 * @param locale
+	 *        The locale whose SimpleDateFormat we are to match.
+	 */
+	public Rfc822Format(TimeZone zone, Locale locale)
+	{
+		m_zone = (TimeZone) zone.clone();
+
+		SimpleDateFormat fallback = new SimpleDateFormat(PATTERN, locale);
+		fallback.setTimeZone(m_zone);
+		m_fallback = new ThreadLocalDateFormat(fallback);
+
+		// we format directly only if the locale's names and digits are ours (as they are for English locales)
+		DateFormatSymbols symbols = fallback.getDateFormatSymbols();
+		String[] days = new String[DAYS.length];
+		System.arraycopy(symbols.getShortWeekdays(), Calendar.SUNDAY, days, 0, DAYS.length);
+		String[] months = new String[MONTHS.length];
+		System.arraycopy(symbols.getShortMonths(), Calendar.JANUARY, months, 0, MONTHS.length);
+		m_direct = Arrays.equals(days, DAYS) && Arrays.equals(months, MONTHS)
+				&& (new DecimalFormatSymbols(locale).getZeroDigit() == '0');
+	}
+
+	/**
+	 * Format a time.
+	 * 
+	 * @param time
+	 *        The time, in ms since the epoch.
+	 * @return The formatted time.
+	 */
+	public String format(long time)
+	{
+		// the second, rounding down for times before the epoch
+		long second = (time >= 0) ? time / 1000 : (time - 999) / 1000;
+
+		int slot = (int) (second & (MEMO_SIZE - 1));
+		Entry entry = m_memo[slot];
+		if ((entry != null) && (entry.m_second == second)) return entry.m_value;
+
+		String rv = m_direct ? formatDirect(time) : null;
+		if (rv == null) rv = m_fallback.format(time);
+
+		m_memo[slot] = new Entry(second, rv);
+		return rv;
+	}
+
+	/**
+	 * Format a time from the computed fields.
+	 * 
+	 * @return The formatted time, or null if the time is not one we handle directly.
+	 */
+	protected String formatDirect(long time)
+	{
+		int offset = m_zone.getOffset(time);
+		int[] fields = new int[7];
+		if (!GmtTimestampFormat.breakdown(time + offset, fields)) return null;
+
+		// 1970-01-01 was a Thursday
+		long days = GmtTimestampFormat.daysFromCivil(fields[0], fields[1], fields[2]);
+		int dayOfWeek = (int) (((days + 4) % 7 + 7) % 7);
+
+		char[] buf = new char[31];
+		int pos = 0;
+		pos = name(DAYS[dayOfWeek], buf, pos);
+		buf[pos++] = ',';
+		buf[pos++] = ' ';
+		pos = GmtTimestampFormat.digits(fields[2], 2, buf, pos);
+		buf[pos++] = ' ';
+		pos = name(MONTHS[fields[1] - 1], buf, pos);
+		buf[pos++] = ' ';
+		pos = GmtTimestampFormat.digits(fields[0], 4, buf, pos);
+		buf[pos++] = ' ';
+		pos = GmtTimestampFormat.digits(fields[3], 2, buf, pos);
+		buf[pos++] = ':';
+		pos = GmtTimestampFormat.digits(fields[4], 2, buf, pos);
+		buf[pos++] = ':';
+		pos = GmtTimestampFormat.digits(fields[5], 2, buf, pos);
+		buf[pos++] = ' ';
+
+		// the zone as SimpleDateFormat's "Z" has it: sign, hours and minutes, dropping any seconds
+		int minutes = offset / 60000;
+		buf[pos++] = (minutes < 0) ? '-' : '+';
+		minutes = Math.abs(minutes);
+		pos = GmtTimestampFormat.digits(minutes / 60, 2, buf, pos);
+		pos = GmtTimestampFormat.digits(minutes % 60, 2, buf, pos);
+
+		return new String(buf, 0, pos);
+	}
+
+	/**
+	 * Copy a name into the buffer.
+	 * 
+	 * @return The position just after the name.
+	 */
+	protected static int name(String name, char[] buf, int pos)
+	{
+		name.getChars(0, name.length(), buf, pos);
+		return pos + name.length();
+	}
+
+	/**
+	 * One remembered result.
+	 */
+	protected static class Entry
+	{
+		protected final long m_second;
+
+		protected final String m_value;
+
+		protected Entry(long second, String value)
+		{
+			m_second = second;
+			m_value = value;
+		}
+	}
+}
@@ -0,0 +1,139 @@
+/**********************************************************************************
+ * $URL$
+ * $Id$
+ ***********************************************************************************
+ *
+ * Copyright (c) 2007 The Sakai Foundation.
+ * 
+ * Licensed under the Educational Community License, Version 1.0 (the "License"); 
+ * you may not use this file except in compliance with the License. 
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.opensource.org/licenses/ecl1.php
+ * 
+ * Unless required by applicable law or agreed to in writing, software 
+ * distributed under the License is distributed on an "AS IS" BASIS, 
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. 
+ * See the License for the specific language governing permissions and 
+ * limitations under the License.
+ *
+ **********************************************************************************/
+
+package org.sakaiproject.time.impl;
+
+import java.text.DateFormat;
+import java.text.ParsePosition;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * <p>
+ * ThreadCachedDateFormat gives each thread its own copy of a DateFormat, as ThreadLocalDateFormat does, so formatting and parsing need no
+ * locking. It is for formats of which there can be many - a set for each time zone / locale in use - so each thread keeps copies of at
+ * most MAX_COPIES of them, all told, dropping the one it used least recently; a dropped copy is cloned again from the prototype if the
+ * thread uses it again. A thread's copies then cost at most MAX_COPIES clones, however many time zone / locales there are.
+ * </p>
+ */
+public class ThreadCachedDateFormat
+{
+	/** The most copies (of all ThreadCachedDateFormats) one thread keeps. */
+	public static final int MAX_COPIES = 64;
+
+	/** Each thread's Copies, by ThreadCachedDateFormat, least recently used first. */
+	protected static final ThreadLocal M_copies = new ThreadLocal()
+	{
+		protected Object initialValue()
+		{
+			return new LinkedHashMap(16, 0.75f, true)
+			{
+				protected boolean removeEldestEntry(Map.Entry eldest)
+				{
+					return size() > MAX_COPIES;
+				}
+			};
+		}
+	};
+
+	/** The format to copy - not changed, or used to format, once we have it. */
+	protected final DateFormat m_prototype;
+
+	/**
+	 * Construct.
+	 * 
+	 * @param prototype
+	 *        The fully set up format to copy for each thread; it must not be changed after this.
+	 */
+	public ThreadCachedDateFormat(DateFormat prototype)
+	{
+		m_prototype = prototype;
+	}
+
+	/**
+	 * Access this thread's copy of the format. It stays this thread's, so it may be used freely, but must not be changed.
+	 * 
+	 * @return This thread's copy of the format.
+	 */
+	public DateFormat get()
+	{
+		return copy().m_format;
+	}
+
+	/**
+	 * Format a time.
+	 * 
+	 * @param time
+	 *        The time, in ms since the epoch.
+	 * @return The formatted time.
+	 */
+	public String format(long time)
+	{
+		ThreadLocalDateFormat.Copy copy = copy();
+		copy.m_date.setTime(time);
+		return copy.m_format.format(copy.m_date);
+	}
+
+	/**
+	 * Format a time onto the end of a buffer, which can be reused for many times.
+	 * 
+	 * @param time
+	 *        The time, in ms since the epoch.
+	 * @param buf
+	 *        The buffer to append to.
+	 */
+	public void format(long time, StringBuffer buf)
+	{
+		ThreadLocalDateFormat.Copy copy = copy();
+		copy.m_date.setTime(time);
+		copy.m_format.format(copy.m_date, buf, copy.m_position);
+	}
+
+	/**
+	 * Parse a time, as DateFormat.parse(String, ParsePosition) does.
+	 * 
+	 * @param source
+	 *        The string to parse.
+	 * @param pos
+	 *        Where to start, updated to where parsing stopped.
+	 * @return The parsed Date, or null if it could not be parsed.
+	 */
+	public Date parse(String source, ParsePosition pos)
+	{
+		return get().parse(source, pos);
+	}
+
+	/**
+	 * @return This thread's copy, cloned from the prototype if the thread has none.
+	 */
+	protected ThreadLocalDateFormat.Copy copy()
+	{
+		Map copies = (Map) M_copies.get();
+		ThreadLocalDateFormat.Copy copy = (ThreadLocalDateFormat.Copy) copies.get(this);
+		if (copy == null)
+		{
+			copy = new ThreadLocalDateFormat.Copy((DateFormat) m_prototype.clone());
+			copies.put(this, copy);
+		}
+		return copy;
+	}
+}
@@ -0,0 +1,130 @@
+/**********************************************************************************
+ * $URL$
+ * $Id$
+ ***********************************************************************************
+ *
+ * Copyright (c) 2007 The Sakai Foundation.
+ * 
+ * Licensed under the Educational Community License, Version 1.0 (the "License"); 
+ * you may not use this file except in compliance with the License. 
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.opensource.org/licenses/ecl1.php
+ * 
+ * Unless required by applicable law or agreed to in writing, software 
+ * distributed under the License is distributed on an "AS IS" BASIS, 
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. 
+ * See the License for the specific language governing permissions and 
+ * limitations under the License.
+ *
+ **********************************************************************************/
+
+package org.sakaiproject.time.impl;
+
+import java.text.DateFormat;
+import java.text.FieldPosition;
+import java.text.ParsePosition;
+import java.util.Date;
+
+/**
+ * <p>
+ * ThreadLocalDateFormat gives each thread its own copy of a DateFormat, so formatting and parsing need no locking. The copies are cloned
+ * from a prototype that is set up once (pattern, time zone, locale) and never used directly, so every copy formats just as the prototype
+ * would.
+ * </p>
+ */
+public class ThreadLocalDateFormat
+{
+	/** The format to copy - not changed, or used to format, once we have it. */
+	protected final DateFormat m_prototype;
+
+	/** Each thread's Copy. */
+	protected final ThreadLocal m_copies = new ThreadLocal()
+	{
+		protected Object initialValue()
+		{
+			return new Copy((DateFormat) m_prototype.clone());
+		}
+	};
+
+	/**
+	 * Construct.
+	 * 
+	 * @param prototype
+	 *        The fully set up format to copy for each thread; it must not be changed after this.
+	 */
+	public ThreadLocalDateFormat(DateFormat prototype)
+	{
+		m_prototype = prototype;
+	}
+
+	/**
+	 * Access this thread's copy of the format. It stays this thread's, so it may be used freely, but must not be changed.
+	 * 
+	 * @return This thread's copy of the format.
+	 */
+	public DateFormat get()
+	{
+		return ((Copy) m_copies.get()).m_format;
+	}
+
+	/**
+	 * Format a time.
+	 * 
+	 * @param time
+	 *        The time, in ms since the epoch.
+	 * @return The formatted time.
+	 */
+	public String format(long time)
+	{
+		Copy copy = (Copy) m_copies.get();
+		copy.m_date.setTime(time);
+		return copy.m_format.format(copy.m_date);
+	}
+
+	/**
+	 * Format a time onto the end of a buffer, which can be reused for many times.
+	 * 
+	 * @param time
+	 *        The time, in ms since the epoch.
+	 * @param buf
+	 *        The buffer to append to.
+	 */
+	public void format(long time, StringBuffer buf)
+	{
+		Copy copy = (Copy) m_copies.get();
+		copy.m_date.setTime(time);
+		copy.m_format.format(copy.m_date, buf, copy.m_position);
+	}
+
+	/**
+	 * Parse a time, as DateFormat.parse(String, ParsePosition) does.
+	 * 
+	 * @param source
+	 *        The string to parse.
+	 * @param pos
+	 *        Where to start, updated to where parsing stopped.
+	 * @return The parsed Date, or null if it could not be parsed.
+	 */
+	public Date parse(String source, ParsePosition pos)
+	{
+		return get().parse(source, pos);
+	}
+
+	/**
+	 * One thread's format, with a Date to reuse for formatting.
+	 */
+	protected static class Copy
+	{
+		protected final DateFormat m_format;
+
+		protected final Date m_date = new Date();
+
+		protected final FieldPosition m_position = new FieldPosition(0);
+
+		protected Copy(DateFormat format)
+		{
+			m_format = format;
+		}
+	}
+}
@@ -0,0 +1,208 @@
+/**********************************************************************************
+ * $URL$
+ * $Id$
+ ***********************************************************************************
+ *
+ * Copyright (c) 2007 The Sakai Foundation.
+ * 
+ * Licensed under the Educational Community License, Version 1.0 (the "License"); 
+ * you may not use this file except in compliance with the License. 
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.opensource.org/licenses/ecl1.php
+ * 
+ * Unless required by applicable law or agreed to in writing, software 
+ * distributed under the License is distributed on an "AS IS" BASIS, 
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. 
+ * See the License for the specific language governing permissions and 
+ * limitations under the License.
+ *
+ **********************************************************************************/
+
+
+package org.sakaiproject.time.impl;
+
+import java.util.TimeZone;
+
+/**
+ * <p>
+ * ZoneOffsetTable is one time zone's UTC offsets over a window of years, as a sorted array of the times the offset changes. Within the
+ * window, finding the offset for a UTC time, or the UTC time for a local wall clock time, is a binary search plus an addition. Outside
+ * the window the zone itself is asked.
+ * </p>
+ * <p>
+ * Wall clock times that fall in a daylight saving gap or overlap resolve as GregorianCalendar resolves them: each local time uses the
+ * offset of the last change whose local start (change time plus new offset) is not after it - so a time in the gap is read with the
+ * earlier offset, and a time in the overlap with the later one.
+ * </p>
+ */
+public class ZoneOffsetTable
+{
+	/** How far apart we sample the zone's offset looking for changes - closer than any two changes a zone makes. */
+	protected static final long SAMPLE_MS = 24L * 60L * 60L * 1000L;
+
+	/** Wall clock times this close to the window edges go to the zone, in case the offset there reaches across the edge. */
+	protected static final long EDGE_MS = 2L * SAMPLE_MS;
+
+	/** The time zone. */
+	protected final TimeZone m_zone;
+
+	/** The start of the window, UTC. */
+	protected final long m_start;
+
+	/** Just past the end of the window, UTC. */
+	protected final long m_end;
+
+	/** The UTC times each offset starts, ascending; the first is the window start. */
+	protected final long[] m_changes;
+
+	/** The local (wall clock) times each offset starts - the change time plus the new offset. */
+	protected final long[] m_wallChanges;
+
+	/** The offset (ms) starting at each change. */
+	protected final int[] m_offsets;
+
+	/**
+	 * Construct, finding the zone's offset changes from the start of the first year through the end of the last (as GMT years).
+	 * 
+	 * @param zone
+	 *        The time zone.
+	 * @param firstYear
+	 *        The first year of the window.
+	 * @param lastYear
+	 *        The last year of the window.
+	 */
+	public ZoneOffsetTable(TimeZone zone, int firstYear, int lastYear)
+	{
+		m_zone = (TimeZone) zone.clone();
+		m_start = GmtTimestampFormat.daysFromCivil(firstYear, 1, 1) * GmtTimestampFormat.MS_PER_DAY;
+		m_end = GmtTimestampFormat.daysFromCivil(lastYear + 1, 1, 1) * GmtTimestampFormat.MS_PER_DAY;
+
+		// sample the offset, and narrow down each change found to the ms
+		long[] changes = new long[16];
+		int[] offsets = new int[16];
+		int count = 0;
+		changes[count] = m_start;
+		offsets[count++] = m_zone.getOffset(m_start);
+		for (long t = m_start; t < m_end; t += SAMPLE_MS)
+		{
+			long next = Math.min(t + SAMPLE_MS, m_end - 1);
+			int offset = m_zone.getOffset(next);
+			if (offset == offsets[count - 1]) continue;
+
+			// the offset is unchanged at lo and changed at hi
+			long lo = t;
+			long hi = next;
+			while (hi - lo > 1)
+			{
+				long mid = lo + (hi - lo) / 2;
+				if (m_zone.getOffset(mid) == offsets[count - 1])
+				{
+					lo = mid;
+				}
+				else
+				{
+					hi = mid;
+				}
+			}
+
+			if (count == changes.length)
+			{
+				long[] newChanges = new long[count * 2];
+				int[] newOffsets = new int[count * 2];
+				System.arraycopy(changes, 0, newChanges, 0, count);
+				System.arraycopy(offsets, 0, newOffsets, 0, count);
+				changes = newChanges;
+				offsets = newOffsets;
+			}
+			changes[count] = hi;
+			offsets[count++] = offset;
+		}
+
+		m_changes = new long[count];
+		m_wallChanges = new long[count];
+		m_offsets = new int[count];
+		System.arraycopy(changes, 0, m_changes, 0, count);
+		System.arraycopy(offsets, 0, m_offsets, 0, count);
+		for (int i = 0; i < count; i++)
+		{
+			m_wallChanges[i] = m_changes[i] + m_offsets[i];
+		}
+	}
+
+	/**
+	 * @return The time zone (a copy of the one given).
+	 */
+	public TimeZone getZone()
+	{
+		return m_zone;
+	}
+
+	/**
+	 * @return The number of offsets in the table.
+	 */
+	public int size()
+	{
+		return m_offsets.length;
+	}
+
+	/**
+	 * Find the zone's offset at a time, as TimeZone.getOffset(time) does.
+	 * 
+	 * @param time
+	 *        The time, in ms since the epoch.
+	 * @return The offset from UTC, in ms.
+	 */
+	public int getOffset(long time)
+	{
+		if ((time < m_start) || (time >= m_end)) return m_zone.getOffset(time);
+
+		return m_offsets[find(m_changes, time)];
+	}
+
+	/**
+	 * Is this wall clock time inside the window, so toUtc() can place it from the table?
+	 * 
+	 * @param wall
+	 *        The local time, as ms since the epoch of the same fields read as GMT.
+	 * @return true if the table covers it, false if not.
+	 */
+	public boolean covers(long wall)
+	{
+		return (wall >= m_start + EDGE_MS) && (wall < m_end - EDGE_MS);
+	}
+
+	/**
+	 * Find the UTC time of a wall clock time covered by the table.
+	 * 
+	 * @param wall
+	 *        The local time, as ms since the epoch of the same fields read as GMT - see covers().
+	 * @return The time, in ms since the epoch.
+	 */
+	public long toUtc(long wall)
+	{
+		return wall - m_offsets[find(m_wallChanges, wall)];
+	}
+
+	/**
+	 * @return The index of the last value not after the key; the values are ascending and the key is not before the first.
+	 */
+	protected static int find(long[] values, long key)
+	{
+		int low = 0;
+		int high = values.length - 1;
+		while (low < high)
+		{
+			int mid = (low + high + 1) >>> 1;
+			if (values[mid] <= key)
+			{
+				low = mid;
+			}
+			else
+			{
+				high = mid - 1;
+			}
+		}
+		return low;
+	}
+}
@@ -0,0 +1,103 @@
+package org.sakaiproject.time.impl;
+
+import java.text.SimpleDateFormat;
+import java.util.TimeZone;
+
+import junit.framework.TestCase;
+
+public class CompactTimeRangeTest extends TestCase {
+
+	private static final String A = "20070315123456789";
+
+	private static final String B = "20070401000000000";
+
+	private GmtTimestampFormat format;
+
+	private long a;
+
+	private long b;
+
+	protected void setUp() {
+		SimpleDateFormat fallback = new SimpleDateFormat("yyyyMMddHHmmssSSS");
+		fallback.setTimeZone(TimeZone.getTimeZone("GMT"));
+		format = new GmtTimestampFormat(new ThreadLocalDateFormat(fallback), true);
+		a = format.parse(A);
+		b = format.parse(B);
+	}
+
+	private CompactTimeRange parse(String value) {
+		return CompactTimeRange.parse(value, format);
+	}
+
+	public void testSeparators() {
+		assertEquals(new CompactTimeRange(a, b, CompactTimeRange.START_INCLUDED | CompactTimeRange.END_INCLUDED), parse(A + "-" + B));
+		assertEquals(new CompactTimeRange(a, b, CompactTimeRange.END_INCLUDED), parse(A + "[" + B));
+		assertEquals(new CompactTimeRange(a, b, CompactTimeRange.START_INCLUDED), parse(A + "]" + B));
+		assertEquals(new CompactTimeRange(a, b, 0), parse(A + "~" + B));
+
+		// ends out of order are swapped
+		assertEquals(parse(A + "-" + B), parse(B + "-" + A));
+	}
+
+	public void testSingleTime() {
+		CompactTimeRange range = parse(A);
+		assertEquals(a, range.getStart());
+		assertEquals(a, range.getEnd());
+		assertTrue(range.isStartIncluded());
+		assertTrue(range.isEndIncluded());
+		assertEquals(A, range.toString(format));
+
+		assertTrue(CompactTimeRange.isSingleTime(A));
+		assertFalse(CompactTimeRange.isSingleTime(A + "-" + A));
+	}
+
+	public void testDuration() {
+		assertEquals(new CompactTimeRange(a, a + 1000, CompactTimeRange.START_INCLUDED | CompactTimeRange.END_INCLUDED), parse(A + "-=1000"));
+		assertEquals(new CompactTimeRange(b - 60000, b, CompactTimeRange.START_INCLUDED), parse("=60000]" + B));
+		assertEquals(new CompactTimeRange(a, a, 0), parse(A + "~=0"));
+	}
+
+	public void testRoundTrip() {
+		String[] separators = { "-", "[", "]", "~" };
+		for (int i = 0; i < separators.length; i++) {
+			String value = A + separators[i] + B;
+			CompactTimeRange range = parse(value);
+			assertEquals(value, range.toString(format));
+			assertEquals(range, parse(range.toString(format)));
+		}
+
+		for (int flags = 0; flags < 4; flags++) {
+			CompactTimeRange range = new CompactTimeRange(b, a, flags);
+			assertEquals(range, parse(range.toString(format)));
+		}
+	}
+
+	public void testMalformed() {
+		String[] bad = { "", "-" + B, A + "-", A + "-" + B + "-" + A, A + "[" + B + "~" + A, "=1-=2", "=5", "garbage", A + "-garbage",
+				A + "-=x", "=x]" + B };
+		for (int i = 0; i < bad.length; i++) {
+			try {
+				parse(bad[i]);
+				fail("parsed: " + bad[i]);
+			} catch (IllegalArgumentException e) {
+			}
+		}
+	}
+
+	public void testMyTimeRangeSingleTime() {
+		BasicTimeService service = new BasicTimeService();
+		service.init();
+
+		// a single time is one Time for both start and end, as for a range made from a single Time
+		BasicTimeService.MyTimeRange single = (BasicTimeService.MyTimeRange) service.newTimeRange(A);
+		assertSame(single.m_startTime, single.m_endTime);
+		assertEquals(a, single.m_startTime.getTime());
+
+		BasicTimeService.MyTimeRange range = (BasicTimeService.MyTimeRange) service.newTimeRange(A + "-" + A);
+		assertNotSame(range.m_startTime, range.m_endTime);
+		assertEquals(A + "-" + B, service.newTimeRange(A + "-" + B).toString());
+
+		BasicTimeService.MyTimeRange failed = (BasicTimeService.MyTimeRange) service.newTimeRange("garbage");
+		assertSame(failed.m_startTime, failed.m_endTime);
+	}
+}
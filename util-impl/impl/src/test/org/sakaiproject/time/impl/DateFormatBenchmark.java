@@ -0,0 +1,125 @@
+package org.sakaiproject.time.impl;
+
+import java.text.DateFormat;
+import java.util.Date;
+import java.util.Locale;
+import java.util.TimeZone;
+
+/**
+ * Compares ThreadLocalDateFormat, ThreadCachedDateFormat and one shared, synchronized format as the number of threads grows, and measures
+ * what one copy of a local format costs in memory. Run by hand: java org.sakaiproject.time.impl.DateFormatBenchmark [calls per thread]
+ * [threads...]
+ */
+public class DateFormatBenchmark {
+
+	private static final long START = 1190000000000L;
+
+	/** Holds the copies being measured, so they stay reachable. */
+	private static Object[] copies;
+
+	public static void main(String[] args) throws Exception {
+		int calls = (args.length > 0) ? Integer.parseInt(args[0]) : 200000;
+		int[] threads = { 1, 2, 4, 8, 16 };
+		if (args.length > 1) {
+			threads = new int[args.length - 1];
+			for (int i = 1; i < args.length; i++) {
+				threads[i - 1] = Integer.parseInt(args[i]);
+			}
+		}
+
+		// a few formats, as for the time zone / locales of a handful of users, and more than a thread keeps copies of
+		ThreadCachedDateFormat[] few = cached(8);
+		ThreadCachedDateFormat[] many = cached(ThreadCachedDateFormat.MAX_COPIES * 2);
+
+		System.out.println(Runtime.getRuntime().availableProcessors() + " cpus, " + calls + " calls per thread");
+		System.out.println("threads\tthread local ms\tcached, 8 formats ms\tcached, " + many.length + " formats ms\tsynchronized ms");
+		for (int i = 0; i < threads.length; i++) {
+			ThreadLocalDateFormat perThread = new ThreadLocalDateFormat(localFormat());
+			DateFormat shared = localFormat();
+			// warm up each
+			run(1, calls, perThread, null, null);
+			run(1, calls, null, few, null);
+			run(1, calls, null, many, null);
+			run(1, calls, null, null, shared);
+			long a = run(threads[i], calls, perThread, null, null);
+			long b = run(threads[i], calls, null, few, null);
+			long c = run(threads[i], calls, null, many, null);
+			long d = run(threads[i], calls, null, null, shared);
+			System.out.println(threads[i] + "\t" + a + "\t" + b + "\t" + c + "\t" + d);
+		}
+
+		long copy = copyBytes();
+		System.out.println("one copy of a local format: about " + copy + " bytes");
+		System.out.println("threads\tmost copies held, MB");
+		int[] pools = { 50, 200, 500 };
+		for (int p = 0; p < pools.length; p++) {
+			System.out.println(pools[p] + "\t" + (pools[p] * (long) ThreadCachedDateFormat.MAX_COPIES * copy / (1024 * 1024)));
+		}
+	}
+
+	private static DateFormat localFormat() {
+		DateFormat format = DateFormat.getDateTimeInstance(DateFormat.MEDIUM, DateFormat.SHORT, Locale.FRANCE);
+		format.setTimeZone(TimeZone.getTimeZone("Europe/Paris"));
+		return format;
+	}
+
+	private static ThreadCachedDateFormat[] cached(int count) {
+		ThreadCachedDateFormat[] formats = new ThreadCachedDateFormat[count];
+		for (int i = 0; i < count; i++) {
+			formats[i] = new ThreadCachedDateFormat(localFormat());
+		}
+		return formats;
+	}
+
+	private static long run(int threads, final int calls, final ThreadLocalDateFormat perThread, final ThreadCachedDateFormat[] cached,
+			final DateFormat shared) throws InterruptedException {
+		Thread[] workers = new Thread[threads];
+		for (int t = 0; t < threads; t++) {
+			workers[t] = new Thread() {
+				public void run() {
+					StringBuffer buf = new StringBuffer();
+					Date date = new Date();
+					for (int i = 0; i < calls; i++) {
+						buf.setLength(0);
+						long time = START + i * 60013L;
+						if (perThread != null) {
+							perThread.format(time, buf);
+						} else if (cached != null) {
+							cached[i % cached.length].format(time, buf);
+						} else {
+							synchronized (shared) {
+								date.setTime(time);
+								buf.append(shared.format(date));
+							}
+						}
+					}
+				}
+			};
+		}
+
+		long start = System.currentTimeMillis();
+		for (int t = 0; t < threads; t++) {
+			workers[t].start();
+		}
+		for (int t = 0; t < threads; t++) {
+			workers[t].join();
+		}
+		return System.currentTimeMillis() - start;
+	}
+
+	private static long copyBytes() {
+		DateFormat prototype = localFormat();
+		copies = new Object[2000];
+		Runtime runtime = Runtime.getRuntime();
+		System.gc();
+		long before = runtime.totalMemory() - runtime.freeMemory();
+		for (int i = 0; i < copies.length; i++) {
+			copies[i] = prototype.clone();
+		}
+		System.gc();
+		long after = runtime.totalMemory() - runtime.freeMemory();
+		long bytes = (after - before) / copies.length;
+		copies = null;
+		return bytes;
+	}
+}
@@ -0,0 +1,91 @@
+package org.sakaiproject.time.impl;
+
+import java.util.Random;
+
+import junit.framework.TestCase;
+
+public class ExpiringCacheTest extends TestCase {
+
+	public void testGetPut() {
+		ExpiringCache cache = new ExpiringCache(10, 0);
+		assertNull(cache.get("a"));
+		cache.put("a", "A");
+		assertEquals("A", cache.get("a"));
+		cache.put("a", "AA");
+		assertEquals("AA", cache.get("a"));
+		cache.remove("a");
+		assertNull(cache.get("a"));
+		assertEquals(2, cache.getHits());
+		assertEquals(2, cache.getMisses());
+	}
+
+	public void testSize() {
+		ExpiringCache cache = new ExpiringCache(100, 0);
+		for (int i = 0; i < 1000; i++) {
+			cache.put(new Integer(i), "v" + i);
+			assertTrue(cache.size() <= 100);
+		}
+		assertEquals(1000 - cache.size(), cache.getEvictions());
+
+		// the latest put is kept
+		assertEquals("v999", cache.get(new Integer(999)));
+	}
+
+	public void testLeastRecentlyUsedGoFirst() throws InterruptedException {
+		ExpiringCache cache = new ExpiringCache(100, 0);
+		for (int i = 0; i < 100; i++) {
+			cache.put(new Integer(i), "v" + i);
+		}
+		Thread.sleep(5);
+		for (int i = 0; i < 50; i++) {
+			cache.get(new Integer(i));
+		}
+		Thread.sleep(5);
+
+		// over the size: the sweep drops the 50 not used since they were put, first
+		cache.put(new Integer(100), "v100");
+		assertEquals(90, cache.size());
+		for (int i = 0; i < 50; i++) {
+			assertEquals("v" + i, cache.get(new Integer(i)));
+		}
+		assertEquals("v100", cache.get(new Integer(100)));
+	}
+
+	public void testExpiry() throws InterruptedException {
+		ExpiringCache cache = new ExpiringCache(10, 20);
+		cache.put("a", "A");
+		assertEquals("A", cache.get("a"));
+		Thread.sleep(30);
+		assertNull(cache.get("a"));
+		assertEquals(1, cache.getExpirations());
+		assertEquals(0, cache.size());
+	}
+
+	public void testThreads() throws InterruptedException {
+		final ExpiringCache cache = new ExpiringCache(500, 0);
+		Thread[] threads = new Thread[4];
+		for (int t = 0; t < threads.length; t++) {
+			final Random random = new Random(t);
+			threads[t] = new Thread() {
+				public void run() {
+					for (int i = 0; i < 20000; i++) {
+						Integer key = new Integer(random.nextInt(2000));
+						Object value = cache.get(key);
+						if (value == null) {
+							cache.put(key, "v" + key);
+						} else {
+							assertEquals("v" + key, value);
+						}
+					}
+				}
+			};
+			threads[t].start();
+		}
+		for (int t = 0; t < threads.length; t++) {
+			threads[t].join();
+		}
+
+		assertTrue(cache.size() <= 500);
+		assertEquals(80000, cache.getHits() + cache.getMisses());
+	}
+}
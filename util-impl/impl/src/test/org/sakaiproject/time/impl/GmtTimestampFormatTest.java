@@ -0,0 +1,172 @@
+package org.sakaiproject.time.impl;
+
+import java.text.ParsePosition;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.GregorianCalendar;
+import java.util.Random;
+import java.util.TimeZone;
+
+import junit.framework.TestCase;
+
+public class GmtTimestampFormatTest extends TestCase {
+
+	private static final TimeZone GMT = TimeZone.getTimeZone("GMT");
+
+	private SimpleDateFormat simpleA;
+
+	private SimpleDateFormat simpleE;
+
+	private GmtTimestampFormat formatA;
+
+	private GmtTimestampFormat formatE;
+
+	private Random random;
+
+	protected void setUp() {
+		simpleA = simple("yyyyMMddHHmmssSSS");
+		simpleE = simple("yyyyMMddHHmmss");
+		formatA = new GmtTimestampFormat(new ThreadLocalDateFormat(simple("yyyyMMddHHmmssSSS")), true);
+		formatE = new GmtTimestampFormat(new ThreadLocalDateFormat(simple("yyyyMMddHHmmss")), false);
+		random = new Random(38);
+	}
+
+	private SimpleDateFormat simple(String pattern) {
+		SimpleDateFormat format = new SimpleDateFormat(pattern);
+		format.setTimeZone(GMT);
+		return format;
+	}
+
+	/**
+	 * @return A time from about 1500 to 10500, the range handled directly and a century either side.
+	 */
+	private long randomTime() {
+		long low = GmtTimestampFormat.MIN_TIME - 100L * 365 * GmtTimestampFormat.MS_PER_DAY;
+		long high = GmtTimestampFormat.MAX_TIME + 500L * 365 * GmtTimestampFormat.MS_PER_DAY;
+		return low + (long) (random.nextDouble() * (high - low));
+	}
+
+	private long[] edges() {
+		long min = GmtTimestampFormat.MIN_TIME;
+		long max = GmtTimestampFormat.MAX_TIME;
+		return new long[] { min - 1, min, min + 1, max - 1, max, max + 1, -1, 0, 1, -GmtTimestampFormat.MS_PER_DAY,
+				-GmtTimestampFormat.MS_PER_DAY - 1, 951782400000L /* 2000-02-29 */, 4107542399999L /* 2100-02-28 23:59:59.999 */};
+	}
+
+	private void assertFormat(long time) {
+		Date date = new Date(time);
+		assertEquals(String.valueOf(time), simpleA.format(date), formatA.format(time));
+		assertEquals(String.valueOf(time), simpleE.format(date), formatE.format(time));
+
+		char[] buf = new char[40];
+		int end = formatA.format(time, buf, 3);
+		assertEquals(simpleA.format(date), new String(buf, 3, end - 3));
+	}
+
+	public void testFormat() {
+		long[] edges = edges();
+		for (int i = 0; i < edges.length; i++) {
+			assertFormat(edges[i]);
+		}
+		for (int i = 0; i < 20000; i++) {
+			assertFormat(randomTime());
+		}
+
+		// before the epoch, a little at a time, where rounding the days down matters
+		for (long time = -3 * GmtTimestampFormat.MS_PER_DAY; time < GmtTimestampFormat.MS_PER_DAY; time += 3599999L) {
+			assertFormat(time);
+		}
+	}
+
+	/**
+	 * Assert the parse matches SimpleDateFormat's, both failing alike if it can't parse.
+	 */
+	private void assertParse(GmtTimestampFormat format, SimpleDateFormat simple, String value) {
+		Date expected = simple.parse(value, new ParsePosition(0));
+		try {
+			long time = format.parse(value);
+			assertNotNull(value + " parsed as " + time, expected);
+			assertEquals(value, expected.getTime(), time);
+		} catch (NullPointerException e) {
+			assertNull(value + " not parsed", expected);
+		}
+	}
+
+	public void testParse() {
+		long[] edges = edges();
+		for (int i = 0; i < edges.length; i++) {
+			assertParse(formatA, simpleA, simpleA.format(new Date(edges[i])));
+			assertParse(formatE, simpleE, simpleE.format(new Date(edges[i])));
+		}
+		for (int i = 0; i < 20000; i++) {
+			long time = randomTime();
+			assertParse(formatA, simpleA, simpleA.format(new Date(time)));
+			assertParse(formatE, simpleE, simpleE.format(new Date(time)));
+		}
+
+		assertEquals(GmtTimestampFormat.MIN_TIME, formatA.parse("16000101000000000"));
+		assertEquals(GmtTimestampFormat.MAX_TIME - 1, formatA.parse("99991231235959999"));
+		assertEquals(GmtTimestampFormat.MAX_TIME - 1000, formatE.parse("99991231235959"));
+	}
+
+	public void testParseFallback() {
+		String[] values = {
+				// before 1600, in the Julian calendar
+				"15991231235959999", "15821015000000000", "15821004235959999", "00010101000000000",
+				// the wrong length
+				"2007031512345678", "200703151234567890", "2007", "", "200703151234",
+				// not all digits
+				"2007-03-15123456789", "2007031512345678x", "20070315 23456789", "-2007031512345678", "+2007031512345678",
+				"\u0662\u0660\u0660\u06670315123456789", "abcdefghijklmnopq",
+				// fields out of range, which SimpleDateFormat carries over
+				"20070230123456789", "20070229000000000", "21000229000000000", "20071301000000000", "20070001000000000",
+				"20070100000000000", "20070315240000000", "20070315126000000", "20070315123460000", "00000315123456789" };
+		for (int i = 0; i < values.length; i++) {
+			assertParse(formatA, simpleA, values[i]);
+		}
+
+		String[] short14 = { "20070230123456", "20071301000000", "2007031512345", "200703151234567", "2007031512345x", "15991231235959",
+				"20070315240000", "20070315126000", "20070315123460" };
+		for (int i = 0; i < short14.length; i++) {
+			assertParse(formatE, simpleE, short14[i]);
+		}
+
+		// leap days in range are parsed directly
+		assertEquals(951782400000L, formatA.parse("20000229000000000"));
+	}
+
+	public void testBreakdown() {
+		int[] fields = new int[7];
+		GregorianCalendar calendar = new GregorianCalendar(GMT);
+		for (int i = 0; i < 20000; i++) {
+			long time = randomTime();
+			boolean inRange = (time >= GmtTimestampFormat.MIN_TIME) && (time < GmtTimestampFormat.MAX_TIME);
+			assertEquals(inRange, GmtTimestampFormat.breakdown(time, fields));
+			if (!inRange) continue;
+
+			calendar.setTimeInMillis(time);
+			assertEquals(calendar.get(GregorianCalendar.YEAR), fields[0]);
+			assertEquals(calendar.get(GregorianCalendar.MONTH) + 1, fields[1]);
+			assertEquals(calendar.get(GregorianCalendar.DAY_OF_MONTH), fields[2]);
+			assertEquals(calendar.get(GregorianCalendar.HOUR_OF_DAY), fields[3]);
+			assertEquals(calendar.get(GregorianCalendar.MINUTE), fields[4]);
+			assertEquals(calendar.get(GregorianCalendar.SECOND), fields[5]);
+			assertEquals(calendar.get(GregorianCalendar.MILLISECOND), fields[6]);
+		}
+
+		assertTrue(GmtTimestampFormat.breakdown(GmtTimestampFormat.MIN_TIME, fields));
+		assertEquals(1600, fields[0]);
+		assertTrue(GmtTimestampFormat.breakdown(GmtTimestampFormat.MAX_TIME - 1, fields));
+		assertEquals(9999, fields[0]);
+		assertEquals(999, fields[6]);
+		assertFalse(GmtTimestampFormat.breakdown(GmtTimestampFormat.MIN_TIME - 1, fields));
+		assertFalse(GmtTimestampFormat.breakdown(GmtTimestampFormat.MAX_TIME, fields));
+
+		assertTrue(GmtTimestampFormat.breakdown(-1, fields));
+		assertEquals(1969, fields[0]);
+		assertEquals(12, fields[1]);
+		assertEquals(31, fields[2]);
+		assertEquals(23, fields[3]);
+		assertEquals(999, fields[6]);
+	}
+}
@@ -0,0 +1,107 @@
+package org.sakaiproject.time.impl;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Random;
+
+import junit.framework.TestCase;
+
+import org.sakaiproject.time.api.TimeRange;
+import org.sakaiproject.time.api.TimeRangeIndex;
+
+public class MyTimeRangeIndexTest extends TestCase {
+
+	private BasicTimeService service;
+
+	private Random random;
+
+	protected void setUp() {
+		service = new BasicTimeService();
+		random = new Random(42);
+	}
+
+	private TimeRange range(long start, long end, boolean startIncluded, boolean endIncluded) {
+		return service.newTimeRange(service.newTime(start), service.newTime(end), startIncluded, endIncluded);
+	}
+
+	private TimeRange randomRange(int span, int length) {
+		long start = random.nextInt(span);
+		return range(start, start + random.nextInt(length), random.nextBoolean(), random.nextBoolean());
+	}
+
+	private boolean isEmpty(TimeRange range) {
+		return range.firstTime().getTime() > range.lastTime().getTime();
+	}
+
+	private void assertSameRanges(List expected, List actual) {
+		assertEquals(expected.size(), actual.size());
+		for (Iterator i = expected.iterator(); i.hasNext();) {
+			assertTrue(actual.contains(i.next()));
+		}
+		for (int i = 1; i < actual.size(); i++) {
+			long before = ((TimeRange) actual.get(i - 1)).firstTime().getTime();
+			assertTrue(before <= ((TimeRange) actual.get(i)).firstTime().getTime());
+		}
+	}
+
+	public void testSmall() {
+		List ranges = new ArrayList();
+		TimeRange a = range(0, 100, true, true);
+		TimeRange b = range(50, 60, true, false);
+		TimeRange c = range(90, 200, false, true);
+		TimeRange empty = range(10, 10, false, false);
+		ranges.add(c);
+		ranges.add(a);
+		ranges.add(b);
+		ranges.add(empty);
+		TimeRangeIndex index = new MyTimeRangeIndex(ranges);
+
+		assertEquals(3, index.size());
+		assertEquals(1, index.getContaining(service.newTime(60)).size());
+		assertEquals(2, index.getContaining(service.newTime(59)).size());
+		assertEquals(1, index.getContaining(service.newTime(90)).size());
+		assertEquals(0, index.getContaining(service.newTime(201)).size());
+		assertEquals(1, index.getContaining(range(55, 95, true, true)).size());
+		assertEquals(0, index.getContaining(range(95, 201, true, true)).size());
+		assertEquals(3, index.getOverlapping(range(55, 95, true, true)).size());
+		assertEquals(1, index.getOverlapping(range(100, 150, false, true)).size());
+	}
+
+	public void testRandom() {
+		for (int round = 0; round < 20; round++) {
+			List ranges = new ArrayList();
+			List indexed = new ArrayList();
+			int count = random.nextInt(300);
+			for (int i = 0; i < count; i++) {
+				TimeRange range = randomRange(1000, (round % 2 == 0) ? 20 : 400);
+				ranges.add(range);
+				if (!isEmpty(range)) indexed.add(range);
+			}
+			TimeRangeIndex index = new MyTimeRangeIndex(ranges);
+			assertEquals(indexed.size(), index.size());
+
+			for (int q = 0; q < 200; q++) {
+				long time = random.nextInt(1100) - 50;
+				List containingTime = new ArrayList();
+				for (Iterator i = indexed.iterator(); i.hasNext();) {
+					TimeRange range = (TimeRange) i.next();
+					if (range.contains(service.newTime(time))) containingTime.add(range);
+				}
+				assertSameRanges(containingTime, index.getContaining(service.newTime(time)));
+
+				TimeRange query = randomRange(1100, 100);
+				if (isEmpty(query)) continue;
+				List containing = new ArrayList();
+				List overlapping = new ArrayList();
+				for (Iterator i = indexed.iterator(); i.hasNext();) {
+					TimeRange range = (TimeRange) i.next();
+					if (range.contains(query)) containing.add(range);
+					if (range.overlaps(query)) overlapping.add(range);
+				}
+				assertSameRanges(containing, index.getContaining(query));
+				assertSameRanges(overlapping, index.getOverlapping(query));
+			}
+		}
+	}
+}
@@ -0,0 +1,139 @@
+package org.sakaiproject.time.impl;
+
+import java.text.DateFormatSymbols;
+import java.text.DecimalFormatSymbols;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.Locale;
+import java.util.Random;
+import java.util.TimeZone;
+
+import junit.framework.TestCase;
+
+public class Rfc822FormatTest extends TestCase {
+
+	/** English locales (en_GB may have "Sept"), others with their own names, and some with their own digits. */
+	private static final Locale[] LOCALES = { Locale.US, Locale.UK, Locale.CANADA, new Locale("en", "AU"), new Locale("en", "IN"),
+			Locale.FRANCE, Locale.GERMANY, Locale.JAPAN, new Locale("ar", "EG"), new Locale("hi", "IN"), new Locale("th", "TH", "TH") };
+
+	/** Zones with half and quarter hour offsets, and ones whose local mean time offsets had seconds, before 1916 and 1972. */
+	private static final String[] ZONES = { "GMT", "America/New_York", "Asia/Kolkata", "Asia/Kathmandu", "Australia/Lord_Howe",
+			"America/St_Johns", "Africa/Monrovia", "Europe/Dublin" };
+
+	private Random random;
+
+	protected void setUp() {
+		random = new Random(822);
+	}
+
+	private SimpleDateFormat simple(TimeZone zone, Locale locale) {
+		SimpleDateFormat format = new SimpleDateFormat(Rfc822Format.PATTERN, locale);
+		format.setTimeZone(zone);
+		return format;
+	}
+
+	/**
+	 * @return A time from about 1500 to 10500.
+	 */
+	private long randomTime() {
+		long low = GmtTimestampFormat.MIN_TIME - 100L * 365 * GmtTimestampFormat.MS_PER_DAY;
+		long high = GmtTimestampFormat.MAX_TIME + 500L * 365 * GmtTimestampFormat.MS_PER_DAY;
+		return low + (long) (random.nextDouble() * (high - low));
+	}
+
+	/**
+	 * @return A time from 1900 to 1980, when many zones still had offsets with seconds in them.
+	 */
+	private long earlyTime() {
+		long low = GmtTimestampFormat.daysFromCivil(1900, 1, 1) * GmtTimestampFormat.MS_PER_DAY;
+		long high = GmtTimestampFormat.daysFromCivil(1980, 1, 1) * GmtTimestampFormat.MS_PER_DAY;
+		return low + (long) (random.nextDouble() * (high - low));
+	}
+
+	public void testMatchesSimpleDateFormat() {
+		for (int z = 0; z < ZONES.length; z++) {
+			TimeZone zone = TimeZone.getTimeZone(ZONES[z]);
+			for (int l = 0; l < LOCALES.length; l++) {
+				Rfc822Format format = new Rfc822Format(zone, LOCALES[l]);
+				SimpleDateFormat simple = simple(zone, LOCALES[l]);
+				for (int i = 0; i < 1000; i++) {
+					long time = (i % 2 == 0) ? randomTime() : earlyTime();
+					assertEquals(ZONES[z] + " " + LOCALES[l] + " " + time, simple.format(new Date(time)), format.format(time));
+				}
+			}
+		}
+	}
+
+	public void testDirect() {
+		for (int l = 0; l < LOCALES.length; l++) {
+			DateFormatSymbols symbols = new SimpleDateFormat(Rfc822Format.PATTERN, LOCALES[l]).getDateFormatSymbols();
+			boolean english = "Sep".equals(symbols.getShortMonths()[8]) && "Tue".equals(symbols.getShortWeekdays()[3]);
+			boolean digits = new DecimalFormatSymbols(LOCALES[l]).getZeroDigit() == '0';
+			Rfc822Format format = new Rfc822Format(TimeZone.getTimeZone("GMT"), LOCALES[l]);
+			assertEquals(LOCALES[l].toString(), english && digits, format.m_direct);
+		}
+		assertTrue(new Rfc822Format(TimeZone.getTimeZone("GMT"), Locale.US).m_direct);
+		assertFalse(new Rfc822Format(TimeZone.getTimeZone("GMT"), Locale.FRANCE).m_direct);
+
+		// where en_GB says "Sept", we must not say "Sep"
+		Rfc822Format british = new Rfc822Format(TimeZone.getTimeZone("Europe/London"), Locale.UK);
+		if ("Sept".equals(new DateFormatSymbols(Locale.UK).getShortMonths()[8])) {
+			assertFalse(british.m_direct);
+		}
+		long september = GmtTimestampFormat.daysFromCivil(2007, 9, 4) * GmtTimestampFormat.MS_PER_DAY + 12L * 3600000L;
+		assertEquals(simple(TimeZone.getTimeZone("Europe/London"), Locale.UK).format(new Date(september)), british.format(september));
+
+		// a locale with its own digits goes to SimpleDateFormat, whatever its names
+		Locale arabic = new Locale("ar", "EG");
+		if (new DecimalFormatSymbols(arabic).getZeroDigit() != '0') {
+			assertFalse(new Rfc822Format(TimeZone.getTimeZone("GMT"), arabic).m_direct);
+		}
+	}
+
+	private void assertSubMinute(String id, int year) {
+		TimeZone zone = TimeZone.getTimeZone(id);
+		long time = GmtTimestampFormat.daysFromCivil(year, 6, 1) * GmtTimestampFormat.MS_PER_DAY;
+		assertTrue(id + " " + year, zone.getOffset(time) % 60000 != 0);
+		Rfc822Format format = new Rfc822Format(zone, Locale.US);
+		assertTrue(format.m_direct);
+		assertEquals(simple(zone, Locale.US).format(new Date(time)), format.format(time));
+	}
+
+	public void testSubMinuteOffset() {
+		// local mean time offsets, which "Z" gives without their seconds: Monrovia -00:44:30 until 1972, Dublin -00:25:21 until 1916
+		assertSubMinute("Africa/Monrovia", 1960);
+		assertSubMinute("Europe/Dublin", 1910);
+	}
+
+	public void testMemo() {
+		TimeZone zone = TimeZone.getTimeZone("America/New_York");
+		Rfc822Format format = new Rfc822Format(zone, Locale.US);
+		SimpleDateFormat simple = simple(zone, Locale.US);
+
+		long time = 1181052187000L;
+		String first = format.format(time);
+		assertEquals(simple.format(new Date(time)), first);
+
+		// the same second, remembered
+		assertSame(first, format.format(time));
+		assertSame(first, format.format(time + 999));
+
+		// the next second, and one sharing the slot
+		assertEquals(simple.format(new Date(time + 1000)), format.format(time + 1000));
+		long slotmate = time + Rfc822Format.MEMO_SIZE * 1000L;
+		assertEquals(simple.format(new Date(slotmate)), format.format(slotmate));
+		assertEquals(first, format.format(time));
+
+		// seconds before the epoch round down
+		assertEquals(simple.format(new Date(-1)), format.format(-1));
+		assertEquals(simple.format(new Date(-1000)), format.format(-1000));
+		assertEquals(simple.format(new Date(-1001)), format.format(-1001));
+		assertEquals(simple.format(new Date(0)), format.format(0));
+
+		// many times, cycling through the slots
+		for (int i = 0; i < 5000; i++) {
+			long t = time + (random.nextInt(200) - 100) * 1000L + random.nextInt(1000);
+			assertEquals(simple.format(new Date(t)), format.format(t));
+		}
+	}
+}
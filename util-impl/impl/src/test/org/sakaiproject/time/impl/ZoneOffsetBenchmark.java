@@ -0,0 +1,114 @@
+package org.sakaiproject.time.impl;
+
+import java.util.GregorianCalendar;
+import java.util.Random;
+import java.util.TimeZone;
+
+/**
+ * Builds ZoneOffsetTables for a set of zones, timing each, then times getOffset() against TimeZone.getOffset() and toUtc() against
+ * GregorianCalendar - both a new calendar per call, as BasicTimeService made before, and one calendar reused. Run by hand: java
+ * org.sakaiproject.time.impl.ZoneOffsetBenchmark [calls] [zone ids...]
+ */
+public class ZoneOffsetBenchmark {
+
+	/** Time zones of users, by default. */
+	private static final String[] ZONES = { "America/New_York", "America/Los_Angeles", "Europe/London", "Europe/Paris",
+			"Asia/Kolkata", "Asia/Tokyo", "Australia/Sydney", "Australia/Lord_Howe", "GMT" };
+
+	/** The years the table covers - BasicTimeService's default. */
+	private static final int FIRST_YEAR = 1970;
+
+	private static final int LAST_YEAR = 2037;
+
+	public static void main(String[] args) {
+		int calls = (args.length > 0) ? Integer.parseInt(args[0]) : 2000000;
+		String[] ids = ZONES;
+		if (args.length > 1) {
+			ids = new String[args.length - 1];
+			System.arraycopy(args, 1, ids, 0, ids.length);
+		}
+
+		// times and wall clock times spread over the years the tables cover
+		Random random = new Random(44);
+		long first = GmtTimestampFormat.daysFromCivil(FIRST_YEAR + 1, 1, 1) * GmtTimestampFormat.MS_PER_DAY;
+		long last = GmtTimestampFormat.daysFromCivil(LAST_YEAR - 1, 1, 1) * GmtTimestampFormat.MS_PER_DAY;
+		long[] times = new long[4096];
+		int[][] fields = new int[times.length][7];
+		for (int i = 0; i < times.length; i++) {
+			times[i] = first + (long) (random.nextDouble() * (last - first));
+			GmtTimestampFormat.breakdown(times[i], fields[i]);
+		}
+
+		// build each table twice, timing the second - the first loads the zone's rules
+		ZoneOffsetTable[] tables = new ZoneOffsetTable[ids.length];
+		System.out.println("zone\toffsets\tbuild ms");
+		for (int z = 0; z < ids.length; z++) {
+			TimeZone zone = TimeZone.getTimeZone(ids[z]);
+			new ZoneOffsetTable(zone, FIRST_YEAR, LAST_YEAR);
+			long start = System.nanoTime();
+			tables[z] = new ZoneOffsetTable(zone, FIRST_YEAR, LAST_YEAR);
+			System.out.println(ids[z] + "\t" + tables[z].size() + "\t" + (System.nanoTime() - start) / 1000000.0);
+		}
+
+		System.out.println(calls + " calls per zone");
+		System.out.println("zone\ttable getOffset ms\tTimeZone.getOffset ms\ttable toUtc ms\tnew calendar ms\treused calendar ms");
+		for (int z = 0; z < ids.length; z++) {
+			ZoneOffsetTable table = tables[z];
+			TimeZone zone = table.getZone();
+			long[] result = new long[5];
+			for (int warm = 0; warm < 2; warm++) {
+				long sum = 0;
+				long start = System.nanoTime();
+				for (int i = 0; i < calls; i++) {
+					sum += table.getOffset(times[i & 4095]);
+				}
+				result[0] = System.nanoTime() - start;
+
+				start = System.nanoTime();
+				for (int i = 0; i < calls; i++) {
+					sum -= zone.getOffset(times[i & 4095]);
+				}
+				result[1] = System.nanoTime() - start;
+
+				start = System.nanoTime();
+				for (int i = 0; i < calls; i++) {
+					int[] f = fields[i & 4095];
+					long wall = GmtTimestampFormat.daysFromCivil(f[0], f[1], f[2]) * GmtTimestampFormat.MS_PER_DAY + f[3] * 3600000L
+							+ f[4] * 60000L + f[5] * 1000L + f[6];
+					sum += table.toUtc(wall);
+				}
+				result[2] = System.nanoTime() - start;
+
+				start = System.nanoTime();
+				for (int i = 0; i < calls / 10; i++) {
+					int[] f = fields[i & 4095];
+					GregorianCalendar calendar = new GregorianCalendar(f[0], f[1] - 1, f[2], f[3], f[4], f[5]);
+					calendar.setTimeZone(zone);
+					calendar.set(GregorianCalendar.MILLISECOND, f[6]);
+					sum -= calendar.getTimeInMillis();
+				}
+				result[3] = (System.nanoTime() - start) * 10;
+
+				GregorianCalendar calendar = new GregorianCalendar(zone);
+				start = System.nanoTime();
+				for (int i = 0; i < calls; i++) {
+					int[] f = fields[i & 4095];
+					calendar.clear();
+					calendar.set(f[0], f[1] - 1, f[2], f[3], f[4], f[5]);
+					calendar.set(GregorianCalendar.MILLISECOND, f[6]);
+					sum -= calendar.getTimeInMillis();
+				}
+				result[4] = System.nanoTime() - start;
+
+				if (sum == 42) {
+					System.out.println();
+				}
+			}
+			StringBuffer line = new StringBuffer(ids[z]);
+			for (int r = 0; r < result.length; r++) {
+				line.append('\t').append(result[r] / 1000000);
+			}
+			System.out.println(line);
+		}
+	}
+}
@@ -0,0 +1,130 @@
+package org.sakaiproject.time.impl;
+
+import java.util.GregorianCalendar;
+import java.util.Random;
+import java.util.TimeZone;
+
+import junit.framework.TestCase;
+
+public class ZoneOffsetTableTest extends TestCase {
+
+	/** A zone without daylight saving, the usual northern and southern ones, a half hour shift, and one that skipped a whole day. */
+	private static final String[] ZONES = { "GMT", "Asia/Kolkata", "America/New_York", "Europe/London", "Australia/Sydney",
+			"Australia/Lord_Howe", "Pacific/Apia" };
+
+	private static final long MINUTE = 60L * 1000L;
+
+	private Random random;
+
+	protected void setUp() {
+		random = new Random(7);
+	}
+
+	private ZoneOffsetTable table(String id) {
+		return new ZoneOffsetTable(TimeZone.getTimeZone(id), 1970, 2037);
+	}
+
+	/**
+	 * @return The UTC time of the wall clock time, as GregorianCalendar resolves it.
+	 */
+	private long calendarUtc(TimeZone zone, long wall) {
+		int[] fields = new int[7];
+		assertTrue(GmtTimestampFormat.breakdown(wall, fields));
+		GregorianCalendar calendar = new GregorianCalendar(fields[0], fields[1] - 1, fields[2], fields[3], fields[4], fields[5]);
+		calendar.setTimeZone(zone);
+		calendar.set(GregorianCalendar.MILLISECOND, fields[6]);
+		return calendar.getTimeInMillis();
+	}
+
+	private void assertWall(ZoneOffsetTable table, long wall) {
+		if (!table.covers(wall)) return;
+		assertEquals(table.getZone().getID() + " " + wall, calendarUtc(table.getZone(), wall), table.toUtc(wall));
+	}
+
+	public void testOffsetAtChanges() {
+		for (int z = 0; z < ZONES.length; z++) {
+			ZoneOffsetTable table = table(ZONES[z]);
+			TimeZone zone = table.getZone();
+			for (int i = 0; i < table.size(); i++) {
+				long change = table.m_changes[i];
+				assertEquals(zone.getOffset(change - 1), table.getOffset(change - 1));
+				assertEquals(zone.getOffset(change), table.getOffset(change));
+				assertEquals(zone.getOffset(change + 1), table.getOffset(change + 1));
+			}
+		}
+
+		// zones that change have their changes found
+		assertEquals(1, table("GMT").size());
+		assertTrue(table("America/New_York").size() > 100);
+	}
+
+	public void testOffsetRandom() {
+		for (int z = 0; z < ZONES.length; z++) {
+			ZoneOffsetTable table = table(ZONES[z]);
+			for (int i = 0; i < 20000; i++) {
+				// 1960 through 2047, so outside the window too
+				long time = (long) ((random.nextDouble() * 88 - 10) * 365.25 * 24 * 60 * MINUTE);
+				assertEquals(table.getZone().getOffset(time), table.getOffset(time));
+			}
+		}
+	}
+
+	public void testToUtcGapsAndOverlaps() {
+		for (int z = 0; z < ZONES.length; z++) {
+			ZoneOffsetTable table = table(ZONES[z]);
+			for (int i = 1; i < table.size(); i++) {
+				// the wall clock times either side of the change: a gap going forward, an overlap going back
+				long change = table.m_changes[i];
+				long before = change + table.m_offsets[i - 1];
+				long after = change + table.m_offsets[i];
+				long from = Math.min(before, after) - 30 * MINUTE;
+				long to = Math.max(before, after) + 30 * MINUTE;
+				for (long wall = from; wall <= to; wall += 15 * MINUTE) {
+					assertWall(table, wall);
+				}
+				assertWall(table, before - 1);
+				assertWall(table, before);
+				assertWall(table, after - 1);
+				assertWall(table, after);
+			}
+		}
+	}
+
+	public void testToUtcRandom() {
+		for (int z = 0; z < ZONES.length; z++) {
+			ZoneOffsetTable table = table(ZONES[z]);
+			for (int i = 0; i < 20000; i++) {
+				long wall = (long) (random.nextDouble() * 68 * 365.25 * 24 * 60 * MINUTE);
+				assertWall(table, wall);
+			}
+		}
+	}
+
+	public void testCovers() {
+		ZoneOffsetTable table = table("America/New_York");
+		long start = GmtTimestampFormat.daysFromCivil(1970, 1, 1) * GmtTimestampFormat.MS_PER_DAY;
+		long end = GmtTimestampFormat.daysFromCivil(2038, 1, 1) * GmtTimestampFormat.MS_PER_DAY;
+		assertFalse(table.covers(start));
+		assertTrue(table.covers(start + 3 * GmtTimestampFormat.MS_PER_DAY));
+		assertTrue(table.covers(end - 3 * GmtTimestampFormat.MS_PER_DAY));
+		assertFalse(table.covers(end - 1));
+	}
+
+	public void testServiceToUtc() {
+		BasicTimeService service = new BasicTimeService();
+		service.init();
+		for (int z = 0; z < ZONES.length; z++) {
+			TimeZone zone = TimeZone.getTimeZone(ZONES[z]);
+			for (int i = 0; i < 2000; i++) {
+				// 1960 through 2047, so outside the tables too, with some out of range fields to carry over
+				int year = 1960 + random.nextInt(88);
+				int month = 1 + random.nextInt(12);
+				int day = 1 + random.nextInt(32);
+				int hour = random.nextInt(25);
+				int minute = random.nextInt(60);
+				long expected = service.getCalendar(zone, year, month - 1, day, hour, minute, 30, 500).getTimeInMillis();
+				assertEquals(expected, service.toUtc(zone, year, month, day, hour, minute, 30, 500));
+			}
+		}
+	}
+}
@@ -0,0 +1,236 @@
+/**********************************************************************************
+ * $URL$
+ * $Id$
+ ***********************************************************************************
+ *
+ * Copyright (c) 2007 The Sakai Foundation.
+ * 
+ * Licensed under the Educational Community License, Version 1.0 (the "License"); 
+ * you may not use this file except in compliance with the License. 
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.opensource.org/licenses/ecl1.php
+ * 
+ * Unless required by applicable law or agreed to in writing, software 
+ * distributed under the License is distributed on an "AS IS" BASIS, 
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. 
+ * See the License for the specific language governing permissions and 
+ * limitations under the License.
+ *
+ **********************************************************************************/
+
+package org.sakaiproject.util;
+
+import java.lang.reflect.Method;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+/**
+ * <p>
+ * CharFolding maps each character of the Basic Multilingual Plane to a replacement character, such as an accented letter to its base
+ * letter. The replacements are worked out once, when the folding is built, and kept in a two level table: one page of 256 replacements per
+ * high byte, with the pages that change nothing left out. Folding a character is then two array lookups.
+ * </p>
+ * <p>
+ * A folding replaces one character with one character, so it cannot drop the combining marks of an accented letter in decomposed form;
+ * stripMarks() works on a whole string, through full Unicode canonical decomposition (NFD), and does.
+ * </p>
+ */
+public class CharFolding
+{
+	/** Our log (commons). */
+	private static Log M_log = LogFactory.getLog(CharFolding.class);
+
+	/**
+	 * Works out the replacement for each character, while a folding is being built.
+	 */
+	public interface Mapping
+	{
+		/**
+		 * @param c
+		 *        The character.
+		 * @return The character to use in its place (which may be c).
+		 */
+		char map(char c);
+	}
+
+	/** The replacement pages, indexed by high byte; null for a page where every character is its own replacement. */
+	protected final char[][] m_pages;
+
+	/**
+	 * Construct, working out the replacement of every character from the mapping.
+	 * 
+	 * @param mapping
+	 *        The mapping.
+	 */
+	public CharFolding(Mapping mapping)
+	{
+		m_pages = new char[256][];
+		char[] page = new char[256];
+		for (int high = 0; high < 256; high++)
+		{
+			boolean changed = false;
+			for (int low = 0; low < 256; low++)
+			{
+				char c = (char) ((high << 8) | low);
+				page[low] = mapping.map(c);
+				changed |= (page[low] != c);
+			}
+
+			if (changed)
+			{
+				m_pages[high] = page;
+				page = new char[256];
+			}
+		}
+	}
+
+	/**
+	 * Fold a character.
+	 * 
+	 * @param c
+	 *        The character.
+	 * @return The character to use in its place (which may be c).
+	 */
+	public final char fold(char c)
+	{
+		char[] page = m_pages[c >>> 8];
+		return (page == null) ? c : page[c & 0xff];
+	}
+
+	/**
+	 * Fold each character of a string.
+	 * 
+	 * @param value
+	 *        The string (may be null).
+	 * @return The folded string - value itself if no character changed.
+	 */
+	public String fold(String value)
+	{
+		if (value == null) return null;
+
+		// find the first character to change - if none, we are done
+		final int len = value.length();
+		int i = 0;
+		while ((i < len) && (fold(value.charAt(i)) == value.charAt(i)))
+		{
+			i++;
+		}
+		if (i == len) return value;
+
+		char[] buf = value.toCharArray();
+		for (; i < len; i++)
+		{
+			buf[i] = fold(buf[i]);
+		}
+
+		return new String(buf);
+	}
+
+	/**
+	 * Put a string in canonical decomposition (NFD) and remove all its combining marks, those that came from decomposing a character and
+	 * those that were in the string to begin with. What is left is recomposed (NFC), so characters that decompose without marks, such as
+	 * Hangul syllables, come back whole. If the runtime has no java.text.Normalizer (before Java 6), the string is returned unchanged.
+	 * 
+	 * @param value
+	 *        The string (may be null).
+	 * @return The string without marks - value itself if there were none to remove.
+	 */
+	public static String stripMarks(String value)
+	{
+		if (value == null) return null;
+
+		// nothing below U+00C0 decomposes or is a mark
+		final int len = value.length();
+		int i = 0;
+		while ((i < len) && (value.charAt(i) < 0xC0))
+		{
+			i++;
+		}
+		if (i == len) return value;
+
+		String decomposed = Normalizer.normalize(value, false);
+		if (decomposed == null) return value;
+
+		StringBuilder buf = null;
+		for (i = 0; i < decomposed.length(); i++)
+		{
+			char c = decomposed.charAt(i);
+			if (isMark(c))
+			{
+				if (buf == null) buf = new StringBuilder(decomposed.substring(0, i));
+			}
+			else if (buf != null)
+			{
+				buf.append(c);
+			}
+		}
+
+		if (buf == null) return value;
+		return Normalizer.normalize(buf.toString(), true);
+	}
+
+	/**
+	 * Check for a combining mark.
+	 * 
+	 * @param c
+	 *        The character.
+	 * @return true if c is a non spacing, combining spacing or enclosing mark, false if not.
+	 */
+	private static boolean isMark(char c)
+	{
+		int type = Character.getType(c);
+		return (type == Character.NON_SPACING_MARK) || (type == Character.COMBINING_SPACING_MARK) || (type == Character.ENCLOSING_MARK);
+	}
+
+	/**
+	 * Calls java.text.Normalizer - found reflectively, as it is new in Java 6.
+	 */
+	private static class Normalizer
+	{
+		private static Method M_normalize = null;
+
+		private static Object M_nfd = null;
+
+		private static Object M_nfc = null;
+
+		static
+		{
+			try
+			{
+				Class normalizer = Class.forName("java.text.Normalizer");
+				Class form = Class.forName("java.text.Normalizer$Form");
+				M_normalize = normalizer.getMethod("normalize", new Class[] { CharSequence.class, form });
+				M_nfd = form.getField("NFD").get(null);
+				M_nfc = form.getField("NFC").get(null);
+			}
+			catch (Exception e)
+			{
+				M_log.warn("stripMarks: no java.text.Normalizer, marks will not be stripped: " + e);
+				M_normalize = null;
+			}
+		}
+
+		/**
+		 * @param value
+		 *        The string.
+		 * @param compose
+		 *        if true, normalize to NFC, else to NFD.
+		 * @return value normalized, or null if there is no java.text.Normalizer.
+		 */
+		static String normalize(String value, boolean compose)
+		{
+			if (M_normalize == null) return null;
+
+			try
+			{
+				return (String) M_normalize.invoke(null, new Object[] { value, compose ? M_nfc : M_nfd });
+			}
+			catch (Exception e)
+			{
+				return null;
+			}
+		}
+	}
+}
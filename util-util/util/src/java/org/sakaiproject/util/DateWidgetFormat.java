@@ -25,6 +25,8 @@ import java.text.DateFormat;
 import java.text.SimpleDateFormat;
 import java.text.ParseException;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 import org.sakaiproject.component.cover.ServerConfigurationService;
 import org.sakaiproject.util.ResourceLoader;
@@ -35,21 +37,51 @@ import org.sakaiproject.util.ResourceLoader;
  * Date: Mar 6, 2007
  * Time: 7:09:56 AM
  * To change this template use File | Settings | File Templates.
+ * <p>
+ * The widget format for each locale is worked out once and shared. getLocaleDateFormat() and getDefaultDateFormat() hand out a clone of a
+ * formatter made once for each format, so the pattern is not worked out again, and callers are free to change the settings of the
+ * formatters they get. The MM_DD_YYYY() style factory methods still make a new formatter on each call.
+ * </p>
  */
 public class DateWidgetFormat {
 
-   private Map<String, DateFormat> acceptableFormats;
+   private static final String MM_DD_YYYY_PATTERN = "MM/dd/yyyy";
+   private static final String DD_MM_YYYY_PATTERN = "dd-MM-yyyy";
+
+   /** Marks a locale whose short date format we don't accept (in the map, which can't hold null) - the only empty pattern. */
+   private static final String DEFAULT_PATTERN = "";
+
+   /** The widget pattern for each short date format of the test date that we accept. */
+   private static final Map<String, String> acceptablePatterns = new HashMap<String, String>();
+
+   /** The widget pattern (or DEFAULT_PATTERN) for each locale seen so far. */
+   private static final ConcurrentMap<Locale, String> localePatterns = new ConcurrentHashMap<Locale, String>();
+
+   /** The formatter to clone for each pattern - never handed out, so never changed. */
+   private static final ConcurrentMap<String, DateFormat> prototypes = new ConcurrentHashMap<String, DateFormat>();
+
+   private static Date testDate;
+
+   static {
+      try {
+         testDate = MM_DD_YYYY().parse("12/31/1999");
+      } catch (ParseException e) {
+
+      }
+      acceptablePatterns.put(MM_DD_YYYY_short().format(testDate), MM_DD_YYYY_PATTERN);
+      acceptablePatterns.put(DD_MM_YYYY_short().format(testDate), DD_MM_YYYY_PATTERN);
+   }
+
    private ResourceLoader loader = new ResourceLoader();
-   private Date testDate;
 
    public static DateFormat MM_DD_YYYY()
 	{
-		return new SimpleDateFormat("MM/dd/yyyy");
+		return new SimpleDateFormat(MM_DD_YYYY_PATTERN);
 	}
 
 	public static DateFormat DD_MM_YYYY()
 	{
-		return new SimpleDateFormat("dd-MM-yyyy");
+		return new SimpleDateFormat(DD_MM_YYYY_PATTERN);
 	}
 
 	public static DateFormat MM_DD_YYYY_short()
@@ -63,33 +95,61 @@ public class DateWidgetFormat {
 	}
 
    public DateWidgetFormat() {
-      try {
-         testDate = MM_DD_YYYY().parse("12/31/1999");
-      } catch (ParseException e) {
-
-      }
-      acceptableFormats = new Hashtable<String, DateFormat>();
-      acceptableFormats.put(MM_DD_YYYY_short().format(testDate), MM_DD_YYYY());
-      acceptableFormats.put(DD_MM_YYYY_short().format(testDate), DD_MM_YYYY());
    }
 
    public DateFormat getLocaleDateFormat() {
-      DateFormat returned = DateFormat.getDateInstance(DateFormat.SHORT, loader.getLocale());
-      String testDateString = returned.format(testDate);
-      if (acceptableFormats.containsKey(testDateString)) {
-         return acceptableFormats.get(testDateString);
+      return getLocaleDateFormat(loader.getLocale());
+   }
+
+   /**
+    * @param locale
+    *        The locale.
+    * @return A new widget formatter for the locale.
+    */
+   public static DateFormat getLocaleDateFormat(Locale locale) {
+      String pattern = localePatterns.get(locale);
+      if (pattern == null) {
+         DateFormat returned = DateFormat.getDateInstance(DateFormat.SHORT, locale);
+         pattern = acceptablePatterns.get(returned.format(testDate));
+         if (pattern == null) {
+            pattern = DEFAULT_PATTERN;
+         }
+         localePatterns.put(locale, pattern);
       }
-      else {
-         return getDefaultDateFormat();
+
+      if (pattern.length() == 0) {
+         return defaultDateFormat();
       }
+      return newFormat(pattern);
    }
 
    public DateFormat getDefaultDateFormat() {
+      return defaultDateFormat();
+   }
+
+   /**
+    * @return A new formatter for the configured default widget format.
+    */
+   private static DateFormat defaultDateFormat() {
       String defaultFormat = ServerConfigurationService.getString("dateWidget.defaultFormat");
       if ("dd/MM/yyyy".equals(defaultFormat)) {
-         return DD_MM_YYYY();
+         return newFormat(DD_MM_YYYY_PATTERN);
+      }
+      return newFormat(MM_DD_YYYY_PATTERN);
+   }
+
+   /**
+    * @param pattern
+    *        The SimpleDateFormat pattern.
+    * @return A new formatter for the pattern, cloned from the one made on first use - not one kept for the thread, as callers may change it.
+    */
+   private static DateFormat newFormat(String pattern) {
+      DateFormat prototype = prototypes.get(pattern);
+      if (prototype == null) {
+         prototype = new SimpleDateFormat(pattern);
+         prototypes.put(pattern, prototype);
       }
-      return MM_DD_YYYY();
+      return (DateFormat) prototype.clone();
    }
 
 }
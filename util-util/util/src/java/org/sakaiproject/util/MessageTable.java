@@ -0,0 +1,335 @@
+/**********************************************************************************
+ * $URL$
+ * $Id$
+ ***********************************************************************************
+ *
+ * Copyright (c) 2007 The Sakai Foundation.
+ * 
+ * Licensed under the Educational Community License, Version 1.0 (the "License"); 
+ * you may not use this file except in compliance with the License. 
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.opensource.org/licenses/ecl1.php
+ * 
+ * Unless required by applicable law or agreed to in writing, software 
+ * distributed under the License is distributed on an "AS IS" BASIS, 
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. 
+ * See the License for the specific language governing permissions and 
+ * limitations under the License.
+ *
+ **********************************************************************************/
+
+
+package org.sakaiproject.util;
+
+import java.text.MessageFormat;
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Enumeration;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Locale;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.ResourceBundle;
+import java.util.Set;
+import java.util.WeakHashMap;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * <p>
+ * MessageTable is a ResourceBundle flattened, for one locale: every key the bundle has (its own and its parents'), with the value the
+ * bundle gives for it, in an open addressing hash table. It never changes once made, so it is read without locking, and it is a
+ * read-only Map with no copying.
+ * </p>
+ * <p>
+ * Message patterns are compiled into MessageFormats (in the table's locale) the first time each is used; getFormat() gives a copy of
+ * the compiled format, as MessageFormats are not safe for use by more than one thread at a time.
+ * </p>
+ */
+public class MessageTable extends AbstractMap
+{
+	/** The tables made so far, by bundle then locale - kept only as long as the bundle is. */
+	private static final Map m_tables = new WeakHashMap();
+
+	/** The locale the table is for. */
+	protected final Locale m_locale;
+
+	/** The keys (String), by slot; null for an empty slot. */
+	protected final String[] m_keys;
+
+	/** The values, by slot. */
+	protected final Object[] m_values;
+
+	/** The compiled patterns (MessageFormat), by slot, as they are made. */
+	protected final AtomicReferenceArray m_formats;
+
+	/** The slots - 1 (the number of slots is a power of two). */
+	protected final int m_mask;
+
+	/** The number of keys. */
+	protected final int m_size;
+
+	/** The view of our entries. */
+	protected final Set m_entrySet = new EntrySet();
+
+	/**
+	 * Find the table for this bundle and locale, making it the first time it is asked for.
+	 * 
+	 * @param bundle
+	 *        The ResourceBundle.
+	 * @param loc
+	 *        The locale (for compiling message patterns).
+	 * @return The MessageTable.
+	 */
+	public static MessageTable forBundle(ResourceBundle bundle, Locale loc)
+	{
+		synchronized (m_tables)
+		{
+			Map locales = (Map) m_tables.get(bundle);
+			if (locales == null)
+			{
+				locales = new HashMap();
+				m_tables.put(bundle, locales);
+			}
+
+			MessageTable table = (MessageTable) locales.get(loc);
+			if (table == null)
+			{
+				table = new MessageTable(bundle, loc);
+				locales.put(loc, table);
+			}
+
+			return table;
+		}
+	}
+
+	/**
+	 * Construct, flattening the bundle.
+	 * 
+	 * @param bundle
+	 *        The ResourceBundle.
+	 * @param loc
+	 *        The locale (for compiling message patterns).
+	 */
+	public MessageTable(ResourceBundle bundle, Locale loc)
+	{
+		m_locale = loc;
+
+		// the keys, with each value as the bundle resolves it (its own, or its nearest parent's)
+		Map flat = new HashMap();
+		for (Enumeration e = bundle.getKeys(); e.hasMoreElements();)
+		{
+			String key = (String) e.nextElement();
+			flat.put(key, bundle.getObject(key));
+		}
+
+		// at most half full
+		int slots = 2;
+		while (slots < flat.size() * 2)
+		{
+			slots *= 2;
+		}
+		m_mask = slots - 1;
+		m_keys = new String[slots];
+		m_values = new Object[slots];
+		m_formats = new AtomicReferenceArray(slots);
+		m_size = flat.size();
+
+		for (Iterator i = flat.entrySet().iterator(); i.hasNext();)
+		{
+			Map.Entry entry = (Map.Entry) i.next();
+			String key = (String) entry.getKey();
+			int slot = hash(key) & m_mask;
+			while (m_keys[slot] != null)
+			{
+				slot = (slot + 1) & m_mask;
+			}
+			m_keys[slot] = key;
+			m_values[slot] = entry.getValue();
+		}
+	}
+
+	/**
+	 * @return The locale the table is for.
+	 */
+	public Locale getLocale()
+	{
+		return m_locale;
+	}
+
+	/**
+	 * Find the value for a key.
+	 * 
+	 * @param key
+	 *        The key.
+	 * @return The value, or null if the bundle does not have the key.
+	 */
+	public Object get(Object key)
+	{
+		if (!(key instanceof String)) return null;
+		int slot = slot((String) key);
+		return (slot == -1) ? null : m_values[slot];
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	public boolean containsKey(Object key)
+	{
+		return (key instanceof String) && (slot((String) key) != -1);
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	public int size()
+	{
+		return m_size;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	public Set entrySet()
+	{
+		return m_entrySet;
+	}
+
+	/**
+	 * Get the compiled message pattern for a key.
+	 * 
+	 * @param key
+	 *        The key.
+	 * @return A MessageFormat of the key's pattern, in the table's locale, for the caller's use only; or null if the bundle does not
+	 *         have the key as a string.
+	 */
+	public MessageFormat getFormat(String key)
+	{
+		int slot = slot(key);
+		if ((slot == -1) || !(m_values[slot] instanceof String)) return null;
+
+		MessageFormat format = (MessageFormat) m_formats.get(slot);
+		if (format == null)
+		{
+			format = new MessageFormat((String) m_values[slot], m_locale);
+			m_formats.compareAndSet(slot, null, format);
+		}
+
+		// the compiled one stays ours, unused, so it can be copied safely by any thread
+		return (MessageFormat) format.clone();
+	}
+
+	/**
+	 * @return The slot holding this key, or -1 if it is not in the table.
+	 */
+	protected int slot(String key)
+	{
+		int slot = hash(key) & m_mask;
+		while (m_keys[slot] != null)
+		{
+			if (m_keys[slot].equals(key)) return slot;
+			slot = (slot + 1) & m_mask;
+		}
+		return -1;
+	}
+
+	/**
+	 * @return The key's hash code, with the high bits mixed into the low ones we index by.
+	 */
+	protected static int hash(String key)
+	{
+		int h = key.hashCode();
+		return h ^ (h >>> 16);
+	}
+
+	/**
+	 * The entries, read from the table's slots.
+	 */
+	protected class EntrySet extends AbstractSet
+	{
+		public int size()
+		{
+			return m_size;
+		}
+
+		public Iterator iterator()
+		{
+			return new Iterator()
+			{
+				/** The next filled slot, or the number of slots at the end. */
+				int m_next = advance(0);
+
+				int advance(int slot)
+				{
+					while ((slot < m_keys.length) && (m_keys[slot] == null))
+					{
+						slot++;
+					}
+					return slot;
+				}
+
+				public boolean hasNext()
+				{
+					return m_next < m_keys.length;
+				}
+
+				public Object next()
+				{
+					if (m_next >= m_keys.length) throw new NoSuchElementException();
+					Map.Entry entry = new SimpleEntry(m_keys[m_next], m_values[m_next]);
+					m_next = advance(m_next + 1);
+					return entry;
+				}
+
+				public void remove()
+				{
+					throw new UnsupportedOperationException();
+				}
+			};
+		}
+	}
+
+	/**
+	 * One read-only entry.
+	 */
+	protected static class SimpleEntry implements Map.Entry
+	{
+		protected final Object m_key;
+
+		protected final Object m_value;
+
+		protected SimpleEntry(Object key, Object value)
+		{
+			m_key = key;
+			m_value = value;
+		}
+
+		public Object getKey()
+		{
+			return m_key;
+		}
+
+		public Object getValue()
+		{
+			return m_value;
+		}
+
+		public Object setValue(Object value)
+		{
+			throw new UnsupportedOperationException();
+		}
+
+		public boolean equals(Object obj)
+		{
+			if (!(obj instanceof Map.Entry)) return false;
+			Map.Entry other = (Map.Entry) obj;
+			return m_key.equals(other.getKey()) && ((m_value == null) ? (other.getValue() == null) : m_value.equals(other.getValue()));
+		}
+
+		public int hashCode()
+		{
+			return m_key.hashCode() ^ ((m_value == null) ? 0 : m_value.hashCode());
+		}
+	}
+}
@@ -0,0 +1,329 @@
+/**********************************************************************************
+ * $URL$
+ * $Id$
+ ***********************************************************************************
+ *
+ * Copyright (c) 2007 The Sakai Foundation.
+ * 
+ * Licensed under the Educational Community License, Version 1.0 (the "License"); 
+ * you may not use this file except in compliance with the License. 
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.opensource.org/licenses/ecl1.php
+ * 
+ * Unless required by applicable law or agreed to in writing, software 
+ * distributed under the License is distributed on an "AS IS" BASIS, 
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. 
+ * See the License for the specific language governing permissions and 
+ * limitations under the License.
+ *
+ **********************************************************************************/
+
+package org.sakaiproject.util;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * <p>
+ * MimeTypePolicy classifies mime types as ones a browser can show inline, or not. A type is inline if it (lower cased) is one of the
+ * exact types, starts with one of the prefixes, or contains one of the substrings.
+ * </p>
+ * <p>
+ * Results are remembered by the raw content type as given, so repeat lookups (a resource listing asks once per item) are a single hash
+ * lookup. Types, prefixes and substrings may be added or removed while in use; each change replaces the rules and forgets the
+ * remembered results.
+ * </p>
+ */
+public class MimeTypePolicy
+{
+	/** The most results remembered; past this the memo starts over. */
+	protected static final int MEMO_SIZE = 1000;
+
+	/** The current rules - replaced, never changed, when the policy changes. */
+	protected volatile Rules m_rules = new Rules(new HashSet(), new HashSet(), new HashSet());
+
+	/**
+	 * Construct an empty policy (nothing is inline).
+	 */
+	public MimeTypePolicy()
+	{
+	}
+
+	/**
+	 * Construct a policy with these rules.
+	 *
+	 * @param types
+	 *        The exact inline types.
+	 * @param prefixes
+	 *        The inline type prefixes, such as "text/".
+	 * @param substrings
+	 *        The strings that make any type containing them inline.
+	 */
+	public MimeTypePolicy(String[] types, String[] prefixes, String[] substrings)
+	{
+		m_rules = new Rules(lowerAll(types), lowerAll(prefixes), lowerAll(substrings));
+	}
+
+	/**
+	 * Is this a mime type that the browser can handle inline?
+	 *
+	 * @param type
+	 *        The mime type to check.
+	 * @return true if this type is inline, false if not (or if type is null).
+	 */
+	public boolean isInline(String type)
+	{
+		if (type == null) return false;
+
+		// the memo lives with the rules, so a concurrent change can't leave old results behind
+		Rules rules = m_rules;
+		Boolean rv = (Boolean) rules.m_memo.get(type);
+		if (rv != null) return rv.booleanValue();
+
+		rv = Boolean.valueOf(rules.isInline(type.toLowerCase()));
+		if (rules.m_memo.size() >= MEMO_SIZE) rules.m_memo.clear();
+		rules.m_memo.put(type, rv);
+
+		return rv.booleanValue();
+	}
+
+	/**
+	 * Add an exact inline type.
+	 *
+	 * @param type
+	 *        The mime type, such as "application/pdf".
+	 */
+	public synchronized void addType(String type)
+	{
+		Set types = new HashSet(m_rules.m_types);
+		types.add(type.toLowerCase());
+		setRules(new Rules(types, m_rules.m_prefixes, m_rules.m_substrings));
+	}
+
+	/**
+	 * Remove an exact inline type.
+	 *
+	 * @param type
+	 *        The mime type.
+	 */
+	public synchronized void removeType(String type)
+	{
+		Set types = new HashSet(m_rules.m_types);
+		types.remove(type.toLowerCase());
+		setRules(new Rules(types, m_rules.m_prefixes, m_rules.m_substrings));
+	}
+
+	/**
+	 * Add an inline type prefix - any type starting with it is inline.
+	 *
+	 * @param prefix
+	 *        The prefix, such as "image/".
+	 */
+	public synchronized void addPrefix(String prefix)
+	{
+		Set prefixes = new HashSet(m_rules.m_prefixes);
+		prefixes.add(prefix.toLowerCase());
+		setRules(new Rules(m_rules.m_types, prefixes, m_rules.m_substrings));
+	}
+
+	/**
+	 * Remove an inline type prefix.
+	 *
+	 * @param prefix
+	 *        The prefix.
+	 */
+	public synchronized void removePrefix(String prefix)
+	{
+		Set prefixes = new HashSet(m_rules.m_prefixes);
+		prefixes.remove(prefix.toLowerCase());
+		setRules(new Rules(m_rules.m_types, prefixes, m_rules.m_substrings));
+	}
+
+	/**
+	 * Add an inline substring - any type containing it is inline.
+	 *
+	 * @param substring
+	 *        The substring, such as "vrml".
+	 */
+	public synchronized void addSubstring(String substring)
+	{
+		Set substrings = new HashSet(m_rules.m_substrings);
+		substrings.add(substring.toLowerCase());
+		setRules(new Rules(m_rules.m_types, m_rules.m_prefixes, substrings));
+	}
+
+	/**
+	 * Remove an inline substring.
+	 *
+	 * @param substring
+	 *        The substring.
+	 */
+	public synchronized void removeSubstring(String substring)
+	{
+		Set substrings = new HashSet(m_rules.m_substrings);
+		substrings.remove(substring.toLowerCase());
+		setRules(new Rules(m_rules.m_types, m_rules.m_prefixes, substrings));
+	}
+
+	/**
+	 * Install new rules (which start with no remembered results).
+	 *
+	 * @param rules
+	 *        The new rules.
+	 */
+	protected void setRules(Rules rules)
+	{
+		m_rules = rules;
+	}
+
+	/**
+	 * @return A set of the lower cased strings from the array (which may be null).
+	 */
+	protected static Set lowerAll(String[] values)
+	{
+		Set rv = new HashSet();
+		if (values == null) return rv;
+		for (int i = 0; i < values.length; i++)
+		{
+			rv.add(values[i].toLowerCase());
+		}
+		return rv;
+	}
+
+	/**
+	 * One unchanging set of rules: an exact match hash, a prefix trie and a substring list, with the results found so far.
+	 */
+	protected static class Rules
+	{
+		/** The exact types (String), lower case. */
+		protected final Set m_types;
+
+		/** The prefixes (String), lower case. */
+		protected final Set m_prefixes;
+
+		/** The substrings (String), lower case. */
+		protected final Set m_substrings;
+
+		/** The prefixes, as a trie. */
+		protected final Node m_trie = new Node();
+
+		/** The substrings, as an array for scanning. */
+		protected final String[] m_substringArray;
+
+		/** Classification results (Boolean) keyed by raw content type (String). */
+		protected final Map m_memo = new ConcurrentHashMap();
+
+		protected Rules(Set types, Set prefixes, Set substrings)
+		{
+			m_types = types;
+			m_prefixes = prefixes;
+			m_substrings = substrings;
+			m_substringArray = (String[]) substrings.toArray(new String[substrings.size()]);
+			for (Iterator i = prefixes.iterator(); i.hasNext();)
+			{
+				m_trie.add((String) i.next());
+			}
+		}
+
+		/**
+		 * @param lType
+		 *        The mime type, lower cased.
+		 * @return true if the rules make this type inline.
+		 */
+		protected boolean isInline(String lType)
+		{
+			if (m_types.contains(lType)) return true;
+			if (m_trie.matchesPrefixOf(lType)) return true;
+			for (int i = 0; i < m_substringArray.length; i++)
+			{
+				if (lType.indexOf(m_substringArray[i]) != -1) return true;
+			}
+			return false;
+		}
+	}
+
+	/**
+	 * A prefix trie node; its children are kept in arrays sorted by character.
+	 */
+	protected static class Node
+	{
+		/** true if a prefix ends here. */
+		protected boolean m_end = false;
+
+		/** The characters leading to each child, sorted. */
+		protected char[] m_chars = new char[0];
+
+		/** The children, in the order of m_chars. */
+		protected Node[] m_children = new Node[0];
+
+		/**
+		 * Add a prefix below this node.
+		 *
+		 * @param prefix
+		 *        The prefix.
+		 */
+		protected void add(String prefix)
+		{
+			Node node = this;
+			for (int i = 0; i < prefix.length(); i++)
+			{
+				node = node.child(prefix.charAt(i), true);
+			}
+			node.m_end = true;
+		}
+
+		/**
+		 * Does any prefix below this node start the value?
+		 *
+		 * @param value
+		 *        The value to check.
+		 * @return true if some prefix in the trie is a prefix of value.
+		 */
+		protected boolean matchesPrefixOf(String value)
+		{
+			Node node = this;
+			for (int i = 0; i < value.length(); i++)
+			{
+				if (node.m_end) return true;
+				node = node.child(value.charAt(i), false);
+				if (node == null) return false;
+			}
+			return node.m_end;
+		}
+
+		/**
+		 * Find (or make) the child for this character.
+		 *
+		 * @param c
+		 *        The character.
+		 * @param create
+		 *        if true, make the child if it is missing.
+		 * @return The child, or null if missing and not created.
+		 */
+		protected Node child(char c, boolean create)
+		{
+			int pos = Arrays.binarySearch(m_chars, c);
+			if (pos >= 0) return m_children[pos];
+			if (!create) return null;
+
+			// insert at the sorted position
+			pos = -pos - 1;
+			char[] newChars = new char[m_chars.length + 1];
+			Node[] newChildren = new Node[m_children.length + 1];
+			System.arraycopy(m_chars, 0, newChars, 0, pos);
+			System.arraycopy(m_children, 0, newChildren, 0, pos);
+			newChars[pos] = c;
+			newChildren[pos] = new Node();
+			System.arraycopy(m_chars, pos, newChars, pos + 1, m_chars.length - pos);
+			System.arraycopy(m_children, pos, newChildren, pos + 1, m_children.length - pos);
+			m_chars = newChars;
+			m_children = newChildren;
+			return newChildren[pos];
+		}
+	}
+}
@@ -0,0 +1,137 @@
+/**********************************************************************************
+ * $URL$
+ * $Id$
+ ***********************************************************************************
+ *
+ * Copyright (c) 2007 The Sakai Foundation.
+ * 
+ * Licensed under the Educational Community License, Version 1.0 (the "License"); 
+ * you may not use this file except in compliance with the License. 
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.opensource.org/licenses/ecl1.php
+ * 
+ * Unless required by applicable law or agreed to in writing, software 
+ * distributed under the License is distributed on an "AS IS" BASIS, 
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. 
+ * See the License for the specific language governing permissions and 
+ * limitations under the License.
+ *
+ **********************************************************************************/
+
+package org.sakaiproject.util;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * <p>
+ * ParallelSlices runs some work over each index of a batch, splitting large batches into slices that are worked on a shared pool of daemon
+ * threads (one per processor). Small batches, or any batch on a single processor machine, are worked on the calling thread. Either way,
+ * run() returns once all the work is done.
+ * </p>
+ * <p>
+ * The work for each index must be independent of the others; results are usually written to an array slot for the index.
+ * </p>
+ */
+public class ParallelSlices
+{
+	/**
+	 * The work to do for a slice of the batch.
+	 */
+	public interface Slice
+	{
+		/**
+		 * Do the work for the indexes from (inclusive) to (exclusive).
+		 */
+		void run(int from, int to);
+	}
+
+	/** The shared pool, created when first needed. */
+	private static ExecutorService M_executor;
+
+	/**
+	 * Do the work for indexes 0 through size-1.
+	 * 
+	 * @param size
+	 *        The size of the batch.
+	 * @param threshold
+	 *        Batches smaller than this are done on the calling thread.
+	 * @param slice
+	 *        The work.
+	 */
+	public static void run(int size, int threshold, final Slice slice)
+	{
+		int threads = Runtime.getRuntime().availableProcessors();
+		if ((size < threshold) || (threads < 2))
+		{
+			slice.run(0, size);
+			return;
+		}
+
+		// split into a few slices per thread, so uneven work still balances out
+		int slices = threads * 4;
+		int sliceSize = (size + slices - 1) / slices;
+		List futures = new ArrayList();
+		ExecutorService executor = getExecutor(threads);
+		for (int from = 0; from < size; from += sliceSize)
+		{
+			final int start = from;
+			final int end = Math.min(from + sliceSize, size);
+			futures.add(executor.submit(new Callable()
+			{
+				public Object call()
+				{
+					slice.run(start, end);
+					return null;
+				}
+			}));
+		}
+
+		try
+		{
+			for (int i = 0; i < futures.size(); i++)
+			{
+				((Future) futures.get(i)).get();
+			}
+		}
+		catch (InterruptedException e)
+		{
+			Thread.currentThread().interrupt();
+			throw new RuntimeException("ParallelSlices.run: interrupted", e);
+		}
+		catch (ExecutionException e)
+		{
+			throw new RuntimeException("ParallelSlices.run: " + e.getCause(), e.getCause());
+		}
+	}
+
+	/**
+	 * @return The shared pool, created when first needed.
+	 */
+	private static synchronized ExecutorService getExecutor(int threads)
+	{
+		if (M_executor == null)
+		{
+			M_executor = Executors.newFixedThreadPool(threads, new ThreadFactory()
+			{
+				private int count = 0;
+
+				public synchronized Thread newThread(Runnable r)
+				{
+					Thread t = new Thread(r, "Sakai ParallelSlices " + (++count));
+					t.setDaemon(true);
+					return t;
+				}
+			});
+		}
+
+		return M_executor;
+	}
+}
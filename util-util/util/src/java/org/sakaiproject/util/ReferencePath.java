@@ -0,0 +1,367 @@
+/**********************************************************************************
+ * $URL$
+ * $Id$
+ ***********************************************************************************
+ *
+ * Copyright (c) 2007 The Sakai Foundation.
+ * 
+ * Licensed under the Educational Community License, Version 1.0 (the "License"); 
+ * you may not use this file except in compliance with the License. 
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.opensource.org/licenses/ecl1.php
+ * 
+ * Unless required by applicable law or agreed to in writing, software 
+ * distributed under the License is distributed on an "AS IS" BASIS, 
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. 
+ * See the License for the specific language governing permissions and 
+ * limitations under the License.
+ *
+ **********************************************************************************/
+
+package org.sakaiproject.util;
+
+import java.lang.ref.WeakReference;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * <p>
+ * ReferencePath is a parsed entity reference string, such as "/content/group/siteid/folder/". Each ReferencePath points to the
+ * ReferencePath of its container, as StringUtil.referencePath() would find it, so references in the same container share their parsed
+ * prefix.
+ * </p>
+ * <p>
+ * ReferencePaths are immutable, and should be had from intern(), which keeps recently used ones in a bounded cache. The cache holds them
+ * weakly, so those no longer in use by anyone may still be garbage collected.
+ * </p>
+ * <p>
+ * The cache takes no lock to find or add a reference. Each entry notes when it was last used; when an add takes the cache over its size,
+ * one thread sweeps it, dropping the collected entries and then the least recently used until a tenth of the room is free, as
+ * ExpiringCache does. The cache may briefly be a little over its size while a sweep runs.
+ * </p>
+ */
+public class ReferencePath
+{
+	/** The most references kept in the intern cache. */
+	protected static final int CACHE_SIZE = 10000;
+
+	/** The intern cache: reference string -> Entry. */
+	protected static ConcurrentHashMap M_cache = new ConcurrentHashMap(CACHE_SIZE / 4);
+
+	/** Set while a thread is sweeping the cache. */
+	protected static final AtomicBoolean M_sweeping = new AtomicBoolean(false);
+
+	/** The reference string. */
+	protected String m_reference;
+
+	/** The container, or null if this is the root. */
+	protected ReferencePath m_parent;
+
+	/** The last segment, without any separator. */
+	protected String m_name;
+
+	/** The number of segments. */
+	protected int m_depth;
+
+	/** The segments, root first, made when first needed. */
+	protected volatile String[] m_segments;
+
+	/**
+	 * Find the ReferencePath for this reference string, using a cached one if we have it.
+	 * 
+	 * @param ref
+	 *        The reference string.
+	 * @return The ReferencePath for ref.
+	 */
+	public static ReferencePath intern(String ref)
+	{
+		ReferencePath rv = cached(ref);
+		if (rv != null) return rv;
+
+		// parse, interning the container so it is shared
+		rv = parse(ref);
+
+		Entry entry = new Entry(rv);
+		while (true)
+		{
+			// someone else may have beaten us to it
+			Entry found = (Entry) M_cache.putIfAbsent(ref, entry);
+			if (found == null) break;
+
+			ReferencePath other = (ReferencePath) found.get();
+			if (other != null) return other;
+
+			// theirs has been collected: replace it
+			if (M_cache.replace(ref, found, entry)) break;
+		}
+
+		if (M_cache.size() > CACHE_SIZE) sweep();
+
+		return rv;
+	}
+
+	/**
+	 * Parse the reference string into a new ReferencePath, interning its container.
+	 * 
+	 * @param ref
+	 *        The reference string.
+	 * @return A new ReferencePath for ref.
+	 */
+	protected static ReferencePath parse(String ref)
+	{
+		// Note: there may be a trailing separator
+		int pos = ref.lastIndexOf('/', ref.length() - 2);
+
+		// the root, which contains itself
+		if ((pos == -1) && (ref.length() == 0))
+		{
+			return new ReferencePath(ref, null, null);
+		}
+
+		String path = (pos == -1) ? "" : ref.substring(0, pos + 1);
+		String name = ref.endsWith("/") ? ref.substring(pos + 1, ref.length() - 1) : ref.substring(pos + 1);
+		return new ReferencePath(ref, intern(path), name);
+	}
+
+	/**
+	 * @return The cached ReferencePath for ref, or null if there is none.
+	 */
+	protected static ReferencePath cached(String ref)
+	{
+		Entry found = (Entry) M_cache.get(ref);
+		if (found == null) return null;
+
+		ReferencePath rv = (ReferencePath) found.get();
+		if (rv == null)
+		{
+			M_cache.remove(ref, found);
+			return null;
+		}
+
+		// only write when the time has moved on, so threads sharing an entry don't keep writing to it
+		long now = System.currentTimeMillis();
+		if (found.m_used != now) found.m_used = now;
+
+		return rv;
+	}
+
+	/**
+	 * Bring the cache back under its size. If another thread is already sweeping, leave it to that one - it checks the size again when it
+	 * is done, so adds made while it sweeps are not missed.
+	 */
+	protected static void sweep()
+	{
+		while ((M_cache.size() > CACHE_SIZE) && M_sweeping.compareAndSet(false, true))
+		{
+			try
+			{
+				sweepOnce();
+			}
+			finally
+			{
+				M_sweeping.set(false);
+			}
+		}
+	}
+
+	/**
+	 * Drop the collected entries, then the least recently used, leaving a tenth of the room free.
+	 */
+	protected static void sweepOnce()
+	{
+		// drop the collected, noting when the rest were last used
+		long[] used = new long[M_cache.size() + 16];
+		int count = 0;
+		for (Iterator i = M_cache.entrySet().iterator(); i.hasNext();)
+		{
+			Map.Entry e = (Map.Entry) i.next();
+			Entry entry = (Entry) e.getValue();
+			if (entry.get() == null)
+			{
+				M_cache.remove(e.getKey(), entry);
+			}
+			else if (count < used.length)
+			{
+				used[count++] = entry.m_used;
+			}
+		}
+
+		int excess = M_cache.size() - (CACHE_SIZE - CACHE_SIZE / 10);
+		if ((excess <= 0) || (count == 0)) return;
+
+		// drop those last used no later than the excess'th oldest
+		Arrays.sort(used, 0, count);
+		long oldest = used[Math.min(excess, count) - 1];
+		for (Iterator i = M_cache.entrySet().iterator(); i.hasNext() && (excess > 0);)
+		{
+			Map.Entry e = (Map.Entry) i.next();
+			Entry entry = (Entry) e.getValue();
+			if ((entry.m_used <= oldest) && M_cache.remove(e.getKey(), entry)) excess--;
+		}
+	}
+
+	/**
+	 * A cached ReferencePath, held weakly, and when it was last used.
+	 */
+	protected static class Entry extends WeakReference
+	{
+		protected volatile long m_used;
+
+		protected Entry(ReferencePath path)
+		{
+			super(path);
+			m_used = System.currentTimeMillis();
+		}
+	}
+
+	/**
+	 * Construct.
+	 * 
+	 * @param reference
+	 *        The reference string.
+	 * @param parent
+	 *        The container, or null for the root.
+	 * @param name
+	 *        The last segment.
+	 */
+	protected ReferencePath(String reference, ReferencePath parent, String name)
+	{
+		m_reference = reference;
+		m_parent = parent;
+		m_name = name;
+		m_depth = (parent == null) ? 0 : parent.m_depth + 1;
+	}
+
+	/**
+	 * @return The reference string.
+	 */
+	public String getReference()
+	{
+		return m_reference;
+	}
+
+	/**
+	 * Access the container, the same as StringUtil.referencePath() of this reference.
+	 * 
+	 * @return The container, or null if this is the root ("").
+	 */
+	public ReferencePath getParent()
+	{
+		return m_parent;
+	}
+
+	/**
+	 * @return The container's reference string, the same as StringUtil.referencePath() of this reference.
+	 */
+	public String getReferencePath()
+	{
+		return (m_parent == null) ? "" : m_parent.m_reference;
+	}
+
+	/**
+	 * @return The last segment of the reference, without any separator.
+	 */
+	public String getName()
+	{
+		return m_name;
+	}
+
+	/**
+	 * @return The number of segments, the same as the length of StringUtil.split(reference, "/").
+	 */
+	public int getSegmentCount()
+	{
+		return m_depth;
+	}
+
+	/**
+	 * Access one segment.
+	 * 
+	 * @param index
+	 *        The index of the segment, 0 for the first.
+	 * @return The segment, the same as StringUtil.split(reference, "/")[index].
+	 */
+	public String getSegment(int index)
+	{
+		return segments()[index];
+	}
+
+	/**
+	 * @return The segments, the same as StringUtil.split(reference, "/").
+	 */
+	public String[] getSegments()
+	{
+		String[] segments = segments();
+		String[] rv = new String[segments.length];
+		System.arraycopy(segments, 0, rv, 0, segments.length);
+		return rv;
+	}
+
+	/**
+	 * Create a full reference from a relative reference merged with this one, the same as StringUtil.fullReference().
+	 * 
+	 * @param relative
+	 *        The relative reference, to add to the path of this reference.
+	 * @return The ReferencePath for the full reference.
+	 */
+	public ReferencePath resolve(String relative)
+	{
+		return intern(getReferencePath() + relative);
+	}
+
+	/**
+	 * Check if this reference is contained, at any depth, by the other.
+	 * 
+	 * @param other
+	 *        The possible container.
+	 * @return true if other is one of our containers.
+	 */
+	public boolean isWithin(ReferencePath other)
+	{
+		for (ReferencePath p = m_parent; p != null; p = p.m_parent)
+		{
+			if ((p == other) || p.m_reference.equals(other.m_reference)) return true;
+		}
+		return false;
+	}
+
+	/**
+	 * @return the segments array, filled in from the container chain if needed.
+	 */
+	protected String[] segments()
+	{
+		String[] rv = m_segments;
+		if (rv == null)
+		{
+			rv = new String[m_depth];
+			int i = m_depth - 1;
+			for (ReferencePath p = this; p.m_parent != null; p = p.m_parent)
+			{
+				rv[i--] = p.m_name;
+			}
+			m_segments = rv;
+		}
+		return rv;
+	}
+
+	public boolean equals(Object obj)
+	{
+		if (obj == this) return true;
+		if (!(obj instanceof ReferencePath)) return false;
+		return m_reference.equals(((ReferencePath) obj).m_reference);
+	}
+
+	public int hashCode()
+	{
+		return m_reference.hashCode();
+	}
+
+	public String toString()
+	{
+		return m_reference;
+	}
+}
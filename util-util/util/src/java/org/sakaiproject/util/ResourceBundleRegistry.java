@@ -0,0 +1,370 @@
+/**********************************************************************************
+ * $URL$
+ * $Id$
+ ***********************************************************************************
+ *
+ * Copyright (c) 2007 The Sakai Foundation.
+ * 
+ * Licensed under the Educational Community License, Version 1.0 (the "License"); 
+ * you may not use this file except in compliance with the License. 
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.opensource.org/licenses/ecl1.php
+ * 
+ * Unless required by applicable law or agreed to in writing, software 
+ * distributed under the License is distributed on an "AS IS" BASIS, 
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. 
+ * See the License for the specific language governing permissions and 
+ * limitations under the License.
+ *
+ **********************************************************************************/
+
+
+package org.sakaiproject.util;
+
+import java.lang.reflect.Method;
+import java.util.Enumeration;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.ResourceBundle;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+/**
+ * <p>
+ * ResourceBundleRegistry is the one place in the process that ResourceLoaders get their ResourceBundles from, by base name, locale and
+ * class loader. However many loaders there are for a bundle, it is held once here.
+ * </p>
+ * <p>
+ * The registry keeps the most recently used bundles, up to a limit. purge() (for everything, a base name or a class loader) drops
+ * bundles here and in the JVM's own ResourceBundle cache, so they are read again, and tells every ResourceLoader to forget the bundles it
+ * has - this is the call for anything (such as a cluster message) that knows the bundles have changed. Counts of bundles, hits,
+ * misses and evictions, and an estimate of the memory the bundles take, are kept for monitoring.
+ * </p>
+ */
+public class ResourceBundleRegistry
+{
+	/** Our log (commons). */
+	private static Log M_log = LogFactory.getLog(ResourceBundleRegistry.class);
+
+	/** The bundles (Entry) by Key, least recently used first. */
+	protected static final LinkedHashMap m_bundles = new LinkedHashMap(16, 0.75f, true);
+
+	/** The most bundles we keep. */
+	protected static int m_maxBundles = 1000;
+
+	/** Changes every purge, so ResourceLoaders know to forget their bundles. */
+	protected static volatile int m_generation = 0;
+
+	/** Estimated bytes taken by the bundles we have. */
+	protected static long m_size = 0;
+
+	protected static long m_hits = 0;
+
+	protected static long m_misses = 0;
+
+	protected static long m_evictions = 0;
+
+	/** ResourceBundle.clearCache(ClassLoader), when there is one (Java 6 and later). */
+	protected static final Method CLEAR_CACHE = findClearCache();
+
+	/**
+	 * Find a ResourceBundle, loading it the first time it is asked for.
+	 * 
+	 * @param baseName
+	 *        The bundle's base name.
+	 * @param loc
+	 *        The locale.
+	 * @param loader
+	 *        The class loader to load it with.
+	 * @return The ResourceBundle.
+	 * @throws java.util.MissingResourceException
+	 *         if there is no such bundle.
+	 */
+	public static ResourceBundle getBundle(String baseName, Locale loc, ClassLoader loader)
+	{
+		Key key = new Key(baseName, loc, loader);
+		int generation;
+		synchronized (m_bundles)
+		{
+			generation = m_generation;
+			Entry entry = (Entry) m_bundles.get(key);
+			if (entry != null)
+			{
+				m_hits++;
+				return entry.bundle;
+			}
+			m_misses++;
+		}
+
+		// load outside the lock - if two threads load the same bundle, the first one in is kept
+		ResourceBundle bundle = ResourceBundle.getBundle(baseName, loc, loader);
+		Entry entry = new Entry(bundle, estimateSize(bundle));
+
+		synchronized (m_bundles)
+		{
+			// if there was a purge while we loaded, what we have may be out of date; use it, but don't keep it
+			if (generation != m_generation) return bundle;
+
+			Entry existing = (Entry) m_bundles.get(key);
+			if (existing != null) return existing.bundle;
+
+			m_bundles.put(key, entry);
+			m_size += entry.size;
+
+			// drop the least recently used past our limit
+			for (Iterator i = m_bundles.values().iterator(); (m_bundles.size() > m_maxBundles) && i.hasNext();)
+			{
+				Entry eldest = (Entry) i.next();
+				i.remove();
+				m_size -= eldest.size;
+				m_evictions++;
+			}
+		}
+
+		return bundle;
+	}
+
+	/**
+	 * Drop all bundles, so they are read again.
+	 */
+	public static void purge()
+	{
+		purge(null, null);
+	}
+
+	/**
+	 * Drop the bundles with this base name, in any locale, so they are read again.
+	 * 
+	 * @param baseName
+	 *        The base name.
+	 */
+	public static void purge(String baseName)
+	{
+		purge(baseName, null);
+	}
+
+	/**
+	 * Drop the bundles loaded by this class loader (such as when a webapp is undeployed).
+	 * 
+	 * @param loader
+	 *        The class loader.
+	 */
+	public static void purge(ClassLoader loader)
+	{
+		purge(null, loader);
+	}
+
+	/**
+	 * Drop the bundles matching the base name and the class loader (null matching any).
+	 */
+	protected static void purge(String baseName, ClassLoader loader)
+	{
+		int count = 0;
+		Map loaders = new IdentityHashMap();
+		synchronized (m_bundles)
+		{
+			for (Iterator i = m_bundles.entrySet().iterator(); i.hasNext();)
+			{
+				Map.Entry e = (Map.Entry) i.next();
+				Key key = (Key) e.getKey();
+				if (((baseName == null) || baseName.equals(key.baseName)) && ((loader == null) || (loader == key.loader)))
+				{
+					i.remove();
+					m_size -= ((Entry) e.getValue()).size;
+					loaders.put(key.loader, key.loader);
+					count++;
+				}
+			}
+			m_generation++;
+		}
+
+		// and from the JVM's cache, which would otherwise give us the same bundles again
+		if (CLEAR_CACHE != null)
+		{
+			for (Iterator i = loaders.keySet().iterator(); i.hasNext();)
+			{
+				try
+				{
+					CLEAR_CACHE.invoke(null, new Object[] { i.next() });
+				}
+				catch (Exception e)
+				{
+					M_log.warn("purge: clearCache: " + e);
+				}
+			}
+		}
+
+		M_log.debug("purge: base name: " + baseName + " bundles: " + count);
+	}
+
+	/**
+	 * @return A number that changes every purge; a ResourceLoader whose bundles were found under a different number must find them again.
+	 */
+	public static int getGeneration()
+	{
+		return m_generation;
+	}
+
+	/**
+	 * Set the most bundles to keep.
+	 * 
+	 * @param max
+	 *        The most bundles.
+	 */
+	public static void setMaxBundles(int max)
+	{
+		synchronized (m_bundles)
+		{
+			m_maxBundles = max;
+		}
+	}
+
+	/**
+	 * @return The number of bundles held.
+	 */
+	public static int getBundleCount()
+	{
+		synchronized (m_bundles)
+		{
+			return m_bundles.size();
+		}
+	}
+
+	/**
+	 * @return An estimate of the bytes the held bundles' keys and values take.
+	 */
+	public static long getEstimatedSize()
+	{
+		synchronized (m_bundles)
+		{
+			return m_size;
+		}
+	}
+
+	/**
+	 * @return How many times a bundle was found here.
+	 */
+	public static long getHits()
+	{
+		synchronized (m_bundles)
+		{
+			return m_hits;
+		}
+	}
+
+	/**
+	 * @return How many times a bundle had to be loaded.
+	 */
+	public static long getMisses()
+	{
+		synchronized (m_bundles)
+		{
+			return m_misses;
+		}
+	}
+
+	/**
+	 * @return How many bundles were dropped to stay within the limit.
+	 */
+	public static long getEvictions()
+	{
+		synchronized (m_bundles)
+		{
+			return m_evictions;
+		}
+	}
+
+	/**
+	 * @return The counts, for logging.
+	 */
+	public static String getStatistics()
+	{
+		synchronized (m_bundles)
+		{
+			return "bundles: " + m_bundles.size() + " of " + m_maxBundles + " estimated bytes: " + m_size + " hits: " + m_hits
+					+ " misses: " + m_misses + " evictions: " + m_evictions;
+		}
+	}
+
+	/**
+	 * Estimate the bytes a bundle's own keys and values take (two bytes a character, plus a map entry and two string headers each).
+	 */
+	protected static long estimateSize(ResourceBundle bundle)
+	{
+		long size = 0;
+		for (Enumeration e = bundle.getKeys(); e.hasMoreElements();)
+		{
+			String key = (String) e.nextElement();
+			Object value = bundle.getObject(key);
+			size += 112 + 2 * key.length() + ((value instanceof String) ? 2 * ((String) value).length() : 0);
+		}
+		return size;
+	}
+
+	/**
+	 * @return ResourceBundle.clearCache(ClassLoader), or null if this JVM does not have it.
+	 */
+	private static Method findClearCache()
+	{
+		try
+		{
+			return ResourceBundle.class.getMethod("clearCache", new Class[] { ClassLoader.class });
+		}
+		catch (Exception e)
+		{
+			return null;
+		}
+	}
+
+	/**
+	 * A bundle's base name, locale and class loader.
+	 */
+	protected static class Key
+	{
+		protected final String baseName;
+
+		protected final Locale locale;
+
+		protected final ClassLoader loader;
+
+		protected Key(String baseName, Locale locale, ClassLoader loader)
+		{
+			this.baseName = baseName;
+			this.locale = locale;
+			this.loader = loader;
+		}
+
+		public boolean equals(Object obj)
+		{
+			if (!(obj instanceof Key)) return false;
+			Key other = (Key) obj;
+			return baseName.equals(other.baseName) && locale.equals(other.locale) && (loader == other.loader);
+		}
+
+		public int hashCode()
+		{
+			return (baseName.hashCode() * 31 + locale.hashCode()) * 31 + System.identityHashCode(loader);
+		}
+	}
+
+	/**
+	 * A bundle and its estimated size.
+	 */
+	protected static class Entry
+	{
+		protected final ResourceBundle bundle;
+
+		protected final long size;
+
+		protected Entry(ResourceBundle bundle, long size)
+		{
+			this.bundle = bundle;
+			this.size = size;
+		}
+	}
+}
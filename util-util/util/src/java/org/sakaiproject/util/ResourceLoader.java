@@ -23,18 +23,18 @@ package org.sakaiproject.util;
 
 import java.text.MessageFormat;
 import java.util.Collection;
-import java.util.Enumeration;
-import java.util.Hashtable;
 import java.util.Locale;
 import java.util.Map;
 import java.util.MissingResourceException;
 import java.util.ResourceBundle;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.sakaiproject.entity.api.ResourceProperties;
 import org.sakaiproject.i18n.InternationalizedMessages;
+import org.sakaiproject.thread_local.cover.ThreadLocalManager;
 import org.sakaiproject.tool.cover.SessionManager;
 import org.sakaiproject.user.api.Preferences;
 import org.sakaiproject.user.cover.PreferencesService;
@@ -51,8 +51,14 @@ public class ResourceLoader extends DummyMap implements InternationalizedMessage
 	// name of ResourceBundle
 	protected String baseName = null;
 
-	// cached set of ResourceBundle objects
-	protected Hashtable bundles = new Hashtable();
+	// cached set of ResourceBundle objects (Locale -> ResourceBundle), from the ResourceBundleRegistry
+	protected Map bundles = new ConcurrentHashMap();
+
+	// the ResourceBundleRegistry generation the cached bundles are from
+	protected int bundlesGeneration = ResourceBundleRegistry.getGeneration();
+
+	// cached set of flattened bundles (Locale -> MessageTable), for the Map views and message formats
+	protected Map tables = new ConcurrentHashMap();
 
 	// current user id	
 	protected String userId = null;
@@ -65,6 +71,12 @@ public class ResourceLoader extends DummyMap implements InternationalizedMessage
 	private   String DBG_PREFIX = "** ";
 	private   String DBG_SUFFIX = " **";
 
+	// ThreadLocalManager binding name for the locale found for the current request
+	protected static final String REQUEST_LOCALE = ResourceLoader.class.getName() + ".locale";
+
+	// the last locale checked against DEBUG_LOCALE, and the answer
+	private volatile LocaleCheck lastDebugCheck = null;
+
 	/**
 	 * Default constructor (may be used to find user's default locale 
 	 *                      without specifying a bundle)
@@ -130,15 +142,37 @@ public class ResourceLoader extends DummyMap implements InternationalizedMessage
     **/
 	public String getFormattedMessage(String key, Object[] args)
 	{
-		if ( getLocale().toString().equals(DEBUG_LOCALE) )
+		Locale loc = getLocale();
+		if ( isDebugLocale(loc) )
 			return formatDebugPropertiesString( key );
+
+		// the pattern compiled once for the bundle and locale, if the bundle has it
+		MessageFormat format = null;
+		try
+		{
+			format = getTable(loc).getFormat(key);
+		}
+		catch (MissingResourceException e)
+		{
+		} // no bundle - get() below reports it
 			
-		String pattern = (String) get(key);
-		M_log.debug("getFormattedMessage(key,args) bundle name=" +
-			this.baseName + ", locale=" + getLocale().toString() +
-			", key=" + key + ", pattern=" + pattern);
+		if (format == null)
+		{
+			String pattern = (String) get(key);
+			if (M_log.isDebugEnabled())
+				M_log.debug("getFormattedMessage(key,args) bundle name=" +
+					this.baseName + ", locale=" + loc.toString() +
+					", key=" + key + ", pattern=" + pattern);
+			format = new MessageFormat(pattern, loc);
+		}
+		else if (M_log.isDebugEnabled())
+		{
+			M_log.debug("getFormattedMessage(key,args) bundle name=" +
+				this.baseName + ", locale=" + loc.toString() +
+				", key=" + key + ", pattern=" + format.toPattern());
+		}
 			
-		return (new MessageFormat(pattern, getLocale())).format(args, new StringBuffer(), null).toString();
+		return format.format(args, new StringBuffer(), null).toString();
 	}
 
 	/**
@@ -173,40 +207,68 @@ public class ResourceLoader extends DummyMap implements InternationalizedMessage
 	 **	 Second: return locale from user session, if available
 	 **	 Last: return system default locale
 	 **
+	 ** The current session user's locale is found once per request, and kept
+	 ** with the request (the ThreadLocalManager drops it when the request ends).
+	 **
 	 ** @return user's Locale object
 	 **/
 	public Locale getLocale()
 	{			 
+		 // check if locale is requested for specific user
+		 if ( userId != null )
+		 {
+			 Locale loc = getLocale( userId );
+			 if ( loc == null )
+				 loc = Locale.getDefault();
+			 return loc;
+		 }
+
+		 // the locale already found for this request, if the session user has not changed since
+		 String sessionUser = SessionManager.getCurrentSessionUserId();
+		 RequestLocale bound = (RequestLocale) ThreadLocalManager.get(REQUEST_LOCALE);
+		 if ( bound != null && bound.isFor(sessionUser, LOCALE_SESSION_KEY) )
+			 return bound.locale;
+
 		 Locale loc = null;
 		 try
 		 {
-			 // check if locale is requested for specific user
-			 if ( userId != null )
-			 {
-				 loc = getLocale( userId );
-				 if ( loc == null )
-					 loc = Locale.getDefault();
-			 }
+			 loc = (Locale) SessionManager.getCurrentSession().getAttribute(LOCALE_SESSION_KEY+sessionUser);
 			 
-			 else
-			 {
-				 loc = (Locale) SessionManager.getCurrentSession().getAttribute(LOCALE_SESSION_KEY+SessionManager.getCurrentSessionUserId());
-				 
-				 // The locale is not in the session. 
-				 // Look for it and set in session
-				 if (loc == null) 
-					 loc = setContextLocale(null);
-			 }
+			 // The locale is not in the session. 
+			 // Look for it and set in session
+			 if (loc == null) 
+				 loc = setContextLocale(null);
 		 }
 		 catch(NullPointerException e) 
 		 {
 			 // The locale is not in the session. 
 			 // Look for it and set in session
-			 loc = setContextLocale(null);
+			 // (without a session there is nothing to keep it with the request by, so it is found each time)
+			 return setContextLocale(null);
 		 } 
 
+		 ThreadLocalManager.set(REQUEST_LOCALE, new RequestLocale(sessionUser, LOCALE_SESSION_KEY, loc));
+
 		 return loc;
 	}
+
+	/**
+	 ** Is this the locale (DEBUG_LOCALE) that shows property keys instead of values?
+	 **
+	 ** @param loc the Locale
+	 ** @return true if it is the debug locale
+	 **/
+	protected boolean isDebugLocale(Locale loc)
+	{
+		// the same Locale object is found again and again for a user, so remember the last answer
+		LocaleCheck check = lastDebugCheck;
+		if ( check != null && check.locale == loc && check.debugLocale == DEBUG_LOCALE )
+			return check.debug;
+
+		boolean debug = loc.toString().equals(DEBUG_LOCALE);
+		lastDebugCheck = new LocaleCheck(loc, DEBUG_LOCALE, debug);
+		return debug;
+	}
 	
 	/**
 	 ** This method formats a debugging string using the properties key.
@@ -302,6 +364,9 @@ public class ResourceLoader extends DummyMap implements InternationalizedMessage
 		catch (Exception e) 
 		{
 		} //Ignore and continue
+
+		// forget the locale this request found before, so the next getLocale() sees this one
+		ThreadLocalManager.set(REQUEST_LOCALE, null);
 		 
 		return loc;		  
 	}
@@ -319,15 +384,17 @@ public class ResourceLoader extends DummyMap implements InternationalizedMessage
 	 */
 	public String getString(String key)
 	{
-		if ( getLocale().toString().equals(DEBUG_LOCALE) )
+		Locale loc = getLocale();
+		if ( isDebugLocale(loc) )
 			return formatDebugPropertiesString( key );
 			
 		try
 		{
-			String value = getBundle().getString(key);
-			M_log.debug("getString(key) bundle name=" + this.baseName +
-					", locale=" + getLocale().toString() + ", key=" +
-					key + ", value=" + value);
+			String value = getBundle(loc).getString(key);
+			if (M_log.isDebugEnabled())
+				M_log.debug("getString(key) bundle name=" + this.baseName +
+						", locale=" + loc.toString() + ", key=" +
+						key + ", value=" + value);
 			return value;
 
 		}
@@ -350,12 +417,13 @@ public class ResourceLoader extends DummyMap implements InternationalizedMessage
 	 */
 	public String getString(String key, String dflt)
 	{
-		if ( getLocale().toString().equals(DEBUG_LOCALE) )
+		Locale loc = getLocale();
+		if ( isDebugLocale(loc) )
 			return formatDebugPropertiesString( key );
 			
 		try
 		{
-			return getBundle().getString(key);
+			return getBundle(loc).getString(key);
 		}
 		catch (MissingResourceException e)
 		{
@@ -372,20 +440,22 @@ public class ResourceLoader extends DummyMap implements InternationalizedMessage
 	 */
 	public String[] getStrings(String key)
 	{
-		if ( getLocale().toString().equals(DEBUG_LOCALE) )
+		Locale loc = getLocale();
+		if ( isDebugLocale(loc) )
 			return new String[] { formatDebugPropertiesString(key) };
 			
 		// get the count
 		int count = getInt(key + ".count", 0);
 		if (count > 0)
 		{
+			ResourceBundle bundle = getBundle(loc);
 			String[] rv = new String[count];
 			for (int i = 1; i <= count; i++)
 			{
 				String value = "";
 				try
 				{
-					value = getBundle().getString(key + "." + i);
+					value = bundle.getString(key + "." + i);
 				}
 				catch (MissingResourceException e)
 				{
@@ -409,11 +479,13 @@ public class ResourceLoader extends DummyMap implements InternationalizedMessage
 	}
 
 	/**
-	 * * Clear bundles hashmap
+	 * * Clear bundles hashmap, and drop this base name's bundles from the ResourceBundleRegistry so every loader reads them again
 	 */
 	public void purgeCache()
 	{
-		this.bundles = new Hashtable();
+		this.bundles = new ConcurrentHashMap();
+		this.tables = new ConcurrentHashMap();
+		if (this.baseName != null) ResourceBundleRegistry.purge(this.baseName);
 		M_log.debug("purge bundle cache");
 	}
 
@@ -444,30 +516,62 @@ public class ResourceLoader extends DummyMap implements InternationalizedMessage
 	 */
 	protected ResourceBundle getBundle()
 	{
-		Locale loc = getLocale();
+		return getBundle(getLocale());
+	}
+
+	/**
+	 * Return ResourceBundle for this locale
+	 * 
+	 * @param loc
+	 *        the user's Locale
+	 * @return the locale's ResourceBundle object
+	 */
+	protected ResourceBundle getBundle(Locale loc)
+	{
+		// forget our bundles if the registry has been purged since we got them
+		int generation = ResourceBundleRegistry.getGeneration();
+		if (generation != this.bundlesGeneration)
+		{
+			this.bundles = new ConcurrentHashMap();
+			this.tables = new ConcurrentHashMap();
+			this.bundlesGeneration = generation;
+		}
+
 		ResourceBundle bundle = (ResourceBundle) this.bundles.get(loc);
 		if (bundle == null)
 		{
-			M_log.debug("Load bundle name=" + this.baseName + ", locale=" + getLocale().toString());
+			if (M_log.isDebugEnabled())
+				M_log.debug("Load bundle name=" + this.baseName + ", locale=" + loc.toString());
 			bundle = loadBundle(loc);
 		}
 		return bundle;
 	}
 
 	/**
-	 ** Return the ResourceBundle properties as a Map object
-	 **/
-	protected Map getBundleAsMap()
+	 * Return the flattened ResourceBundle for this locale, made once for the bundle and locale
+	 * 
+	 * @param loc
+	 *        the user's Locale
+	 * @return the locale's MessageTable
+	 */
+	protected MessageTable getTable(Locale loc)
 	{
-		Map bundle = new Hashtable();
-
-		for (Enumeration e = getBundle().getKeys(); e.hasMoreElements();)
+		ResourceBundle bundle = getBundle(loc);
+		MessageTable table = (MessageTable) this.tables.get(loc);
+		if (table == null)
 		{
-			Object key = e.nextElement();
-			bundle.put(key, getBundle().getObject((String) key));
+			table = MessageTable.forBundle(bundle, loc);
+			this.tables.put(loc, table);
 		}
+		return table;
+	}
 
-		return bundle;
+	/**
+	 ** Return the ResourceBundle properties as a (read only) Map object
+	 **/
+	protected Map getBundleAsMap()
+	{
+		return getTable(getLocale());
 	}
 
 	/**
@@ -482,7 +586,8 @@ public class ResourceLoader extends DummyMap implements InternationalizedMessage
 		ResourceBundle newBundle = null;
 		try
 		{
-			newBundle = ResourceBundle.getBundle(this.baseName, loc);
+			// shared by every loader for this base name - loaded, as always, with the class loader that loaded us
+			newBundle = ResourceBundleRegistry.getBundle(this.baseName, loc, ResourceLoader.class.getClassLoader());
 		}
 		catch (NullPointerException e)
 		{
@@ -507,6 +612,52 @@ public class ResourceLoader extends DummyMap implements InternationalizedMessage
 	}
 }
 
+/**
+ * The locale found for a request, and what it was found for.
+ */
+class RequestLocale
+{
+	final String sessionUser;
+
+	final String sessionKey;
+
+	final Locale locale;
+
+	RequestLocale(String sessionUser, String sessionKey, Locale locale)
+	{
+		this.sessionUser = sessionUser;
+		this.sessionKey = sessionKey;
+		this.locale = locale;
+	}
+
+	/**
+	 * @return true if this was found for this session user, through this session key.
+	 */
+	boolean isFor(String sessionUser, String sessionKey)
+	{
+		return ((sessionUser == null) ? (this.sessionUser == null) : sessionUser.equals(this.sessionUser)) && sessionKey.equals(this.sessionKey);
+	}
+}
+
+/**
+ * A locale, and whether it is the debug locale.
+ */
+class LocaleCheck
+{
+	final Locale locale;
+
+	final String debugLocale;
+
+	final boolean debug;
+
+	LocaleCheck(Locale locale, String debugLocale, boolean debug)
+	{
+		this.locale = locale;
+		this.debugLocale = debugLocale;
+		this.debug = debug;
+	}
+}
+
 abstract class DummyMap implements Map
 {
 	public void clear()
@@ -0,0 +1,205 @@
+/**********************************************************************************
+ * $URL$
+ * $Id$
+ ***********************************************************************************
+ *
+ * Copyright (c) 2007 The Sakai Foundation.
+ * 
+ * Licensed under the Educational Community License, Version 1.0 (the "License"); 
+ * you may not use this file except in compliance with the License. 
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.opensource.org/licenses/ecl1.php
+ * 
+ * Unless required by applicable law or agreed to in writing, software 
+ * distributed under the License is distributed on an "AS IS" BASIS, 
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. 
+ * See the License for the specific language governing permissions and 
+ * limitations under the License.
+ *
+ **********************************************************************************/
+
+package org.sakaiproject.util;
+
+/**
+ * <p>
+ * SplitTokenizer walks the parts of a string the same way StringUtil.split() finds them, but without creating any strings or arrays. Each
+ * part is given as offsets into the source string, or as a CharSequence view over the source.
+ * </p>
+ * <p>
+ * A tokenizer may be reset() to a new source and reused. It is not thread safe.
+ * </p>
+ */
+public class SplitTokenizer
+{
+	/** The string being split. */
+	protected String source;
+
+	/** The boundary between parts. */
+	protected String splitter;
+
+	/** The boundary, when it is a single character (else -1). */
+	protected int splitChar;
+
+	/** Where to look for the next part. */
+	protected int pos;
+
+	/** Set once the last part has been found. */
+	protected boolean done;
+
+	/** The start of the current part. */
+	protected int start;
+
+	/** The end (exclusive) of the current part. */
+	protected int end;
+
+	/** The view of the current part. */
+	protected Token token = new Token();
+
+	/**
+	 * Construct.
+	 * 
+	 * @param source
+	 *        The string to split.
+	 * @param splitter
+	 *        The string that forms the boundary between the parts.
+	 */
+	public SplitTokenizer(String source, String splitter)
+	{
+		reset(source, splitter);
+	}
+
+	/**
+	 * Start over on a new source.
+	 * 
+	 * @param source
+	 *        The string to split.
+	 * @param splitter
+	 *        The string that forms the boundary between the parts.
+	 * @return this tokenizer.
+	 */
+	public SplitTokenizer reset(String source, String splitter)
+	{
+		this.source = source;
+		this.splitter = splitter;
+		this.splitChar = (splitter.length() == 1) ? splitter.charAt(0) : -1;
+		this.pos = 0;
+		this.done = false;
+		this.start = 0;
+		this.end = 0;
+		return this;
+	}
+
+	/**
+	 * Move to the next part.
+	 * 
+	 * @return true if there is a next part, false if all the parts have been seen.
+	 */
+	public boolean next()
+	{
+		if (done) return false;
+
+		int next = (splitChar != -1) ? source.indexOf(splitChar, pos) : source.indexOf(splitter, pos);
+		if (next != -1)
+		{
+			start = pos;
+			end = next;
+			pos = next + splitter.length();
+			return true;
+		}
+
+		// the rest of the source, if any, is the last part
+		done = true;
+		if (pos < source.length())
+		{
+			start = pos;
+			end = source.length();
+			return true;
+		}
+
+		return false;
+	}
+
+	/**
+	 * @return The offset in the source of the start of the current part.
+	 */
+	public int start()
+	{
+		return start;
+	}
+
+	/**
+	 * @return The offset in the source just past the end of the current part.
+	 */
+	public int end()
+	{
+		return end;
+	}
+
+	/**
+	 * @return The length of the current part.
+	 */
+	public int length()
+	{
+		return end - start;
+	}
+
+	/**
+	 * Access the current part without copying it out of the source. The view is reused, and changes to the next part on each call to next().
+	 * 
+	 * @return A view of the current part.
+	 */
+	public CharSequence token()
+	{
+		return token;
+	}
+
+	/**
+	 * @return The current part as a String (this makes a new string).
+	 */
+	public String tokenString()
+	{
+		return source.substring(start, end);
+	}
+
+	/**
+	 * Check the current part against a value, without making a string.
+	 * 
+	 * @param value
+	 *        The value to compare to.
+	 * @return true if the current part is the same as value.
+	 */
+	public boolean tokenEquals(String value)
+	{
+		if (value == null) return false;
+		return (value.length() == end - start) && source.regionMatches(start, value, 0, value.length());
+	}
+
+	/**
+	 * The CharSequence view of the current part.
+	 */
+	protected class Token implements CharSequence
+	{
+		public int length()
+		{
+			return end - start;
+		}
+
+		public char charAt(int index)
+		{
+			if ((index < 0) || (index >= end - start)) throw new IndexOutOfBoundsException(Integer.toString(index));
+			return source.charAt(start + index);
+		}
+
+		public CharSequence subSequence(int from, int to)
+		{
+			if ((from < 0) || (to > end - start) || (from > to)) throw new IndexOutOfBoundsException(from + "," + to);
+			return source.subSequence(start + from, start + to);
+		}
+
+		public String toString()
+		{
+			return source.substring(start, end);
+		}
+	}
+}
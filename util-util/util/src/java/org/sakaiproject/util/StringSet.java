@@ -0,0 +1,168 @@
+/**********************************************************************************
+ * $URL$
+ * $Id$
+ ***********************************************************************************
+ *
+ * Copyright (c) 2007 The Sakai Foundation.
+ * 
+ * Licensed under the Educational Community License, Version 1.0 (the "License"); 
+ * you may not use this file except in compliance with the License. 
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.opensource.org/licenses/ecl1.php
+ * 
+ * Unless required by applicable law or agreed to in writing, software 
+ * distributed under the License is distributed on an "AS IS" BASIS, 
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. 
+ * See the License for the specific language governing permissions and 
+ * limitations under the License.
+ *
+ **********************************************************************************/
+
+package org.sakaiproject.util;
+
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.Set;
+
+/**
+ * <p>
+ * StringSet is an immutable set of strings, hashed both as is and case folded, for repeated membership tests with or without case. Build
+ * one from a role or permission list once, then use it with StringUtil.contains() / containsIgnoreCase() in place of the list.
+ * </p>
+ * <p>
+ * Case is folded the way String.equalsIgnoreCase() compares, so containsIgnoreCase() agrees with a scan using equalsIgnoreCase().
+ * </p>
+ */
+public class StringSet
+{
+	/** The strings, as is. */
+	protected Set m_exact = new HashSet();
+
+	/** The strings, case folded. */
+	protected Set m_folded = new HashSet();
+
+	/**
+	 * Construct from a collection; anything in it that is not a String is ignored.
+	 * 
+	 * @param stringCollection
+	 *        The collection of (String).
+	 */
+	public StringSet(Collection stringCollection)
+	{
+		if (stringCollection == null) return;
+		for (Iterator i = stringCollection.iterator(); i.hasNext();)
+		{
+			Object o = i.next();
+			if (!(o instanceof String)) continue;
+			add((String) o);
+		}
+	}
+
+	/**
+	 * Construct from an array; null entries are ignored.
+	 * 
+	 * @param strings
+	 *        The strings.
+	 */
+	public StringSet(String[] strings)
+	{
+		if (strings == null) return;
+		for (int i = 0; i < strings.length; i++)
+		{
+			if (strings[i] == null) continue;
+			add(strings[i]);
+		}
+	}
+
+	protected void add(String value)
+	{
+		m_exact.add(value);
+		m_folded.add(fold(value));
+	}
+
+	/**
+	 * @return The number of (distinct) strings in the set.
+	 */
+	public int size()
+	{
+		return m_exact.size();
+	}
+
+	/**
+	 * Check for a string, respecting case.
+	 * 
+	 * @param value
+	 *        The value to look for.
+	 * @return true if the string is in the set.
+	 */
+	public boolean contains(String value)
+	{
+		if (value == null) return false;
+		return m_exact.contains(value);
+	}
+
+	/**
+	 * Check for a string, ignoring case.
+	 * 
+	 * @param value
+	 *        The value to look for.
+	 * @return true if the string is in the set, ignoring case.
+	 */
+	public boolean containsIgnoreCase(String value)
+	{
+		if (value == null) return false;
+		return m_folded.contains(fold(value));
+	}
+
+	/**
+	 * Check for a string, ignoring case or not as specified.
+	 * 
+	 * @param value
+	 *        The value to look for.
+	 * @param ignoreCase
+	 *        if true, we will do the compare case insensitive.
+	 * @return true if the string is in the set.
+	 */
+	public boolean contains(String value, boolean ignoreCase)
+	{
+		return ignoreCase ? containsIgnoreCase(value) : contains(value);
+	}
+
+	/**
+	 * Fold the case of a string, so that two strings that are equalsIgnoreCase() fold to equal strings.
+	 * 
+	 * @param value
+	 *        The string.
+	 * @return The case folded string.
+	 */
+	protected static String fold(String value)
+	{
+		// only make a new string if something changes
+		final int length = value.length();
+		for (int i = 0; i < length; i++)
+		{
+			char c = value.charAt(i);
+			if (foldChar(c) != c)
+			{
+				char[] folded = value.toCharArray();
+				for (int j = i; j < length; j++)
+				{
+					folded[j] = foldChar(folded[j]);
+				}
+				return new String(folded);
+			}
+		}
+
+		return value;
+	}
+
+	/**
+	 * Fold one character, as String.equalsIgnoreCase() compares characters.
+	 */
+	protected static char foldChar(char c)
+	{
+		return Character.toLowerCase(Character.toUpperCase(c));
+	}
+}
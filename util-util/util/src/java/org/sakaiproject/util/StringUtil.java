@@ -21,7 +21,6 @@
 
 package org.sakaiproject.util;
 
-import java.util.Vector;
 import java.util.Collection;
 import java.util.Iterator;
 
@@ -38,28 +37,92 @@ public class StringUtil
 	public static String[] split(String source, String splitter)
 	{
 		// hold the results as we find them
-		Vector rv = new Vector();
+		String[] rv = new String[countSplit(source, splitter)];
+		split(source, splitter, rv);
+		return rv;
+	}
+
+	/**
+	 * Split the source into parts, as split() does, but into an array supplied by the caller, so nothing but the parts themselves is allocated.
+	 * 
+	 * @param source
+	 *        The string to split
+	 * @param splitter
+	 *        The string that forms the boundary between the parts.
+	 * @param parts
+	 *        The array to fill with the parts; if it is too short, the parts that do not fit are skipped.
+	 * @return The number of parts found (which may be more than parts.length).
+	 */
+	public static int split(String source, String splitter, String[] parts)
+	{
+		int count = 0;
 		int last = 0;
 		int next = 0;
+		int splitChar = (splitter.length() == 1) ? splitter.charAt(0) : -1;
 		do
 		{
 			// find next splitter in source
-			next = source.indexOf(splitter, last);
+			next = (splitChar != -1) ? source.indexOf(splitChar, last) : source.indexOf(splitter, last);
 			if (next != -1)
 			{
 				// isolate from last thru before next
-				rv.add(source.substring(last, next));
+				if (count < parts.length) parts[count] = source.substring(last, next);
+				count++;
 				last = next + splitter.length();
 			}
 		}
 		while (next != -1);
 		if (last < source.length())
 		{
-			rv.add(source.substring(last, source.length()));
+			if (count < parts.length) parts[count] = source.substring(last, source.length());
+			count++;
+		}
+
+		return count;
+	}
+
+	/**
+	 * Count the parts that split() would make, without making them.
+	 * 
+	 * @param source
+	 *        The string to split
+	 * @param splitter
+	 *        The string that forms the boundary between the parts.
+	 * @return The number of parts.
+	 */
+	public static int countSplit(String source, String splitter)
+	{
+		int count = 0;
+		int last = 0;
+		int next = 0;
+		int splitChar = (splitter.length() == 1) ? splitter.charAt(0) : -1;
+		do
+		{
+			next = (splitChar != -1) ? source.indexOf(splitChar, last) : source.indexOf(splitter, last);
+			if (next != -1)
+			{
+				count++;
+				last = next + splitter.length();
+			}
 		}
+		while (next != -1);
+		if (last < source.length()) count++;
 
-		// convert to array
-		return (String[]) rv.toArray(new String[rv.size()]);
+		return count;
+	}
+
+	/**
+	 * Walk the parts that split() would make, without making them.
+	 * 
+	 * @param source
+	 *        The string to split
+	 * @param splitter
+	 *        The string that forms the boundary between the parts.
+	 * @return A SplitTokenizer positioned before the first part.
+	 */
+	public static SplitTokenizer tokenize(String source, String splitter)
+	{
+		return new SplitTokenizer(source, splitter);
 	}
 
 	/**
@@ -125,27 +188,21 @@ public class StringUtil
 	 */
 	public static String[] splitFirst(String source, String splitter)
 	{
-		// hold the results as we find them
-		Vector rv = new Vector();
-		int last = 0;
-		int next = 0;
-
 		// find first splitter in source
-		next = source.indexOf(splitter, last);
-		if (next != -1)
+		int next = source.indexOf(splitter);
+		if (next == -1)
 		{
-			// isolate from last thru before next
-			rv.add(source.substring(last, next));
-			last = next + splitter.length();
+			return (source.length() > 0) ? new String[] { source } : new String[0];
 		}
 
+		// isolate from the start thru before next, and whatever follows
+		int last = next + splitter.length();
 		if (last < source.length())
 		{
-			rv.add(source.substring(last, source.length()));
+			return new String[] { source.substring(0, next), source.substring(last) };
 		}
 
-		// convert to array
-		return (String[]) rv.toArray(new String[rv.size()]);
+		return new String[] { source.substring(0, next) };
 	}
 
 	/**
@@ -160,7 +217,7 @@ public class StringUtil
 		String path = null;
 
 		// Note: there may be a trailing separator
-		int pos = ref.lastIndexOf("/", ref.length() - 2);
+		int pos = ref.lastIndexOf('/', ref.length() - 2);
 
 		// if no separators are found, place it even before the root!
 		if (pos == -1)
@@ -188,9 +245,15 @@ public class StringUtil
 	 */
 	public static String fullReference(String root, String relative)
 	{
-		String full = referencePath(root);
-		full += relative;
-		return full;
+		// a null relative is added as "null", as string concatenation would
+		if (relative == null) relative = "null";
+
+		// the reference path of root, without making it as a separate string
+		int pos = root.lastIndexOf('/', root.length() - 2);
+		StringBuilder full = new StringBuilder(pos + 1 + relative.length());
+		full.append(root, 0, pos + 1);
+		full.append(relative);
+		return full.toString();
 	}
 
 	/**
@@ -512,4 +575,54 @@ public class StringUtil
 		}
 		return false;
 	}
+
+	/**
+	 * Determine if a String is contained in a StringSet
+	 * 
+	 * @param stringSet
+	 *        The StringSet to check
+	 * @param value
+	 *        The value to look for
+	 * @return true if the string was found
+	 */
+	public static boolean contains(StringSet stringSet, String value)
+	{
+		if (stringSet == null || value == null) return false;
+		if (value.length() == 0) return false;
+		return stringSet.contains(value);
+	}
+
+	/**
+	 * Determine if a String is contained in a StringSet, ignoring case
+	 * 
+	 * @param stringSet
+	 *        The StringSet to check
+	 * @param value
+	 *        The value to look for
+	 * @return true if the string was found
+	 */
+	public static boolean containsIgnoreCase(StringSet stringSet, String value)
+	{
+		if (stringSet == null || value == null) return false;
+		if (value.length() == 0) return false;
+		return stringSet.containsIgnoreCase(value);
+	}
+
+	/**
+	 * Determine if a String is contained in a StringSet, ignoring case or not as specified
+	 * 
+	 * @param stringSet
+	 *        The StringSet to check
+	 * @param value
+	 *        The value to look for
+	 * @param ignoreCase
+	 *        if true, we will do the compare case insensitive.
+	 * @return true if the string was found
+	 */
+	public static boolean contains(StringSet stringSet, String value, boolean ignoreCase)
+	{
+		if (stringSet == null || value == null) return false;
+		if (value.length() == 0) return false;
+		return stringSet.contains(value, ignoreCase);
+	}
 }
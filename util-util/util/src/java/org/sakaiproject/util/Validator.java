@@ -21,9 +21,21 @@
 
 package org.sakaiproject.util;
 
+import java.io.IOException;
+import java.io.Reader;
 import java.io.UnsupportedEncodingException;
+import java.io.Writer;
 import java.net.URLEncoder;
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Enumeration;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
 import javax.servlet.http.HttpServletRequest;
 
@@ -89,6 +101,91 @@ public class Validator
 	/** Valid special email local id characters (- those that are invalid resource ids) */
 	protected static final String VALID_EMAIL = "abcdefghijklmnopqrstuvwxyz1234567890ABCDEFGHIJKLMNOPQRSTUVWXYZ!#$&'*+-=?^_`{|}~.";
 
+	/** escapeUrl() action for a byte: leave it as is. */
+	private static final byte URL_COPY = 0;
+
+	/** escapeUrl() action for a byte: %nn escape it. */
+	private static final byte URL_PERCENT = 1;
+
+	/** escapeUrl() action for a byte: ^^xnn^ escape it. */
+	private static final byte URL_SPECIAL = 2;
+
+	/** The escaped length, by escapeUrl() action. */
+	private static final int[] URL_ACTION_LENGTH = { 1, 3, 6 };
+
+	/** escapeUrl() action for each byte (0..255) of the UTF-8 encoding. */
+	private static final byte[] URL_ACTIONS = new byte[256];
+
+	/** escapeResourceName() replacement for each character. */
+	private static final CharFolding RESOURCE_NAME_FOLDING = new CharFolding(new CharFolding.Mapping()
+	{
+		public char map(char c)
+		{
+			return mapResourceNameChar(c);
+		}
+	});
+
+	/** escapeZipEntry() replacement for each character 0..255. */
+	private static final char[] ZIP_ENTRY_MAP = new char[256];
+
+	/** Characters 0..255 that are in INVALID_CHARS_IN_RESOURCE_ID. */
+	private static final boolean[] INVALID_RESOURCE_ID = new boolean[256];
+
+	/** Characters 0..255 that are in INVALID_CHARS_IN_USER_ID. */
+	private static final boolean[] INVALID_USER_ID = new boolean[256];
+
+	/** Characters 0..255 that are in VALID_EMAIL. */
+	private static final boolean[] VALID_EMAIL_LOCAL = new boolean[256];
+
+	private static final char[] HEX_DIGITS = "0123456789ABCDEF".toCharArray();
+
+	/** Batches with fewer names than this are escaped on the calling thread. */
+	protected static final int PARALLEL_THRESHOLD = 1024;
+
+	/** How many characters the streaming cleanInput() / stripAllNewlines() read at a time. */
+	protected static final int STREAM_CHUNK_SIZE = 4096;
+
+	/** The mime types a browser can handle inline: text (plain/html), images, PDF, internal OSP/Forms, Shockwave Flash and VRML. */
+	protected static final MimeTypePolicy INLINE_MIME_TYPES = new MimeTypePolicy(new String[] { "application/pdf", "application/x-pdf",
+			"application/x-osp", "application/x-shockwave-flash", "application/futuresplash" }, new String[] { "text/", "image/" },
+			new String[] { "vrml" });
+
+	/** Batch escaping mode: escapeResourceName(). */
+	protected static final int BATCH_RESOURCE_NAME = 0;
+
+	/** Batch escaping mode: escapeResourceName(getFileName()). */
+	protected static final int BATCH_FILE_NAME = 1;
+
+	/** Batch escaping mode: escapeZipEntry(). */
+	protected static final int BATCH_ZIP_ENTRY = 2;
+
+	// fill in the tables from the character lists, so they always agree
+	static
+	{
+		for (int b = 0; b < 256; b++)
+		{
+			// escape ascii control characters, ascii high bits, specials
+			if (ESCAPE_URL_SPECIAL.indexOf((char) b) != -1)
+			{
+				URL_ACTIONS[b] = URL_SPECIAL;
+			}
+			else if ((ESCAPE_URL.indexOf((char) b) != -1) || (b <= 0x1F) || (b == 0x7F) || (b >= 0x80))
+			{
+				URL_ACTIONS[b] = URL_PERCENT;
+			}
+			else
+			{
+				URL_ACTIONS[b] = URL_COPY;
+			}
+
+			char c = (char) b;
+			ZIP_ENTRY_MAP[b] = (INVALID_CHARS_IN_ZIP_ENTRY.indexOf(c) != -1) ? '_' : c;
+			INVALID_RESOURCE_ID[b] = (INVALID_CHARS_IN_RESOURCE_ID.indexOf(c) != -1);
+			INVALID_USER_ID[b] = (INVALID_CHARS_IN_USER_ID.indexOf(c) != -1);
+			VALID_EMAIL_LOCAL[b] = (VALID_EMAIL.indexOf(c) != -1);
+		}
+	}
+
 	/**
 	 * Escape a plaintext string so that it can be output as part of an HTML document. Amperstand, greater-than, less-than, newlines, etc, will be escaped so that they display (instead of being interpreted as formatting).
 	 * 
@@ -178,44 +275,122 @@ public class Validator
 	{
 		if (id == null) return "";
 		id = id.trim();
-		try
-		{
-			// convert the string to bytes in UTF-8
-			byte[] bytes = id.getBytes("UTF-8");
 
-			StringBuilder buf = new StringBuilder();
-			for (int i = 0; i < bytes.length; i++)
+		// size the escaped string, working from the UTF-8 length of each character
+		final int len = id.length();
+		int size = 0;
+		for (int i = 0; i < len; i++)
+		{
+			char c = id.charAt(i);
+			if (c < 0x80)
 			{
-				byte b = bytes[i];
-				// escape ascii control characters, ascii high bits, specials
-				if (ESCAPE_URL_SPECIAL.indexOf((char) b) != -1)
-				{
-					buf.append("^^x"); // special funky way to encode bad URL characters 
-					buf.append(toHex(b));
-					buf.append('^');
-				}
-				else if ((ESCAPE_URL.indexOf((char) b) != -1) || (b <= 0x1F) || (b == 0x7F) || (b >= 0x80))
-				{
-					buf.append("%");
-					buf.append(toHex(b));
-				}
-				else
-				{
-					buf.append((char) b);
-				}
+				size += URL_ACTION_LENGTH[URL_ACTIONS[c]];
+			}
+			else if (c < 0x800)
+			{
+				size += 2 * 3;
+			}
+			else if (Character.isHighSurrogate(c) && (i + 1 < len) && Character.isLowSurrogate(id.charAt(i + 1)))
+			{
+				size += 4 * 3;
+				i++;
+			}
+			else if ((c >= Character.MIN_SURROGATE) && (c <= Character.MAX_SURROGATE))
+			{
+				// an unpaired surrogate encodes as '?'
+				size += URL_ACTION_LENGTH[URL_ACTIONS['?']];
+			}
+			else
+			{
+				size += 3 * 3;
 			}
-
-			String rv = buf.toString();
-			return rv;
 		}
-		catch (Exception e)
+
+		// every escape makes the string longer, so if the size is unchanged, there's nothing to escape
+		if (size == len) return id;
+
+		char[] buf = new char[size];
+		int pos = 0;
+		for (int i = 0; i < len; i++)
 		{
-			M_log.warn("Validator.escapeUrl: ", e);
-			return id;
+			char c = id.charAt(i);
+			if (c < 0x80)
+			{
+				pos = escapeUrlByte(c, buf, pos);
+			}
+			else if (c < 0x800)
+			{
+				pos = escapeUrlByte(0xC0 | (c >> 6), buf, pos);
+				pos = escapeUrlByte(0x80 | (c & 0x3F), buf, pos);
+			}
+			else if (Character.isHighSurrogate(c) && (i + 1 < len) && Character.isLowSurrogate(id.charAt(i + 1)))
+			{
+				int cp = Character.toCodePoint(c, id.charAt(++i));
+				pos = escapeUrlByte(0xF0 | (cp >> 18), buf, pos);
+				pos = escapeUrlByte(0x80 | ((cp >> 12) & 0x3F), buf, pos);
+				pos = escapeUrlByte(0x80 | ((cp >> 6) & 0x3F), buf, pos);
+				pos = escapeUrlByte(0x80 | (cp & 0x3F), buf, pos);
+			}
+			else if ((c >= Character.MIN_SURROGATE) && (c <= Character.MAX_SURROGATE))
+			{
+				pos = escapeUrlByte('?', buf, pos);
+			}
+			else
+			{
+				pos = escapeUrlByte(0xE0 | (c >> 12), buf, pos);
+				pos = escapeUrlByte(0x80 | ((c >> 6) & 0x3F), buf, pos);
+				pos = escapeUrlByte(0x80 | (c & 0x3F), buf, pos);
+			}
 		}
 
+		return new String(buf);
+
 	} // escapeUrl
 
+	/**
+	 * Escape one byte of the UTF-8 encoding for escapeUrl().
+	 * 
+	 * @param b
+	 *        The byte value (0..255).
+	 * @param buf
+	 *        The buffer to write into.
+	 * @param pos
+	 *        Where in buf to write.
+	 * @return The position in buf after what was written.
+	 */
+	private static int escapeUrlByte(int b, char[] buf, int pos)
+	{
+		switch (URL_ACTIONS[b])
+		{
+			case URL_SPECIAL:
+			{
+				// special funky way to encode bad URL characters
+				buf[pos++] = '^';
+				buf[pos++] = '^';
+				buf[pos++] = 'x';
+				buf[pos++] = HEX_DIGITS[b >> 4];
+				buf[pos++] = HEX_DIGITS[b & 0x0F];
+				buf[pos++] = '^';
+			}
+				break;
+
+			case URL_PERCENT:
+			{
+				buf[pos++] = '%';
+				buf[pos++] = HEX_DIGITS[b >> 4];
+				buf[pos++] = HEX_DIGITS[b & 0x0F];
+			}
+				break;
+
+			default:
+			{
+				buf[pos++] = (char) b;
+			}
+		}
+
+		return pos;
+	}
+
 	/**
 	 * Return a string based on id that is valid according to Resource name validity rules.
 	 * 
@@ -226,81 +401,150 @@ public class Validator
 	public static String escapeResourceName(String id)
 	{
 		if (id == null) return "";
-		id = id.trim();
-		try
+		return RESOURCE_NAME_FOLDING.fold(id.trim());
+
+	} // escapeResourceName
+
+	/**
+	 * Return a string based on id that is valid according to Resource name validity rules, optionally first replacing each accented
+	 * character with its base character (by Unicode canonical decomposition, stripping the combining marks).
+	 * 
+	 * @param id
+	 *        The string to escape.
+	 * @param decompose
+	 *        if true, reduce accented characters to their base characters, else escape as escapeResourceName(String) does.
+	 * @return id fully escaped using Resource name validity rules.
+	 */
+	public static String escapeResourceName(String id, boolean decompose)
+	{
+		if (!decompose) return escapeResourceName(id);
+		if (id == null) return "";
+		return RESOURCE_NAME_FOLDING.fold(CharFolding.stripMarks(id.trim()));
+
+	} // escapeResourceName
+
+	/**
+	 * Work out the escapeResourceName() replacement for a character, for the folding table.
+	 * 
+	 * @param c
+	 *        The character.
+	 * @return The character to use in its place (which may be c).
+	 */
+	private static char mapResourceNameChar(char c)
+	{
+		if (MAP_TO_A.indexOf(c) >= 0) return 'a';
+		if (MAP_TO_E.indexOf(c) >= 0) return 'e';
+		if (MAP_TO_I.indexOf(c) >= 0) return 'i';
+		if (MAP_TO_O.indexOf(c) >= 0) return 'o';
+		if (MAP_TO_U.indexOf(c) >= 0) return 'u';
+		if (MAP_TO_Y.indexOf(c) >= 0) return 'y';
+		if (MAP_TO_N.indexOf(c) >= 0) return 'n';
+		if (MAP_TO_B.indexOf(c) >= 0) return 'b';
+		if (MAP_TO_C.indexOf(c) >= 0) return 'c';
+		if (MAP_TO_L.indexOf(c) >= 0) return 'l';
+		if (MAP_TO_X.indexOf(c) >= 0) return 'x';
+
+		// Remove any ascii control characters
+		if (c < '\040') return '_';
+
+		if (INVALID_CHARS_IN_RESOURCE_ID.indexOf(c) >= 0 || ESCAPE_CHARS_IN_RESOURCE_ID.indexOf(c) >= 0) return '_';
+
+		return c;
+	}
+
+	/**
+	 * Escape a batch of names using Resource name validity rules, as escapeResourceName() would each. Large batches are escaped in parallel.
+	 * 
+	 * @param names
+	 *        The names (String) to escape; anything else is ignored.
+	 * @param fileNameOnly
+	 *        if true, each name is first reduced to just its file name, as getFileName() would (for full paths from uploads and zip entries).
+	 * @param collisions
+	 *        if not null, any escaped name that more than one different name escapes to is added here (once).
+	 * @return A map of each name to its escaped name, in the order the names were given.
+	 */
+	public static Map escapeResourceNames(Collection names, boolean fileNameOnly, Collection collisions)
+	{
+		return escapeAll(names, fileNameOnly ? BATCH_FILE_NAME : BATCH_RESOURCE_NAME, collisions);
+	}
+
+	/**
+	 * Escape a batch of names to create zip entries, as escapeZipEntry() would each. Large batches are escaped in parallel.
+	 * 
+	 * @param names
+	 *        The names (String) to escape; anything else is ignored.
+	 * @param collisions
+	 *        if not null, any escaped name that more than one different name escapes to is added here (once).
+	 * @return A map of each name to its escaped name, in the order the names were given.
+	 */
+	public static Map escapeZipEntries(Collection names, Collection collisions)
+	{
+		return escapeAll(names, BATCH_ZIP_ENTRY, collisions);
+	}
+
+	/**
+	 * Escape a batch of names.
+	 * 
+	 * @param names
+	 *        The names (String) to escape; anything else is ignored.
+	 * @param mode
+	 *        One of the BATCH_ modes.
+	 * @param collisions
+	 *        if not null, any escaped name that more than one different name escapes to is added here (once).
+	 * @return A map of each name to its escaped name, in the order the names were given.
+	 */
+	protected static Map escapeAll(Collection names, final int mode, Collection collisions)
+	{
+		// collect the distinct names
+		List distinct = new ArrayList(names.size());
+		Map rv = new LinkedHashMap();
+		for (Iterator i = names.iterator(); i.hasNext();)
 		{
-			StringBuilder buf = new StringBuilder();
-			for (int i = 0; i < id.length(); i++)
+			Object o = i.next();
+			if (!(o instanceof String)) continue;
+			if (rv.containsKey(o)) continue;
+			rv.put(o, null);
+			distinct.add(o);
+		}
+
+		final String[] in = (String[]) distinct.toArray(new String[distinct.size()]);
+		final String[] out = new String[in.length];
+		ParallelSlices.run(in.length, PARALLEL_THRESHOLD, new ParallelSlices.Slice()
+		{
+			public void run(int from, int to)
 			{
-				char c = id.charAt(i);
-				if (MAP_TO_A.indexOf(c) >= 0)
-				{
-					buf.append('a');
-				}
-				else if (MAP_TO_E.indexOf(c) >= 0)
-				{
-					buf.append('e');
-				}
-				else if (MAP_TO_I.indexOf(c) >= 0)
-				{
-					buf.append('i');
-				}
-				else if (MAP_TO_O.indexOf(c) >= 0)
-				{
-					buf.append('o');
-				}
-				else if (MAP_TO_U.indexOf(c) >= 0)
-				{
-					buf.append('u');
-				}
-				else if (MAP_TO_Y.indexOf(c) >= 0)
-				{
-					buf.append('y');
-				}
-				else if (MAP_TO_N.indexOf(c) >= 0)
+				for (int i = from; i < to; i++)
 				{
-					buf.append('n');
-				}
-				else if (MAP_TO_B.indexOf(c) >= 0)
-				{
-					buf.append('b');
-				}
-				else if (MAP_TO_C.indexOf(c) >= 0)
-				{
-					buf.append('c');
-				}
-				else if (MAP_TO_L.indexOf(c) >= 0)
-				{
-					buf.append('l');
-				}
-				else if (MAP_TO_X.indexOf(c) >= 0)
-				{
-					buf.append('x');
-				}
-				else if (c < '\040')	// Remove any ascii control characters
-				{
-					buf.append('_');
-				}
-				else if (INVALID_CHARS_IN_RESOURCE_ID.indexOf(c) >= 0 || ESCAPE_CHARS_IN_RESOURCE_ID.indexOf(c) >= 0)
-				{
-					buf.append('_');
-				}
-				else
-				{
-					buf.append(c);
+					switch (mode)
+					{
+						case BATCH_FILE_NAME:
+							out[i] = escapeResourceName(getFileName(in[i]));
+							break;
+						case BATCH_ZIP_ENTRY:
+							out[i] = escapeZipEntry(in[i]);
+							break;
+						default:
+							out[i] = escapeResourceName(in[i]);
+					}
 				}
 			}
+		});
 
-			String rv = buf.toString();
-			return rv;
-		}
-		catch (Exception e)
+		// fill in the map, watching for different names that end up the same
+		Map owners = new HashMap(in.length * 2);
+		Set collided = new HashSet();
+		for (int i = 0; i < in.length; i++)
 		{
-			M_log.warn("Validator.escapeResourceName: ", e);
-			return id;
+			rv.put(in[i], out[i]);
+			Object owner = owners.put(out[i], in[i]);
+			if ((owner != null) && collided.add(out[i]) && (collisions != null))
+			{
+				collisions.add(out[i]);
+			}
 		}
 
-	} // escapeResourceName
+		return rv;
+	}
 
 	/**
 	 * Return a string based on id that is fully escaped the question mark.
@@ -349,31 +593,24 @@ public class Validator
 	public static String escapeZipEntry(String id)
 	{
 		if (id == null) return "";
-		try
-		{
-			StringBuilder buf = new StringBuilder();
-			for (int i = 0; i < id.length(); i++)
-			{
-				char c = id.charAt(i);
-				if (INVALID_CHARS_IN_ZIP_ENTRY.indexOf(c) != -1)
-				{
-					buf.append('_');
-				}
-				else
-				{
-					buf.append(c);
-				}
-			}
 
-			String rv = buf.toString();
-			return rv;
+		// find the first character to change - if none, we are done
+		final int len = id.length();
+		int i = 0;
+		while ((i < len) && ((id.charAt(i) >= 256) || (ZIP_ENTRY_MAP[id.charAt(i)] == id.charAt(i))))
+		{
+			i++;
 		}
-		catch (Exception e)
+		if (i == len) return id;
+
+		char[] buf = id.toCharArray();
+		for (; i < len; i++)
 		{
-			M_log.warn("Validator.escapeZipEntry: ", e);
-			return id;
+			if (buf[i] < 256) buf[i] = ZIP_ENTRY_MAP[buf[i]];
 		}
 
+		return new String(buf);
+
 	} // escapeZipEntry
 
 	/**
@@ -523,7 +760,8 @@ public class Validator
 		// we must reject certain characters that we cannot even escape and get into Tomcat via a URL
 		for (int i = 0; i < id.length(); i++)
 		{
-			if (INVALID_CHARS_IN_USER_ID.indexOf(id.charAt(i)) != -1) return false;
+			char c = id.charAt(i);
+			if ((c < 256) && INVALID_USER_ID[c]) return false;
 		}
 
 		return true;
@@ -548,7 +786,8 @@ public class Validator
 		// we must reject certain characters that we cannot even escape and get into Tomcat via a URL
 		for (int i = 0; i < id.length(); i++)
 		{
-			if (INVALID_CHARS_IN_RESOURCE_ID.indexOf(id.charAt(i)) != -1) return false;
+			char c = id.charAt(i);
+			if ((c < 256) && INVALID_RESOURCE_ID[c]) return false;
 		}
 
 		return true;
@@ -564,7 +803,8 @@ public class Validator
 
 		for (int i = 0; i < id.length(); i++)
 		{
-			if (VALID_EMAIL.indexOf(id.charAt(i)) == -1) return false;
+			char c = id.charAt(i);
+			if ((c >= 256) || !VALID_EMAIL_LOCAL[c]) return false;
 		}
 
 		return true;
@@ -584,16 +824,15 @@ public class Validator
 		// unix: /usr/local/dev/test.txt
 		// mac:? one:two:three:four
 		// so... just take the last characters back till we see a \ or / or :
-		StringBuilder buf = new StringBuilder();
 		int index = fullName.length() - 1;
 		while (index >= 0)
 		{
-			char c = fullName.charAt(index--);
+			char c = fullName.charAt(index);
 			if ((c == '\\') || (c == '/') || (c == ':')) break;
-			buf.insert(0, c);
+			index--;
 		}
 
-		return buf.toString();
+		return fullName.substring(index + 1);
 
 	} // getFileName
 
@@ -663,6 +902,17 @@ public class Validator
 
 	} // getResourceTarget
 
+	/**
+	 * Access the policy letBrowserInline() and getResourceTarget() use, to add or remove inline types at runtime.
+	 * 
+	 * @return The inline mime type policy.
+	 */
+	public static MimeTypePolicy getInlineMimeTypes()
+	{
+		return INLINE_MIME_TYPES;
+
+	} // getInlineMimeTypes
+
 	/**
 	 * Is this a mime type that the browser can handle inline, in a browser window? If so, links to this type should be to a _blank, and content-disposition should be inline. If not, links to this type should be to _self, and content-disposition should be
 	 * attachment.
@@ -673,32 +923,7 @@ public class Validator
 	 */
 	public static boolean letBrowserInline(String type)
 	{
-		if (type == null) return false;
-
-		String lType = type.toLowerCase();
-
-		// text (plain/html) mime types
-		if (lType.startsWith("text/")) return true;
-		
-		// image mime types
-		if (lType.startsWith("image/")) return true;
-		
-		// PDF mime types
-		if (lType.equals("application/pdf")) return true;
-		if (lType.equals("application/x-pdf")) return true;
-		
-		// internal OSP/Forms
-		if (lType.equals("application/x-osp")) return true;
-		
-		// Shockwave Flash mime types
-		if (lType.equals("application/x-shockwave-flash")) return true;
-		if (lType.equals("application/futuresplash")) return true;
-		
-		// checks for VRML file MIME types:x-world/x-vrml, model/vrml, application/x-blaxxunCC3D, application/x-blaxxunCC3Dpro, application/x-CC3D
-		// need to check for any other MIME types which can be opened by browser plug-ins? %%%zqian
-		if (lType.indexOf("vrml") != -1 || lType.indexOf("CC3D") != -1) return true;
-
-		return false;
+		return INLINE_MIME_TYPES.isInline(type);
 
 	} // letBrowserInline
 
@@ -762,7 +987,7 @@ public class Validator
 	 * 
 	 * @param value
 	 *        The user input string.
-	 * @return value cleaned of string newlines, etc.
+	 * @return value cleaned of string newlines, etc. - value itself if it needed no cleaning.
 	 */
 	public static String cleanInput(String value)
 	{
@@ -770,46 +995,90 @@ public class Validator
 		if (value.length() == 0) return value;
 
 		final int len = value.length();
-		StringBuilder buf = new StringBuilder();
 
-		for (int i = 0; i < len; i++)
+		// a single trailing \n is dropped, and each CR LF becomes a \n
+		int end = (value.charAt(len - 1) == '\n') ? len - 1 : len;
+		int pos = value.indexOf("\r\n");
+		if ((pos == -1) || (pos >= end))
 		{
-			char c = value.charAt(i);
-			char next = 0;
-			if (i + 1 < len) next = value.charAt(i + 1);
+			return (end == len) ? value : value.substring(0, end);
+		}
+
+		StringBuilder buf = new StringBuilder(end);
+		int from = 0;
+		while ((pos != -1) && (pos < end))
+		{
+			// copy up to the CR, then skip it, leaving its LF to start the next run
+			buf.append(value, from, pos);
+			from = pos + 1;
+			pos = value.indexOf("\r\n", from);
+		}
+		buf.append(value, from, end);
+
+		return buf.toString();
+
+	} // cleanInput
+
+	/**
+	 * Clean the user input of strange newlines, etc., as cleanInput(String) does, streaming from the reader to the writer. Neither is closed.
+	 * 
+	 * @param in
+	 *        The user input.
+	 * @param out
+	 *        Where to write the cleaned input.
+	 * @throws IOException
+	 *         if reading or writing fails.
+	 */
+	public static void cleanInput(Reader in, Writer out) throws IOException
+	{
+		char[] chunk = new char[STREAM_CHUNK_SIZE];
+		char[] cleaned = new char[STREAM_CHUNK_SIZE + 2];
+
+		// a CR we have not yet matched with a LF, and a LF we hold back in case it is the last character
+		boolean pendingCr = false;
+		boolean pendingLf = false;
 
-			switch (c)
+		int count;
+		while ((count = in.read(chunk)) != -1)
+		{
+			int size = 0;
+			for (int i = 0; i < count; i++)
 			{
-				case '\r':
+				char c = chunk[i];
+				if (pendingCr)
 				{
-					// detect CR LF, make it a \n
-					if (next == '\n')
-					{
-						buf.append('\n');
-						// eat the next character
-						i++;
-					}
-					else
+					pendingCr = false;
+					if (c == '\n')
 					{
-						buf.append(c);
+						pendingLf = true;
+						continue;
 					}
-
+					cleaned[size++] = '\r';
+				}
+				if (pendingLf)
+				{
+					pendingLf = false;
+					cleaned[size++] = '\n';
 				}
-					break;
 
-				default:
+				if (c == '\r')
 				{
-					buf.append(c);
+					pendingCr = true;
+				}
+				else if (c == '\n')
+				{
+					pendingLf = true;
+				}
+				else
+				{
+					cleaned[size++] = c;
 				}
 			}
+			out.write(cleaned, 0, size);
 		}
 
-		if (buf.charAt(buf.length() - 1) == '\n')
-		{
-			buf.setLength(buf.length() - 1);
-		}
-
-		return buf.toString();
+		// a final LF is dropped; a final CR is kept
+		if (pendingCr) out.write('\r');
 
 	} // cleanInput
 
@@ -818,7 +1087,7 @@ public class Validator
 	 * 
 	 * @param value
 	 *        The user input string.
-	 * @return value cleaned of newlines, etc.
+	 * @return value cleaned of newlines, etc. - value itself if it needed no cleaning.
 	 */
 	public static String stripAllNewlines(String value)
 	{
@@ -826,102 +1095,86 @@ public class Validator
 		value = value.trim();
 		if (value.length() == 0) return value;
 
-		final int len = value.length();
-		StringBuilder buf = new StringBuilder();
+		int pos = firstNewline(value);
+		if (pos == -1) return value;
 
-		for (int i = 0; i < len; i++)
+		char[] chars = value.toCharArray();
+		for (int i = pos; i < chars.length; i++)
 		{
-			char c = value.charAt(i);
-			char next = 0;
-			if (i + 1 < len) next = value.charAt(i + 1);
-
-			switch (c)
-			{
-				case '\n':
-				case '\r':
-				{
-					buf.append(' ');
-				}
-					break;
-
-				default:
-				{
-					buf.append(c);
-				}
-			}
+			if ((chars[i] == '\n') || (chars[i] == '\r')) chars[i] = ' ';
 		}
 
-		return buf.toString();
+		return new String(chars);
 
 	} // stripAllNewlines
 
 	/**
-	 * Returns a hex representation of a byte.
+	 * Clean the user input of all newlines and trim it, as stripAllNewlines(String) does, streaming from the reader to the writer. Neither is
+	 * closed.
 	 * 
-	 * @param b
-	 *        The byte to convert to hex.
-	 * @return The 2-digit hex value of the supplied byte.
+	 * @param in
+	 *        The user input.
+	 * @param out
+	 *        Where to write the cleaned input.
+	 * @throws IOException
+	 *         if reading or writing fails.
 	 */
-	private static final String toHex(byte b)
+	public static void stripAllNewlines(Reader in, Writer out) throws IOException
 	{
+		char[] chunk = new char[STREAM_CHUNK_SIZE];
 
-		char ret[] = new char[2];
+		// true until the first character that trim() would keep
+		boolean leading = true;
 
-		ret[0] = hexDigit((b >>> 4) & (byte) 0x0F);
-		ret[1] = hexDigit((b >>> 0) & (byte) 0x0F);
+		// white space (as trim() sees it) that we hold back until we know it is not trailing
+		StringBuilder pending = new StringBuilder();
 
-		return new String(ret);
-	}
+		int count;
+		while ((count = in.read(chunk)) != -1)
+		{
+			int from = 0;
+			for (int i = 0; i < count; i++)
+			{
+				char c = chunk[i];
+				if ((c == '\n') || (c == '\r')) chunk[i] = c = ' ';
+
+				if (c <= ' ')
+				{
+					// drop leading white space, hold back the rest (writing what comes before it)
+					if (!leading)
+					{
+						if (from < i) out.write(chunk, from, i - from);
+						pending.append(c);
+					}
+					from = i + 1;
+				}
+				else
+				{
+					leading = false;
+					if (pending.length() > 0)
+					{
+						out.write(pending.toString());
+						pending.setLength(0);
+					}
+				}
+			}
+			if (from < count) out.write(chunk, from, count - from);
+		}
+
+	} // stripAllNewlines
 
 	/**
-	 * Returns the hex digit cooresponding to a number between 0 and 15.
-	 * 
-	 * @param i
-	 *        The number to get the hex digit for.
-	 * @return The hex digit cooresponding to that number.
-	 * @exception java.lang.IllegalArgumentException
-	 *            If supplied digit is not between 0 and 15 inclusive.
-	 */
-	private static final char hexDigit(int i)
-	{
-
-		switch (i)
-		{
-			case 0:
-				return '0';
-			case 1:
-				return '1';
-			case 2:
-				return '2';
-			case 3:
-				return '3';
-			case 4:
-				return '4';
-			case 5:
-				return '5';
-			case 6:
-				return '6';
-			case 7:
-				return '7';
-			case 8:
-				return '8';
-			case 9:
-				return '9';
-			case 10:
-				return 'A';
-			case 11:
-				return 'B';
-			case 12:
-				return 'C';
-			case 13:
-				return 'D';
-			case 14:
-				return 'E';
-			case 15:
-				return 'F';
-		}
-
-		throw new IllegalArgumentException("Invalid digit:" + i);
+	 * @return The position of the first \n or \r in the value, or -1 if there are none.
+	 */
+	private static int firstNewline(String value)
+	{
+		final int len = value.length();
+		for (int i = 0; i < len; i++)
+		{
+			char c = value.charAt(i);
+			if ((c == '\n') || (c == '\r')) return i;
+		}
+		return -1;
 	}
 
 	/**
@@ -30,7 +30,9 @@ import java.io.OutputStream;
 import java.io.Reader;
 import java.io.StringReader;
 import java.io.StringWriter;
+import java.util.ArrayList;
 import java.util.Enumeration;
+import java.util.List;
 import java.util.Properties;
 import java.util.Stack;
 
@@ -67,6 +69,9 @@ public class Xml
 	private static Log M_log = LogFactory.getLog(Xml.class);
 	private static SAXParserFactory parserFactory;
 
+	/** Batches with fewer values than this are encoded / decoded on the calling thread. */
+	protected static final int PARALLEL_THRESHOLD = 512;
+
 	/**
 	 * Create a new DOM Document.
 	 * 
@@ -331,14 +336,30 @@ public class Xml
 	public static void encodeAttribute(Element el, String tag, String value)
 	{
 		// encode the message body base64, and make it an attribute
-		try
+		String encoded = encode(value);
+		if (encoded != null)
 		{
-			String encoded = new String(CommonsCodecBase64.encodeBase64(value.getBytes("UTF-8")),"UTF-8");
 			el.setAttribute(tag, encoded);
 		}
+	}
+
+	/**
+	 * Encode a value as base64 of its UTF-8 bytes, as used by encodeAttribute().
+	 * 
+	 * @param value
+	 *        The string.
+	 * @return The encoded string, or null if it could not be encoded.
+	 */
+	protected static String encode(String value)
+	{
+		try
+		{
+			return new String(CommonsCodecBase64.encodeBase64(value.getBytes("UTF-8")), "UTF-8");
+		}
 		catch (Exception e)
 		{
 			M_log.warn("encodeAttribute: " + e);
+			return null;
 		}
 	}
 
@@ -443,6 +464,69 @@ public class Xml
 		return properties;
 	}
 
+	/**
+	 * Serialize many properties into XML at once, adding a "properties" element under each of the containing elements. The values are base64
+	 * encoded in parallel for large batches, but the document is built on the calling thread in order, and ends up exactly as if
+	 * propertiesToXml() had been called for each properties in turn.
+	 * 
+	 * @param propsToSerialize
+	 *        The properties to serialize.
+	 * @param doc
+	 *        The DOM doc to contain the XML.
+	 * @param containers
+	 *        The DOM elements to contain each of the new "properties" elements, matched to propsToSerialize by position.
+	 * @return The newly added elements, matched to propsToSerialize by position.
+	 */
+	public static Element[] propertiesToXml(Properties[] propsToSerialize, Document doc, Element[] containers)
+	{
+		if (propsToSerialize.length != containers.length)
+		{
+			throw new IllegalArgumentException("propertiesToXml: " + propsToSerialize.length + " properties for " + containers.length + " containers");
+		}
+
+		// collect the names and values, in the order propertiesToXml() would see them
+		String[][] names = new String[propsToSerialize.length][];
+		List values = new ArrayList();
+		for (int i = 0; i < propsToSerialize.length; i++)
+		{
+			List propNames = new ArrayList();
+			Enumeration props = propsToSerialize[i].propertyNames();
+			while (props.hasMoreElements())
+			{
+				String name = (String) props.nextElement();
+				propNames.add(name);
+				values.add(propsToSerialize[i].getProperty(name));
+			}
+			names[i] = (String[]) propNames.toArray(new String[propNames.size()]);
+		}
+
+		String[] encoded = transformAll((String[]) values.toArray(new String[values.size()]), null);
+
+		// build the elements
+		Element[] rv = new Element[propsToSerialize.length];
+		int next = 0;
+		for (int i = 0; i < propsToSerialize.length; i++)
+		{
+			Element properties = doc.createElement("properties");
+			containers[i].appendChild(properties);
+			for (int n = 0; n < names[i].length; n++)
+			{
+				Element propElement = doc.createElement("property");
+				properties.appendChild(propElement);
+				propElement.setAttribute("name", names[i][n]);
+				if (encoded[next] != null)
+				{
+					propElement.setAttribute("value", encoded[next]);
+				}
+				next++;
+				propElement.setAttribute("enc", "BASE64");
+			}
+			rv[i] = properties;
+		}
+
+		return rv;
+	}
+
 	/**
 	 * Fill in a properties from XML.
 	 * 
@@ -481,4 +565,101 @@ public class Xml
 			}
 		}
 	}
+
+	/**
+	 * Fill in many properties from XML at once. The DOM is read on the calling thread, but the base64 values are decoded in parallel for
+	 * large batches. The properties end up exactly as if xmlToProperties() had been called for each in turn.
+	 * 
+	 * @param properties
+	 *        The properties to fill in.
+	 * @param els
+	 *        The XML DOM elements, matched to properties by position.
+	 */
+	public static void xmlToProperties(Properties[] properties, Element[] els)
+	{
+		if (properties.length != els.length)
+		{
+			throw new IllegalArgumentException("xmlToProperties: " + properties.length + " properties for " + els.length + " elements");
+		}
+
+		// collect the names and raw values; a null charset marks a value that needs no decoding
+		List owners = new ArrayList();
+		List names = new ArrayList();
+		List values = new ArrayList();
+		List charsets = new ArrayList();
+		for (int p = 0; p < els.length; p++)
+		{
+			NodeList children = els[p].getChildNodes();
+			final int length = children.getLength();
+			for (int i = 0; i < length; i++)
+			{
+				Node child = children.item(i);
+				if (child.getNodeType() != Node.ELEMENT_NODE) continue;
+				Element element = (Element) child;
+
+				// look for property
+				if (element.getTagName().equals("property"))
+				{
+					owners.add(properties[p]);
+					names.add(element.getAttribute("name"));
+					String enc = StringUtil.trimToNull(element.getAttribute("enc"));
+					if ("BASE64".equalsIgnoreCase(enc))
+					{
+						String charset = StringUtil.trimToNull(element.getAttribute("charset"));
+						charsets.add((charset == null) ? "UTF-8" : charset);
+					}
+					else
+					{
+						charsets.add(null);
+					}
+					values.add(element.getAttribute("value"));
+				}
+			}
+		}
+
+		String[] decoded = transformAll((String[]) values.toArray(new String[values.size()]), (String[]) charsets
+				.toArray(new String[charsets.size()]));
+
+		for (int i = 0; i < decoded.length; i++)
+		{
+			((Properties) owners.get(i)).put(names.get(i), decoded[i]);
+		}
+	}
+
+	/**
+	 * Encode or decode a batch of values, in parallel if there are enough of them.
+	 * 
+	 * @param values
+	 *        The values.
+	 * @param charsets
+	 *        null to encode all the values, otherwise the charset to decode each value with (a null entry leaves that value as is).
+	 * @return The transformed values, in the same order.
+	 */
+	protected static String[] transformAll(final String[] values, final String[] charsets)
+	{
+		final String[] rv = new String[values.length];
+		ParallelSlices.run(values.length, PARALLEL_THRESHOLD, new ParallelSlices.Slice()
+		{
+			public void run(int from, int to)
+			{
+				for (int i = from; i < to; i++)
+				{
+					if (charsets == null)
+					{
+						rv[i] = encode(values[i]);
+					}
+					else if (charsets[i] == null)
+					{
+						rv[i] = values[i];
+					}
+					else
+					{
+						rv[i] = decode(charsets[i], values[i]);
+					}
+				}
+			}
+		});
+
+		return rv;
+	}
 }
@@ -16,6 +16,7 @@
 
 package org.sakaiproject.util.commonscodec;
 
+import java.nio.ByteBuffer;
 
 
 /**
@@ -89,15 +90,26 @@ public class CommonsCodecBase64  {
      */
     static final byte PAD = (byte) '=';
 
+    /**
+     * Value in the decode table for a byte outside the base64 alphabet.
+     */
+    static final byte INVALID = -1;
+
+    /**
+     * Value returned by {@link #decodeValue(byte)} for the pad character.
+     */
+    static final byte PADDING = -2;
+
     // Create arrays to hold the base64 characters and a 
-    // lookup for base64 chars
-    private static byte[] base64Alphabet = new byte[BASELENGTH];
+    // lookup for base64 chars.  The lookup covers every byte value,
+    // indexed with (b & 0xff), so no range check is needed.
+    private static byte[] base64Alphabet = new byte[BASELENGTH + 1];
     private static byte[] lookUpBase64Alphabet = new byte[LOOKUPLENGTH];
 
     // Populating the lookup and character arrays
     static {
-        for (int i = 0; i < BASELENGTH; i++) {
-            base64Alphabet[i] = (byte) -1;
+        for (int i = 0; i <= BASELENGTH; i++) {
+            base64Alphabet[i] = INVALID;
         }
         for (int i = 'Z'; i >= 'A'; i--) {
             base64Alphabet[i] = (byte) (i - 'A');
@@ -128,14 +140,19 @@ public class CommonsCodecBase64  {
         lookUpBase64Alphabet[63] = (byte) '/';
     }
 
+    /**
+     * Looks up the 6-bit value of a base64 character.
+     *
+     * @param octect the encoded byte
+     * @return 0..63 for alphabet characters, {@link #PADDING} for the pad
+     *         character, {@link #INVALID} for anything else
+     */
+    static int decodeValue(byte octect) {
+        return (octect == PAD) ? PADDING : base64Alphabet[octect & 0xff];
+    }
+
     private static boolean isBase64(byte octect) {
-        if (octect == PAD) {
-            return true;
-        } else if (base64Alphabet[octect] == -1) {
-            return false;
-        } else {
-            return true;
-        }
+        return (octect == PAD) || (base64Alphabet[octect & 0xff] != INVALID);
     }
 
     /**
@@ -227,137 +244,175 @@ public class CommonsCodecBase64  {
      * @return Base64-encoded data.
      */
     public static byte[] encodeBase64(byte[] binaryData, boolean isChunked) {
-        int lengthDataBits = binaryData.length * EIGHTBIT;
-        int fewerThan24bits = lengthDataBits % TWENTYFOURBITGROUP;
-        int numberTriplets = lengthDataBits / TWENTYFOURBITGROUP;
-        byte encodedData[] = null;
-        int encodedDataLength = 0;
+        int numberTriplets = binaryData.length / 3;
+        int fewerThan24bits = (binaryData.length % 3) * EIGHTBIT;
+        int encodedDataLength = (fewerThan24bits != 0) ? (numberTriplets + 1) * 4 : numberTriplets * 4;
         int nbrChunks = 0;
 
-        if (fewerThan24bits != 0) {
-            //data not divisible by 24 bit
-            encodedDataLength = (numberTriplets + 1) * 4;
-        } else {
-            // 16 or 8 bit
-            encodedDataLength = numberTriplets * 4;
-        }
-
         // If the output is to be "chunked" into 76 character sections, 
         // for compliance with RFC 2045 MIME, then it is important to 
         // allow for extra length to account for the separator(s)
         if (isChunked) {
-
-            nbrChunks =
-                (CHUNK_SEPARATOR.length == 0 ? 0 : (int) Math.ceil((float) encodedDataLength / CHUNK_SIZE));
+            nbrChunks = (encodedDataLength + CHUNK_SIZE - 1) / CHUNK_SIZE;
             encodedDataLength += nbrChunks * CHUNK_SEPARATOR.length;
         }
 
-        encodedData = new byte[encodedDataLength];
+        byte encodedData[] = new byte[encodedDataLength];
 
-        byte k = 0, l = 0, b1 = 0, b2 = 0, b3 = 0;
+        if (!isChunked) {
+            int encodedIndex = encodeTriplets(binaryData, 0, numberTriplets, encodedData, 0);
+            encodeFinal(binaryData, numberTriplets * 3, binaryData.length % 3, encodedData, encodedIndex);
+            return encodedData;
+        }
 
-        int encodedIndex = 0;
+        // encode a line at a time, putting a chunk separator down after each
+        // this assumes that CHUNK_SIZE % 4 == 0
+        int tripletsPerChunk = CHUNK_SIZE / 4;
         int dataIndex = 0;
-        int i = 0;
-        int nextSeparatorIndex = CHUNK_SIZE;
-        int chunksSoFar = 0;
-
-        //log.debug("number of triplets = " + numberTriplets);
-        for (i = 0; i < numberTriplets; i++) {
-            dataIndex = i * 3;
-            b1 = binaryData[dataIndex];
-            b2 = binaryData[dataIndex + 1];
-            b3 = binaryData[dataIndex + 2];
-
-            //log.debug("b1= " + b1 +", b2= " + b2 + ", b3= " + b3);
-
-            l = (byte) (b2 & 0x0f);
-            k = (byte) (b1 & 0x03);
-
-            byte val1 =
-                ((b1 & SIGN) == 0) ? (byte) (b1 >> 2) : (byte) ((b1) >> 2 ^ 0xc0);
-            byte val2 =
-                ((b2 & SIGN) == 0) ? (byte) (b2 >> 4) : (byte) ((b2) >> 4 ^ 0xf0);
-            byte val3 =
-                ((b3 & SIGN) == 0) ? (byte) (b3 >> 6) : (byte) ((b3) >> 6 ^ 0xfc);
-
-            encodedData[encodedIndex] = lookUpBase64Alphabet[val1];
-            //log.debug( "val2 = " + val2 );
-            //log.debug( "k4   = " + (k<<4) );
-            //log.debug(  "vak  = " + (val2 | (k<<4)) );
-            encodedData[encodedIndex + 1] =
-                lookUpBase64Alphabet[val2 | (k << 4)];
-            encodedData[encodedIndex + 2] =
-                lookUpBase64Alphabet[(l << 2) | val3];
-            encodedData[encodedIndex + 3] = lookUpBase64Alphabet[b3 & 0x3f];
-
-            encodedIndex += 4;
-
-            // If we are chunking, let's put a chunk separator down.
-            if (isChunked) {
-                // this assumes that CHUNK_SIZE % 4 == 0
-                if (encodedIndex == nextSeparatorIndex) {
-                    System.arraycopy(
-                        CHUNK_SEPARATOR,
-                        0,
-                        encodedData,
-                        encodedIndex,
-                        CHUNK_SEPARATOR.length);
-                    chunksSoFar++;
-                    nextSeparatorIndex =
-                        (CHUNK_SIZE * (chunksSoFar + 1)) + 
-                        (chunksSoFar * CHUNK_SEPARATOR.length);
-                    encodedIndex += CHUNK_SEPARATOR.length;
-                }
+        int encodedIndex = 0;
+        int remaining = numberTriplets;
+        while (remaining > 0) {
+            int count = Math.min(remaining, tripletsPerChunk);
+            encodedIndex = encodeTriplets(binaryData, dataIndex, count, encodedData, encodedIndex);
+            dataIndex += count * 3;
+            remaining -= count;
+            if (count == tripletsPerChunk) {
+                System.arraycopy(CHUNK_SEPARATOR, 0, encodedData, encodedIndex, CHUNK_SEPARATOR.length);
+                encodedIndex += CHUNK_SEPARATOR.length;
             }
         }
+        encodedIndex = encodeFinal(binaryData, dataIndex, binaryData.length % 3, encodedData, encodedIndex);
 
-        // form integral number of 6-bit groups
-        dataIndex = i * 3;
-
-        if (fewerThan24bits == EIGHTBIT) {
-            b1 = binaryData[dataIndex];
-            k = (byte) (b1 & 0x03);
-            //log.debug("b1=" + b1);
-            //log.debug("b1<<2 = " + (b1>>2) );
-            byte val1 =
-                ((b1 & SIGN) == 0) ? (byte) (b1 >> 2) : (byte) ((b1) >> 2 ^ 0xc0);
-            encodedData[encodedIndex] = lookUpBase64Alphabet[val1];
-            encodedData[encodedIndex + 1] = lookUpBase64Alphabet[k << 4];
-            encodedData[encodedIndex + 2] = PAD;
-            encodedData[encodedIndex + 3] = PAD;
-        } else if (fewerThan24bits == SIXTEENBIT) {
+        // we also add a separator to the end of the final chunk.
+        if (encodedIndex < encodedDataLength) {
+            System.arraycopy(CHUNK_SEPARATOR, 0, encodedData, encodedIndex, CHUNK_SEPARATOR.length);
+        }
 
-            b1 = binaryData[dataIndex];
-            b2 = binaryData[dataIndex + 1];
-            l = (byte) (b2 & 0x0f);
-            k = (byte) (b1 & 0x03);
+        return encodedData;
+    }
 
-            byte val1 =
-                ((b1 & SIGN) == 0) ? (byte) (b1 >> 2) : (byte) ((b1) >> 2 ^ 0xc0);
-            byte val2 =
-                ((b2 & SIGN) == 0) ? (byte) (b2 >> 4) : (byte) ((b2) >> 4 ^ 0xf0);
+    /**
+     * Encodes as much of the remaining content of src into dst as fits,
+     * without chunking, treating src as the end of the input: a final
+     * group of one or two bytes is written out with padding.
+     *
+     * <p>Nothing is allocated, so a single dst buffer may be reused for
+     * any number of calls.  The positions of both buffers are advanced
+     * past the bytes consumed and produced.</p>
+     *
+     * @param src binary data to encode
+     * @param dst buffer to receive the Base64 characters
+     * @return the number of bytes written to dst
+     */
+    public static int encode(ByteBuffer src, ByteBuffer dst) {
+        return encode(src, dst, true);
+    }
 
-            encodedData[encodedIndex] = lookUpBase64Alphabet[val1];
-            encodedData[encodedIndex + 1] =
-                lookUpBase64Alphabet[val2 | (k << 4)];
-            encodedData[encodedIndex + 2] = lookUpBase64Alphabet[l << 2];
-            encodedData[encodedIndex + 3] = PAD;
+    /**
+     * Encodes as much of the remaining content of src into dst as fits,
+     * without chunking.
+     *
+     * <p>Only complete 3 byte groups are consumed unless endOfInput is
+     * set, in which case a final group of one or two bytes is written out
+     * with padding once there is room for it.  Bytes left in src should be
+     * carried over to the next call.</p>
+     *
+     * @param src binary data to encode
+     * @param dst buffer to receive the Base64 characters
+     * @param endOfInput true if no more data follows the content of src
+     * @return the number of bytes written to dst
+     */
+    public static int encode(ByteBuffer src, ByteBuffer dst, boolean endOfInput) {
+        int numberTriplets = Math.min(src.remaining() / 3, dst.remaining() / 4);
+        int written = 0;
+
+        if (src.hasArray() && dst.hasArray()) {
+            int srcIndex = src.arrayOffset() + src.position();
+            int dstIndex = dst.arrayOffset() + dst.position();
+            encodeTriplets(src.array(), srcIndex, numberTriplets, dst.array(), dstIndex);
+            src.position(src.position() + numberTriplets * 3);
+            dst.position(dst.position() + numberTriplets * 4);
+            written = numberTriplets * 4;
+        } else {
+            for (int i = 0; i < numberTriplets; i++) {
+                int bits = ((src.get() & 0xff) << 16) | ((src.get() & 0xff) << 8) | (src.get() & 0xff);
+                dst.put(lookUpBase64Alphabet[bits >>> 18]);
+                dst.put(lookUpBase64Alphabet[(bits >>> 12) & 0x3f]);
+                dst.put(lookUpBase64Alphabet[(bits >>> 6) & 0x3f]);
+                dst.put(lookUpBase64Alphabet[bits & 0x3f]);
+            }
+            written = numberTriplets * 4;
         }
 
-        if (isChunked) {
-            // we also add a separator to the end of the final chunk.
-            if (chunksSoFar < nbrChunks) {
-                System.arraycopy(
-                    CHUNK_SEPARATOR,
-                    0,
-                    encodedData,
-                    encodedDataLength - CHUNK_SEPARATOR.length,
-                    CHUNK_SEPARATOR.length);
+        // the final, padded group
+        if (endOfInput && src.remaining() > 0 && src.remaining() < 3 && dst.remaining() >= 4) {
+            int count = src.remaining();
+            int bits = (src.get() & 0xff) << 16;
+            if (count == 2) {
+                bits |= (src.get() & 0xff) << 8;
             }
+            dst.put(lookUpBase64Alphabet[bits >>> 18]);
+            dst.put(lookUpBase64Alphabet[(bits >>> 12) & 0x3f]);
+            dst.put((count == 2) ? lookUpBase64Alphabet[(bits >>> 6) & 0x3f] : PAD);
+            dst.put(PAD);
+            written += 4;
         }
 
-        return encodedData;
+        return written;
+    }
+
+    /**
+     * Encodes complete 3 byte groups, with no padding or chunking.
+     *
+     * @param src the binary data
+     * @param srcIndex index of the first byte to encode
+     * @param numberTriplets the number of 3 byte groups to encode
+     * @param dst array to receive the Base64 characters
+     * @param dstIndex index in dst of the first character
+     * @return the index in dst following the last character written
+     */
+    static int encodeTriplets(byte[] src, int srcIndex, int numberTriplets, byte[] dst, int dstIndex) {
+        byte[] lookup = lookUpBase64Alphabet;
+        int end = srcIndex + numberTriplets * 3;
+        while (srcIndex < end) {
+            int bits = ((src[srcIndex] & 0xff) << 16) | ((src[srcIndex + 1] & 0xff) << 8) | (src[srcIndex + 2] & 0xff);
+            dst[dstIndex] = lookup[bits >>> 18];
+            dst[dstIndex + 1] = lookup[(bits >>> 12) & 0x3f];
+            dst[dstIndex + 2] = lookup[(bits >>> 6) & 0x3f];
+            dst[dstIndex + 3] = lookup[bits & 0x3f];
+            srcIndex += 3;
+            dstIndex += 4;
+        }
+        return dstIndex;
+    }
+
+    /**
+     * Encodes the last one or two bytes of the input, with padding.
+     *
+     * @param src the binary data
+     * @param srcIndex index of the first byte to encode
+     * @param count the number of bytes left, 0, 1 or 2
+     * @param dst array to receive the Base64 characters
+     * @param dstIndex index in dst of the first character
+     * @return the index in dst following the last character written
+     */
+    static int encodeFinal(byte[] src, int srcIndex, int count, byte[] dst, int dstIndex) {
+        if (count == 1) {
+            int bits = (src[srcIndex] & 0xff) << 16;
+            dst[dstIndex] = lookUpBase64Alphabet[bits >>> 18];
+            dst[dstIndex + 1] = lookUpBase64Alphabet[(bits >>> 12) & 0x3f];
+            dst[dstIndex + 2] = PAD;
+            dst[dstIndex + 3] = PAD;
+            return dstIndex + 4;
+        } else if (count == 2) {
+            int bits = ((src[srcIndex] & 0xff) << 16) | ((src[srcIndex + 1] & 0xff) << 8);
+            dst[dstIndex] = lookUpBase64Alphabet[bits >>> 18];
+            dst[dstIndex + 1] = lookUpBase64Alphabet[(bits >>> 12) & 0x3f];
+            dst[dstIndex + 2] = lookUpBase64Alphabet[(bits >>> 6) & 0x3f];
+            dst[dstIndex + 3] = PAD;
+            return dstIndex + 4;
+        }
+        return dstIndex;
     }
 
     /**
@@ -367,66 +422,181 @@ public class CommonsCodecBase64  {
      * @return Array containing decoded data.
      */
     public static byte[] decodeBase64(byte[] base64Data) {
-        // RFC 2045 requires that we discard ALL non-Base64 characters
-        base64Data = discardNonBase64(base64Data);
+        // most data holds nothing but whole groups from the alphabet,
+        // which can be sized up front and decoded in a single pass
+        byte[] decoded = decodeUnbroken(base64Data);
+        if (decoded != null) {
+            return decoded;
+        }
+
+        // RFC 2045 requires that we discard ALL non-Base64 characters.
+        // Rather than copying the groomed data, count what would be left
+        // so the output array can be sized properly - rlw
+        int length = 0;
+        int trailingPads = 0;
+        for (int i = 0; i < base64Data.length; i++) {
+            byte octect = base64Data[i];
+            if (base64Alphabet[octect & 0xff] >= 0) {
+                length++;
+                trailingPads = 0;
+            } else if (octect == PAD) {
+                length++;
+                trailingPads++;
+            }
+        }
 
         // handle the edge case, so we don't have to worry about it later
-        if (base64Data.length == 0) {
+        // (ignoring the '=' padding)
+        int lastData = length - trailingPads;
+        if (lastData == 0) {
             return new byte[0];
         }
 
-        int numberQuadruple = base64Data.length / FOURBYTE;
-        byte decodedData[] = null;
-        byte b1 = 0, b2 = 0, b3 = 0, b4 = 0, marker0 = 0, marker1 = 0;
-
-        // Throw away anything not in base64Data
+        int numberQuadruple = length / FOURBYTE;
+        byte decodedData[] = new byte[lastData - numberQuadruple];
+        byte[] table = base64Alphabet;
 
         int encodedIndex = 0;
         int dataIndex = 0;
-        {
-            // this sizes the output array properly - rlw
-            int lastData = base64Data.length;
-            // ignore the '=' padding
-            while (base64Data[lastData - 1] == PAD) {
-                if (--lastData == 0) {
-                    return new byte[0];
+        int end = base64Data.length;
+        byte[] quad = new byte[FOURBYTE];
+        for (int q = 0; q < numberQuadruple; q++) {
+            // fast path: four alphabet characters in a row
+            if (dataIndex + 3 < end) {
+                int b1 = table[base64Data[dataIndex] & 0xff];
+                int b2 = table[base64Data[dataIndex + 1] & 0xff];
+                int b3 = table[base64Data[dataIndex + 2] & 0xff];
+                int b4 = table[base64Data[dataIndex + 3] & 0xff];
+                if ((b1 | b2 | b3 | b4) >= 0) {
+                    int bits = (b1 << 18) | (b2 << 12) | (b3 << 6) | b4;
+                    decodedData[encodedIndex] = (byte) (bits >> 16);
+                    decodedData[encodedIndex + 1] = (byte) (bits >> 8);
+                    decodedData[encodedIndex + 2] = (byte) bits;
+                    encodedIndex += 3;
+                    dataIndex += 4;
+                    continue;
+                }
+            }
+
+            // slow path: gather the next four characters, skipping
+            // anything outside the alphabet, then handle any padding
+            int n = 0;
+            while (n < FOURBYTE) {
+                byte octect = base64Data[dataIndex++];
+                if (isBase64(octect)) {
+                    quad[n++] = octect;
                 }
             }
-            decodedData = new byte[lastData - numberQuadruple];
+            decodeQuadruple(quad, decodedData, encodedIndex);
+            encodedIndex += 3;
         }
-        
-        for (int i = 0; i < numberQuadruple; i++) {
-            dataIndex = i * 4;
-            marker0 = base64Data[dataIndex + 2];
-            marker1 = base64Data[dataIndex + 3];
-            
-            b1 = base64Alphabet[base64Data[dataIndex]];
-            b2 = base64Alphabet[base64Data[dataIndex + 1]];
-            
-            if (marker0 != PAD && marker1 != PAD) {
-                //No PAD e.g 3cQl
-                b3 = base64Alphabet[marker0];
-                b4 = base64Alphabet[marker1];
-                
-                decodedData[encodedIndex] = (byte) (b1 << 2 | b2 >> 4);
-                decodedData[encodedIndex + 1] =
-                    (byte) (((b2 & 0xf) << 4) | ((b3 >> 2) & 0xf));
-                decodedData[encodedIndex + 2] = (byte) (b3 << 6 | b4);
-            } else if (marker0 == PAD) {
-                //Two PAD e.g. 3c[Pad][Pad]
-                decodedData[encodedIndex] = (byte) (b1 << 2 | b2 >> 4);
-            } else if (marker1 == PAD) {
-                //One PAD e.g. 3cQ[Pad]
-                b3 = base64Alphabet[marker0];
-                
-                decodedData[encodedIndex] = (byte) (b1 << 2 | b2 >> 4);
-                decodedData[encodedIndex + 1] =
-                    (byte) (((b2 & 0xf) << 4) | ((b3 >> 2) & 0xf));
+        return decodedData;
+    }
+
+    /**
+     * Decodes Base64 data made up only of complete groups of alphabet
+     * characters, with padding (if any) only at the very end.
+     *
+     * @param base64Data Byte array containing Base64 data
+     * @return Array containing decoded data, or null if the data contains
+     *         anything else and must be groomed while decoding.
+     */
+    private static byte[] decodeUnbroken(byte[] base64Data) {
+        int length = base64Data.length;
+        if ((length == 0) || (length % FOURBYTE != 0)) {
+            return null;
+        }
+
+        // chunked data ends with a separator: groom it without a false start
+        byte last = base64Data[length - 1];
+        if ((last != PAD) && (base64Alphabet[last & 0xff] < 0)) {
+            return null;
+        }
+
+        int pads = 0;
+        if (base64Data[length - 1] == PAD) {
+            pads = (base64Data[length - 2] == PAD) ? 2 : 1;
+        }
+        int numberQuadruple = length / FOURBYTE;
+        byte decodedData[] = new byte[numberQuadruple * 3 - pads];
+        byte[] table = base64Alphabet;
+
+        int encodedIndex = 0;
+        int dataIndex = 0;
+        int lastIndex = length - FOURBYTE;
+        while (dataIndex < lastIndex) {
+            int b1 = table[base64Data[dataIndex] & 0xff];
+            int b2 = table[base64Data[dataIndex + 1] & 0xff];
+            int b3 = table[base64Data[dataIndex + 2] & 0xff];
+            int b4 = table[base64Data[dataIndex + 3] & 0xff];
+            if ((b1 | b2 | b3 | b4) < 0) {
+                return null;
             }
+            int bits = (b1 << 18) | (b2 << 12) | (b3 << 6) | b4;
+            decodedData[encodedIndex] = (byte) (bits >> 16);
+            decodedData[encodedIndex + 1] = (byte) (bits >> 8);
+            decodedData[encodedIndex + 2] = (byte) bits;
             encodedIndex += 3;
+            dataIndex += 4;
+        }
+
+        // the last group carries the padding
+        int b1 = table[base64Data[lastIndex] & 0xff];
+        int b2 = table[base64Data[lastIndex + 1] & 0xff];
+        int b3 = (pads == 2) ? 0 : table[base64Data[lastIndex + 2] & 0xff];
+        int b4 = (pads > 0) ? 0 : table[base64Data[lastIndex + 3] & 0xff];
+        if ((b1 | b2 | b3 | b4) < 0) {
+            return null;
+        }
+        int bits = (b1 << 18) | (b2 << 12) | (b3 << 6) | b4;
+        decodedData[encodedIndex] = (byte) (bits >> 16);
+        if (pads < 2) {
+            decodedData[encodedIndex + 1] = (byte) (bits >> 8);
+        }
+        if (pads < 1) {
+            decodedData[encodedIndex + 2] = (byte) bits;
         }
         return decodedData;
     }
+
+    /**
+     * Decodes a group of four characters from the Base64 alphabet (or the
+     * pad character) into up to three bytes.
+     *
+     * @param quad the four characters
+     * @param dst array to receive the decoded data
+     * @param dstIndex index in dst of the first decoded byte
+     * @return the number of bytes decoded
+     */
+    static int decodeQuadruple(byte[] quad, byte[] dst, int dstIndex) {
+        byte marker0 = quad[2];
+        byte marker1 = quad[3];
+
+        int b1 = base64Alphabet[quad[0] & 0xff];
+        int b2 = base64Alphabet[quad[1] & 0xff];
+
+        if (marker0 != PAD && marker1 != PAD) {
+            //No PAD e.g 3cQl
+            int b3 = base64Alphabet[marker0 & 0xff];
+            int b4 = base64Alphabet[marker1 & 0xff];
+
+            dst[dstIndex] = (byte) (b1 << 2 | b2 >> 4);
+            dst[dstIndex + 1] = (byte) (((b2 & 0xf) << 4) | ((b3 >> 2) & 0xf));
+            dst[dstIndex + 2] = (byte) (b3 << 6 | b4);
+            return 3;
+        } else if (marker0 == PAD) {
+            //Two PAD e.g. 3c[Pad][Pad]
+            dst[dstIndex] = (byte) (b1 << 2 | b2 >> 4);
+            return 1;
+        } else {
+            //One PAD e.g. 3cQ[Pad]
+            int b3 = base64Alphabet[marker0 & 0xff];
+
+            dst[dstIndex] = (byte) (b1 << 2 | b2 >> 4);
+            dst[dstIndex + 1] = (byte) (((b2 & 0xf) << 4) | ((b3 >> 2) & 0xf));
+            return 2;
+        }
+    }
     
     /**
      * Discards any whitespace from a base-64 encoded block.
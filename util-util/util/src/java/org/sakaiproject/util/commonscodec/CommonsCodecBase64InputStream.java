@@ -0,0 +1,149 @@
+/*
+ * Copyright 2001-2004 The Apache Software Foundation.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */ 
+
+package org.sakaiproject.util.commonscodec;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * An input stream which decodes the Base64 characters read from the
+ * underlying stream.
+ * 
+ * <p>As RFC 2045 requires, any characters outside of the base64 alphabet,
+ * such as the line breaks of chunked MIME data, are ignored.  Decoding
+ * stops at the first group containing padding.</p>
+ *
+ * @see <a href="http://www.ietf.org/rfc/rfc2045.txt">RFC 2045</a>
+ */
+public class CommonsCodecBase64InputStream extends FilterInputStream {
+
+    private static final int BUFFER_SIZE = 8192;
+
+    /** Raw characters read from the underlying stream. */
+    private final byte[] raw = new byte[BUFFER_SIZE];
+
+    /** Decoded bytes waiting to be read. */
+    private final byte[] decoded = new byte[(BUFFER_SIZE / 4) * 3 + 3];
+
+    private int decodedPos = 0;
+
+    private int decodedEnd = 0;
+
+    /** Characters of a group not yet complete. */
+    private final byte[] quad = new byte[4];
+
+    private int quadCount = 0;
+
+    private boolean eof = false;
+
+    /**
+     * Creates a decoding stream.
+     *
+     * @param in the stream supplying Base64 characters
+     */
+    public CommonsCodecBase64InputStream(InputStream in) {
+        super(in);
+    }
+
+    public int read() throws IOException {
+        if (!fill()) {
+            return -1;
+        }
+        return decoded[decodedPos++] & 0xff;
+    }
+
+    public int read(byte[] b, int off, int len) throws IOException {
+        if ((off < 0) || (len < 0) || (off + len > b.length)) {
+            throw new IndexOutOfBoundsException();
+        }
+        if (len == 0) {
+            return 0;
+        }
+        if (!fill()) {
+            return -1;
+        }
+        int count = Math.min(len, decodedEnd - decodedPos);
+        System.arraycopy(decoded, decodedPos, b, off, count);
+        decodedPos += count;
+        return count;
+    }
+
+    public long skip(long n) throws IOException {
+        long skipped = 0;
+        while ((skipped < n) && fill()) {
+            int count = (int) Math.min(n - skipped, decodedEnd - decodedPos);
+            decodedPos += count;
+            skipped += count;
+        }
+        return skipped;
+    }
+
+    public int available() throws IOException {
+        return decodedEnd - decodedPos;
+    }
+
+    public boolean markSupported() {
+        return false;
+    }
+
+    public void mark(int readlimit) {
+    }
+
+    public void reset() throws IOException {
+        throw new IOException("mark/reset not supported");
+    }
+
+    /**
+     * Makes sure there are decoded bytes to read.
+     *
+     * @return false if the end of the data has been reached
+     */
+    private boolean fill() throws IOException {
+        while (decodedPos == decodedEnd) {
+            if (eof) {
+                return false;
+            }
+            decodedPos = 0;
+            decodedEnd = 0;
+
+            int n = in.read(raw, 0, raw.length);
+            if (n == -1) {
+                // an incomplete group at the end is ignored
+                eof = true;
+                continue;
+            }
+
+            for (int i = 0; (i < n) && !eof; i++) {
+                int value = CommonsCodecBase64.decodeValue(raw[i]);
+                if (value == CommonsCodecBase64.INVALID) {
+                    continue;
+                }
+                quad[quadCount++] = raw[i];
+                if (quadCount == 4) {
+                    decodedEnd += CommonsCodecBase64.decodeQuadruple(quad, decoded, decodedEnd);
+                    quadCount = 0;
+                    if ((quad[2] == CommonsCodecBase64.PAD) || (quad[3] == CommonsCodecBase64.PAD)) {
+                        eof = true;
+                    }
+                }
+            }
+        }
+        return true;
+    }
+
+}
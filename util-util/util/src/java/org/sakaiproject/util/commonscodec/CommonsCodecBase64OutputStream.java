@@ -0,0 +1,174 @@
+/*
+ * Copyright 2001-2004 The Apache Software Foundation.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */ 
+
+package org.sakaiproject.util.commonscodec;
+
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * An output stream which Base64 encodes everything written to it before
+ * passing it on to the underlying stream.
+ * 
+ * <p>When chunked, the output is broken into lines of 76 characters, each
+ * followed by a CRLF, exactly as {@link CommonsCodecBase64#encodeBase64Chunked(byte[])}
+ * would produce for the same data.  The final group of bytes is only
+ * padded and written out when the stream is closed.</p>
+ *
+ * @see <a href="http://www.ietf.org/rfc/rfc2045.txt">RFC 2045</a>
+ */
+public class CommonsCodecBase64OutputStream extends FilterOutputStream {
+
+    /**
+     * Input bytes encoded per call to the underlying stream; a whole number
+     * of 76 character lines.
+     */
+    private static final int BLOCK_TRIPLETS = (CommonsCodecBase64.CHUNK_SIZE / 4) * 54;
+
+    private final boolean chunked;
+
+    private final byte[] encoded;
+
+    /** Bytes not yet encoded, held until a group of three is complete. */
+    private final byte[] pending = new byte[3];
+
+    private int pendingCount = 0;
+
+    /** Characters written on the current line, when chunking. */
+    private int lineLength = 0;
+
+    private boolean closed = false;
+
+    /**
+     * Creates an encoding stream which does not chunk its output.
+     *
+     * @param out the stream to receive the Base64 characters
+     */
+    public CommonsCodecBase64OutputStream(OutputStream out) {
+        this(out, false);
+    }
+
+    /**
+     * Creates an encoding stream.
+     *
+     * @param out the stream to receive the Base64 characters
+     * @param chunked if true the output is chunked into 76 character lines
+     */
+    public CommonsCodecBase64OutputStream(OutputStream out, boolean chunked) {
+        super(out);
+        this.chunked = chunked;
+        int lines = (BLOCK_TRIPLETS * 4) / CommonsCodecBase64.CHUNK_SIZE;
+        this.encoded = new byte[BLOCK_TRIPLETS * 4 + lines * CommonsCodecBase64.CHUNK_SEPARATOR.length];
+    }
+
+    public void write(int b) throws IOException {
+        write(new byte[] { (byte) b }, 0, 1);
+    }
+
+    public void write(byte[] b, int off, int len) throws IOException {
+        if (closed) {
+            throw new IOException("Stream closed");
+        }
+        if ((off < 0) || (len < 0) || (off + len > b.length)) {
+            throw new IndexOutOfBoundsException();
+        }
+
+        // complete a group with the bytes left over from the last write
+        if (pendingCount > 0) {
+            while ((pendingCount < 3) && (len > 0)) {
+                pending[pendingCount++] = b[off++];
+                len--;
+            }
+            if (pendingCount < 3) {
+                return;
+            }
+            writeTriplets(pending, 0, 1);
+            pendingCount = 0;
+        }
+
+        int numberTriplets = len / 3;
+        while (numberTriplets > 0) {
+            int count = Math.min(numberTriplets, BLOCK_TRIPLETS);
+            writeTriplets(b, off, count);
+            off += count * 3;
+            len -= count * 3;
+            numberTriplets -= count;
+        }
+
+        // hold on to the rest until more data arrives, or we are closed
+        for (int i = 0; i < len; i++) {
+            pending[pendingCount++] = b[off + i];
+        }
+    }
+
+    /**
+     * Encodes complete groups and writes them, with line breaks as needed.
+     */
+    private void writeTriplets(byte[] b, int off, int numberTriplets) throws IOException {
+        if (!chunked) {
+            int end = CommonsCodecBase64.encodeTriplets(b, off, numberTriplets, encoded, 0);
+            out.write(encoded, 0, end);
+            return;
+        }
+
+        int index = 0;
+        while (numberTriplets > 0) {
+            int count = Math.min(numberTriplets, (CommonsCodecBase64.CHUNK_SIZE - lineLength) / 4);
+            index = CommonsCodecBase64.encodeTriplets(b, off, count, encoded, index);
+            off += count * 3;
+            numberTriplets -= count;
+            lineLength += count * 4;
+            if (lineLength == CommonsCodecBase64.CHUNK_SIZE) {
+                index = separate(index);
+            }
+        }
+        out.write(encoded, 0, index);
+    }
+
+    /**
+     * Puts a chunk separator down in the encoded buffer.
+     */
+    private int separate(int index) {
+        byte[] separator = CommonsCodecBase64.CHUNK_SEPARATOR;
+        System.arraycopy(separator, 0, encoded, index, separator.length);
+        lineLength = 0;
+        return index + separator.length;
+    }
+
+    /**
+     * Writes out the final, padded group and, when chunking, the separator
+     * ending the last line, then closes the underlying stream.
+     */
+    public void close() throws IOException {
+        if (closed) {
+            return;
+        }
+        closed = true;
+
+        int index = CommonsCodecBase64.encodeFinal(pending, 0, pendingCount, encoded, 0);
+        pendingCount = 0;
+        if (chunked) {
+            lineLength += index;
+            if (lineLength > 0) {
+                index = separate(index);
+            }
+        }
+        out.write(encoded, 0, index);
+        super.close();
+    }
+
+}
@@ -0,0 +1,45 @@
+package org.sakaiproject.util;
+
+import java.text.DateFormat;
+import java.text.SimpleDateFormat;
+import java.util.GregorianCalendar;
+import java.util.Locale;
+import java.util.TimeZone;
+
+import junit.framework.TestCase;
+
+public class DateWidgetFormatTest extends TestCase {
+
+	private static final Locale AUSTRALIA = new Locale("en", "AU");
+
+	private String pattern(DateFormat format) {
+		return ((SimpleDateFormat) format).toPattern();
+	}
+
+	public void testLocalePattern() {
+		assertEquals("MM/dd/yyyy", pattern(DateWidgetFormat.getLocaleDateFormat(Locale.US)));
+		assertEquals("dd-MM-yyyy", pattern(DateWidgetFormat.getLocaleDateFormat(AUSTRALIA)));
+
+		// again, from the registry
+		assertEquals("MM/dd/yyyy", pattern(DateWidgetFormat.getLocaleDateFormat(Locale.US)));
+		assertEquals("dd-MM-yyyy", pattern(DateWidgetFormat.getLocaleDateFormat(AUSTRALIA)));
+
+		// a short date format we don't accept gets the default, however often asked
+		assertEquals("MM/dd/yyyy", pattern(DateWidgetFormat.getLocaleDateFormat(Locale.GERMANY)));
+		assertEquals("MM/dd/yyyy", pattern(DateWidgetFormat.getLocaleDateFormat(Locale.GERMANY)));
+	}
+
+	public void testFormatsNotShared() {
+		DateFormat first = DateWidgetFormat.getLocaleDateFormat(Locale.US);
+		DateFormat second = DateWidgetFormat.getLocaleDateFormat(Locale.US);
+		assertNotSame(first, second);
+
+		TimeZone zone = TimeZone.getTimeZone("Pacific/Kiritimati");
+		first.setTimeZone(zone);
+		first.setLenient(false);
+		DateFormat third = DateWidgetFormat.getLocaleDateFormat(Locale.US);
+		assertFalse(zone.equals(third.getTimeZone()));
+		assertTrue(third.isLenient());
+		assertEquals("12/31/1999", third.format(new GregorianCalendar(1999, 11, 31).getTime()));
+	}
+}
@@ -0,0 +1,15 @@
+package org.sakaiproject.util;
+
+import java.util.ListResourceBundle;
+
+/**
+ * The default locale messages of the bundle the resource bundle tests load; FixtureMessages_fr has the French.
+ */
+public class FixtureMessages extends ListResourceBundle {
+
+	public static final String BASE = FixtureMessages.class.getName();
+
+	protected Object[][] getContents() {
+		return new Object[][] { { "hello", "Hello" }, { "bye", "Goodbye" }, { "count", "{0,number} items" } };
+	}
+}
@@ -0,0 +1,13 @@
+package org.sakaiproject.util;
+
+import java.util.ListResourceBundle;
+
+/**
+ * The French messages of the bundle the resource bundle tests load; "bye" comes from FixtureMessages.
+ */
+public class FixtureMessages_fr extends ListResourceBundle {
+
+	protected Object[][] getContents() {
+		return new Object[][] { { "hello", "Bonjour" }, { "count", "{0,number} articles" } };
+	}
+}
@@ -0,0 +1,90 @@
+package org.sakaiproject.util;
+
+import java.text.MessageFormat;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.ListResourceBundle;
+import java.util.Locale;
+import java.util.Map;
+import java.util.ResourceBundle;
+
+import junit.framework.TestCase;
+
+public class MessageTableTest extends TestCase {
+
+	private ResourceBundle bundle(Locale loc) {
+		return ResourceBundle.getBundle(FixtureMessages.BASE, loc, getClass().getClassLoader());
+	}
+
+	public void testFlattened() {
+		MessageTable table = new MessageTable(bundle(Locale.FRENCH), Locale.FRENCH);
+		assertEquals(3, table.size());
+		assertEquals("Bonjour", table.get("hello"));
+		assertEquals("Goodbye", table.get("bye"));
+		assertTrue(table.containsKey("bye"));
+		assertNull(table.get("missing"));
+		assertFalse(table.containsKey("missing"));
+		assertNull(table.get(Integer.valueOf(1)));
+	}
+
+	public void testMapView() {
+		ResourceBundle bundle = bundle(Locale.FRENCH);
+		MessageTable table = new MessageTable(bundle, Locale.FRENCH);
+		Map expected = new HashMap();
+		expected.put("hello", "Bonjour");
+		expected.put("bye", "Goodbye");
+		expected.put("count", "{0,number} articles");
+		assertEquals(expected, table);
+		assertEquals(expected.keySet(), table.keySet());
+		assertEquals(3, table.values().size());
+
+		try {
+			table.put("hello", "Hi");
+			fail();
+		} catch (UnsupportedOperationException e) {
+			// expected
+		}
+		try {
+			Iterator i = table.entrySet().iterator();
+			i.next();
+			i.remove();
+			fail();
+		} catch (UnsupportedOperationException e) {
+			// expected
+		}
+	}
+
+	public void testLarge() {
+		final Object[][] contents = new Object[500][];
+		for (int i = 0; i < contents.length; i++) {
+			contents[i] = new Object[] { "key." + i, "value " + i };
+		}
+		MessageTable table = new MessageTable(new ListResourceBundle() {
+			protected Object[][] getContents() {
+				return contents;
+			}
+		}, Locale.ENGLISH);
+		assertEquals(contents.length, table.size());
+		for (int i = 0; i < contents.length; i++) {
+			assertEquals("value " + i, table.get("key." + i));
+		}
+		assertEquals(contents.length, table.entrySet().size());
+	}
+
+	public void testFormat() {
+		MessageTable table = new MessageTable(bundle(Locale.ENGLISH), Locale.US);
+		MessageFormat format = table.getFormat("count");
+		assertEquals("1,234 items", format.format(new Object[] { Integer.valueOf(1234) }));
+		assertNotSame(format, table.getFormat("count"));
+		assertEquals("Hello", table.getFormat("hello").format(new Object[0]));
+		assertNull(table.getFormat("missing"));
+	}
+
+	public void testForBundle() {
+		ResourceBundle bundle = bundle(Locale.ENGLISH);
+		MessageTable table = MessageTable.forBundle(bundle, Locale.US);
+		assertSame(table, MessageTable.forBundle(bundle, Locale.US));
+		assertNotSame(table, MessageTable.forBundle(bundle, Locale.UK));
+		assertEquals(Locale.UK, MessageTable.forBundle(bundle, Locale.UK).getLocale());
+	}
+}
@@ -0,0 +1,75 @@
+package org.sakaiproject.util;
+
+import java.util.Locale;
+import java.util.MissingResourceException;
+import java.util.ResourceBundle;
+
+import junit.framework.TestCase;
+
+public class ResourceBundleRegistryTest extends TestCase {
+
+	private static final String BASE = FixtureMessages.BASE;
+
+	private ClassLoader loader() {
+		return getClass().getClassLoader();
+	}
+
+	protected void setUp() {
+		ResourceBundleRegistry.purge();
+		ResourceBundleRegistry.setMaxBundles(1000);
+	}
+
+	public void testShared() {
+		int bundles = ResourceBundleRegistry.getBundleCount();
+		ResourceBundle en = ResourceBundleRegistry.getBundle(BASE, Locale.ENGLISH, loader());
+		assertEquals("Hello", en.getString("hello"));
+		assertSame(en, ResourceBundleRegistry.getBundle(BASE, Locale.ENGLISH, loader()));
+
+		ResourceBundle fr = ResourceBundleRegistry.getBundle(BASE, Locale.FRENCH, loader());
+		assertEquals("Bonjour", fr.getString("hello"));
+		assertEquals("Goodbye", fr.getString("bye"));
+		assertEquals(bundles + 2, ResourceBundleRegistry.getBundleCount());
+		assertTrue(ResourceBundleRegistry.getEstimatedSize() > 0);
+	}
+
+	public void testPurge() {
+		long misses = ResourceBundleRegistry.getMisses();
+		ResourceBundleRegistry.getBundle(BASE, Locale.ENGLISH, loader());
+		int generation = ResourceBundleRegistry.getGeneration();
+
+		ResourceBundleRegistry.purge("no.such.bundle");
+		assertEquals(1, ResourceBundleRegistry.getBundleCount());
+		assertTrue(generation != ResourceBundleRegistry.getGeneration());
+
+		ResourceBundleRegistry.purge(BASE);
+		assertEquals(0, ResourceBundleRegistry.getBundleCount());
+		assertEquals(0, ResourceBundleRegistry.getEstimatedSize());
+		ResourceBundleRegistry.getBundle(BASE, Locale.ENGLISH, loader());
+		assertEquals(misses + 2, ResourceBundleRegistry.getMisses());
+	}
+
+	public void testEviction() {
+		ResourceBundleRegistry.setMaxBundles(1);
+		long evictions = ResourceBundleRegistry.getEvictions();
+		ResourceBundle en = ResourceBundleRegistry.getBundle(BASE, Locale.ENGLISH, loader());
+		ResourceBundleRegistry.getBundle(BASE, Locale.FRENCH, loader());
+		assertEquals(1, ResourceBundleRegistry.getBundleCount());
+		assertEquals(evictions + 1, ResourceBundleRegistry.getEvictions());
+
+		long hits = ResourceBundleRegistry.getHits();
+		ResourceBundleRegistry.getBundle(BASE, Locale.FRENCH, loader());
+		assertEquals(hits + 1, ResourceBundleRegistry.getHits());
+		assertEquals("Hello", ResourceBundleRegistry.getBundle(BASE, Locale.ENGLISH, loader()).getString("hello"));
+		assertNotNull(en);
+	}
+
+	public void testMissing() {
+		try {
+			ResourceBundleRegistry.getBundle("no.such.bundle", Locale.ENGLISH, loader());
+			fail();
+		} catch (MissingResourceException e) {
+			// expected
+		}
+		assertEquals(0, ResourceBundleRegistry.getBundleCount());
+	}
+}
@@ -0,0 +1,153 @@
+package org.sakaiproject.util;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import junit.framework.TestCase;
+
+public class StringUtilTest extends TestCase {
+
+	private static final String[] SOURCES = { "", "/", "//", "a", "/content/group/site/", "/content/group/site/file.txt",
+			"a//b", "::a::b::", "a::b:c", "no splitter here" };
+
+	private static final String[] SPLITTERS = { "/", "::", "x" };
+
+	/** The parts, found the way split() always has. */
+	private String[] expected(String source, String splitter) {
+		List rv = new ArrayList();
+		int last = 0;
+		int next = 0;
+		while ((next = source.indexOf(splitter, last)) != -1) {
+			rv.add(source.substring(last, next));
+			last = next + splitter.length();
+		}
+		if (last < source.length()) rv.add(source.substring(last));
+		return (String[]) rv.toArray(new String[rv.size()]);
+	}
+
+	public void testSplit() {
+		for (int i = 0; i < SOURCES.length; i++) {
+			for (int j = 0; j < SPLITTERS.length; j++) {
+				String[] expected = expected(SOURCES[i], SPLITTERS[j]);
+				assertTrue(SOURCES[i] + " " + SPLITTERS[j], Arrays.equals(expected, StringUtil.split(SOURCES[i], SPLITTERS[j])));
+				assertEquals(expected.length, StringUtil.countSplit(SOURCES[i], SPLITTERS[j]));
+			}
+		}
+	}
+
+	public void testSplitIntoArray() {
+		String[] parts = new String[2];
+		assertEquals(4, StringUtil.split("/content/group/site/", "/", parts));
+		assertEquals("", parts[0]);
+		assertEquals("content", parts[1]);
+	}
+
+	public void testTokenize() {
+		for (int i = 0; i < SOURCES.length; i++) {
+			for (int j = 0; j < SPLITTERS.length; j++) {
+				String[] expected = expected(SOURCES[i], SPLITTERS[j]);
+				SplitTokenizer tokens = StringUtil.tokenize(SOURCES[i], SPLITTERS[j]);
+				int n = 0;
+				while (tokens.next()) {
+					assertEquals(expected[n], tokens.token().toString());
+					assertEquals(expected[n], SOURCES[i].substring(tokens.start(), tokens.end()));
+					assertTrue(tokens.tokenEquals(expected[n]));
+					n++;
+				}
+				assertEquals(expected.length, n);
+				assertFalse(tokens.next());
+			}
+		}
+	}
+
+	public void testSplitFirst() {
+		assertTrue(Arrays.equals(new String[] { "log", "org.sakaiproject=DEBUG" }, StringUtil.splitFirst("log.org.sakaiproject=DEBUG", ".")));
+		assertTrue(Arrays.equals(new String[] { "a" }, StringUtil.splitFirst("a.", ".")));
+		assertTrue(Arrays.equals(new String[] { "", "a" }, StringUtil.splitFirst(".a", ".")));
+		assertTrue(Arrays.equals(new String[] { "abc" }, StringUtil.splitFirst("abc", ".")));
+		assertTrue(Arrays.equals(new String[0], StringUtil.splitFirst("", ".")));
+	}
+
+	public void testReferencePath() {
+		assertEquals("/content/group/", StringUtil.referencePath("/content/group/site"));
+		assertEquals("/content/group/", StringUtil.referencePath("/content/group/site/"));
+		assertEquals("", StringUtil.referencePath("site"));
+		assertEquals("/content/group/other", StringUtil.fullReference("/content/group/site", "other"));
+		assertEquals("other", StringUtil.fullReference("site", "other"));
+		assertEquals("/content/group/null", StringUtil.fullReference("/content/group/site", null));
+	}
+
+	public void testReferencePathMatchesStringUtil() {
+		String[] refs = { "", "/", "//", "a", "a/b", "a//b", "/content/group/site/", "/content/group/site/file.txt" };
+		for (int i = 0; i < refs.length; i++) {
+			ReferencePath ref = ReferencePath.intern(refs[i]);
+			assertEquals(refs[i], ref.getReference());
+			assertEquals(StringUtil.referencePath(refs[i]), ref.getReferencePath());
+			assertTrue(refs[i], Arrays.equals(StringUtil.split(refs[i], "/"), ref.getSegments()));
+			assertEquals(StringUtil.fullReference(refs[i], "x"), ref.resolve("x").getReference());
+		}
+	}
+
+	public void testReferencePathSharing() {
+		ReferencePath a = ReferencePath.intern("/content/group/site/a.txt");
+		ReferencePath b = ReferencePath.intern("/content/group/site/b.txt");
+		assertSame(a, ReferencePath.intern("/content/group/site/a.txt"));
+		assertSame(a.getParent(), b.getParent());
+		assertSame(ReferencePath.intern("/content/group/site/"), a.getParent());
+		assertTrue(a.isWithin(ReferencePath.intern("/content/")));
+		assertFalse(a.isWithin(b));
+		assertEquals("site", a.getParent().getName());
+		assertEquals(5, a.getSegmentCount());
+		assertEquals("group", a.getSegment(2));
+	}
+
+	public void testReferencePathCacheBounded() throws Exception {
+		final ReferencePath[][] held = new ReferencePath[4][];
+		Thread[] threads = new Thread[held.length];
+		for (int t = 0; t < threads.length; t++) {
+			final int n = t;
+			threads[t] = new Thread() {
+				public void run() {
+					held[n] = new ReferencePath[ReferencePath.CACHE_SIZE];
+					for (int i = 0; i < held[n].length; i++) {
+						held[n][i] = ReferencePath.intern("/content/group/site" + n + "/" + (i % 50) + "/file" + i);
+					}
+				}
+			};
+			threads[t].start();
+		}
+		for (int t = 0; t < threads.length; t++) {
+			threads[t].join();
+		}
+
+		// about 4 x 10050 references were interned, all still in use
+		assertTrue(String.valueOf(ReferencePath.M_cache.size()), ReferencePath.M_cache.size() <= ReferencePath.CACHE_SIZE + threads.length);
+		for (int t = 0; t < held.length; t++) {
+			for (int i = 0; i < held[t].length; i += 97) {
+				assertEquals("/content/group/site" + t + "/" + (i % 50) + "/file" + i, held[t][i].getReference());
+				assertEquals("/content/group/site" + t + "/" + (i % 50) + "/", held[t][i].getReferencePath());
+			}
+		}
+
+		// the most recently interned are still shared
+		String last = "/content/group/site0/" + ((ReferencePath.CACHE_SIZE - 1) % 50) + "/file" + (ReferencePath.CACHE_SIZE - 1);
+		ReferencePath again = ReferencePath.intern(last);
+		assertSame(again, ReferencePath.intern(last));
+	}
+
+	public void testStringSet() {
+		String[] roles = { "maintain", "Access", "site.upd", "İstanbul", "ß" };
+		StringSet set = new StringSet(roles);
+		String[] probes = { "maintain", "MAINTAIN", "access", "Access", "SITE.UPD", "site.visit", "", "istanbul", "i̇stanbul", "ß", "SS" };
+		for (int i = 0; i < probes.length; i++) {
+			assertEquals(probes[i], StringUtil.contains(roles, probes[i]), StringUtil.contains(set, probes[i]));
+			assertEquals(probes[i], StringUtil.containsIgnoreCase(roles, probes[i]), StringUtil.containsIgnoreCase(set, probes[i]));
+			assertEquals(probes[i], StringUtil.containsIgnoreCase(Arrays.asList(roles), probes[i]), StringUtil.contains(new StringSet(Arrays
+					.asList(roles)), probes[i], true));
+		}
+		assertFalse(StringUtil.contains(set, null));
+		assertFalse(StringUtil.containsIgnoreCase((StringSet) null, "maintain"));
+	}
+
+}
@@ -0,0 +1,198 @@
+package org.sakaiproject.util;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+import junit.framework.TestCase;
+
+public class ValidatorTest extends TestCase {
+
+	public void testEscapeUrl() {
+		assertEquals("", Validator.escapeUrl(null));
+		assertEquals("/content/group/site/file.txt", Validator.escapeUrl(" /content/group/site/file.txt "));
+		assertEquals("a%20b%26c%3Dd", Validator.escapeUrl("a b&c=d"));
+		assertEquals("what^^x3F^^^x3B^^^x5E^", Validator.escapeUrl("what?;^"));
+		assertEquals("caf%C3%A9", Validator.escapeUrl("caf\u00e9"));
+		assertEquals("%E3%82%B5", Validator.escapeUrl("\u30b5"));
+		assertEquals("%F0%9F%98%80", Validator.escapeUrl("\ud83d\ude00"));
+		assertEquals("^^x3F^x", Validator.escapeUrl("\ud83dx"));
+	}
+
+	public void testEscapeUrlUnchangedIsSame() {
+		String url = "/access/content/group/site/file.txt";
+		assertSame(url, Validator.escapeUrl(url));
+	}
+
+	public void testEscapeResourceName() {
+		assertEquals("", Validator.escapeResourceName(null));
+		assertEquals("a_b_c_d_e_f", Validator.escapeResourceName("a/b\\c%d#e\tf"));
+		assertEquals("it_s _quoted_", Validator.escapeResourceName("it's \"quoted\""));
+		String name = "report.doc";
+		assertSame(name, Validator.escapeResourceName(name));
+	}
+
+	public void testEscapeZipEntry() {
+		assertEquals("a_b_c_d_e", Validator.escapeZipEntry("a/b\\c:d*e"));
+		String name = "folder name.txt";
+		assertSame(name, Validator.escapeZipEntry(name));
+	}
+
+	public void testChecks() {
+		assertTrue(Validator.checkResourceId("file.txt"));
+		assertFalse(Validator.checkResourceId("file?.txt"));
+		assertFalse(Validator.checkResourceId("  "));
+		assertTrue(Validator.checkUserId("user@example.edu"));
+		assertFalse(Validator.checkUserId("us/er"));
+		assertTrue(Validator.checkEmailLocal("first.last+tag"));
+		assertFalse(Validator.checkEmailLocal("first last"));
+		assertFalse(Validator.checkEmailLocal("caf\u00e9"));
+	}
+
+	public void testGetFileName() {
+		assertEquals("me.doc", Validator.getFileName("c:\\this\\that\\me.doc"));
+		assertEquals("test.txt", Validator.getFileName("/usr/local/dev/test.txt"));
+		assertEquals("four", Validator.getFileName("one:two:three:four"));
+		assertEquals("", Validator.getFileName("folder/"));
+		assertEquals("plain", Validator.getFileName("plain"));
+	}
+
+	public void testEscapeResourceNames() {
+		List names = new ArrayList();
+		for (int i = 0; i < Validator.PARALLEL_THRESHOLD + 10; i++) {
+			names.add("folder/sub/file " + i + "?.txt");
+		}
+		names.add("folder/a*b");
+		names.add("other/a#b");
+		names.add("folder/a*b");
+
+		List collisions = new ArrayList();
+		Map escaped = Validator.escapeResourceNames(names, true, collisions);
+		assertEquals(names.size() - 1, escaped.size());
+		Iterator keys = escaped.keySet().iterator();
+		for (int i = 0; i < names.size() - 1; i++) {
+			String name = (String) keys.next();
+			assertEquals(names.get(i), name);
+			assertEquals(Validator.escapeResourceName(Validator.getFileName(name)), escaped.get(name));
+		}
+		assertEquals(1, collisions.size());
+		assertEquals("a_b", collisions.get(0));
+
+		Map zip = Validator.escapeZipEntries(names, null);
+		assertEquals(Validator.escapeZipEntry("folder/a*b"), zip.get("folder/a*b"));
+	}
+
+	public void testLetBrowserInline() {
+		assertTrue(Validator.letBrowserInline("text/html"));
+		assertTrue(Validator.letBrowserInline("Image/PNG"));
+		assertTrue(Validator.letBrowserInline("application/PDF"));
+		assertTrue(Validator.letBrowserInline("x-world/x-vrml"));
+		assertTrue(Validator.letBrowserInline("model/VRML"));
+		assertFalse(Validator.letBrowserInline("application/pdf; charset=x"));
+		assertFalse(Validator.letBrowserInline("application/msword"));
+		assertFalse(Validator.letBrowserInline("text"));
+		assertFalse(Validator.letBrowserInline(null));
+		assertEquals("_blank", Validator.getResourceTarget("text/plain"));
+		assertEquals("_self", Validator.getResourceTarget("application/zip"));
+		assertEquals("_blank", Validator.getResourceTarget(null));
+	}
+
+	public void testMimeTypePolicy() {
+		MimeTypePolicy policy = new MimeTypePolicy(new String[] { "application/pdf" }, new String[] { "text/", "te" }, null);
+		assertTrue(policy.isInline("TEXT/plain"));
+		assertTrue(policy.isInline("tea/green"));
+		assertFalse(policy.isInline("t"));
+		assertFalse(policy.isInline("audio/mpeg"));
+
+		// changes apply to types already looked up
+		policy.addType("Audio/MPEG");
+		assertTrue(policy.isInline("audio/mpeg"));
+		policy.removePrefix("te");
+		assertFalse(policy.isInline("tea/green"));
+		assertTrue(policy.isInline("text/css"));
+		policy.addSubstring("ZIP");
+		assertTrue(policy.isInline("application/x-zip-compressed"));
+		policy.removeSubstring("zip");
+		policy.removeType("application/pdf");
+		assertFalse(policy.isInline("application/x-zip-compressed"));
+		assertFalse(policy.isInline("application/pdf"));
+
+		assertFalse(new MimeTypePolicy().isInline("text/plain"));
+	}
+
+	public void testCleanInput() throws IOException {
+		String clean = "line one\rline two\nline three";
+		assertSame(clean, Validator.cleanInput(clean));
+		assertEquals("a\nb\n\rc", Validator.cleanInput("a\r\nb\r\n\rc\r\n"));
+		assertEquals("a\n", Validator.cleanInput("a\r\n\n"));
+		assertEquals("", Validator.cleanInput("\n"));
+
+		assertEquals("a\nb\n\rc", cleanInput("a\r\nb\r\n\rc\r\n"));
+		assertEquals("a\r", cleanInput("a\r"));
+		assertEquals("", cleanInput("\r\n"));
+		StringBuilder big = new StringBuilder();
+		for (int i = 0; i < 3000; i++) {
+			big.append("text\r\n");
+		}
+		assertEquals(Validator.cleanInput(big.toString()), cleanInput(big.toString()));
+	}
+
+	public void testStripAllNewlines() throws IOException {
+		String clean = "no newlines here";
+		assertSame(clean, Validator.stripAllNewlines(clean));
+		assertEquals("a  b c", Validator.stripAllNewlines(" \na\r\nb\rc\n "));
+
+		assertEquals("a  b c", stripAllNewlines(" \na\r\nb\rc\n "));
+		assertEquals("", stripAllNewlines(" \r\n\t"));
+		StringBuilder big = new StringBuilder();
+		for (int i = 0; i < 3000; i++) {
+			big.append("  text\r\n");
+		}
+		assertEquals(Validator.stripAllNewlines(big.toString()), stripAllNewlines(big.toString()));
+	}
+
+	private String cleanInput(String value) throws IOException {
+		StringWriter out = new StringWriter();
+		Validator.cleanInput(new StringReader(value), out);
+		return out.toString();
+	}
+
+	private String stripAllNewlines(String value) throws IOException {
+		StringWriter out = new StringWriter();
+		Validator.stripAllNewlines(new StringReader(value), out);
+		return out.toString();
+	}
+
+	public void testEscapeResourceNameDecompose() {
+		// R\u00e9sum\u00e9 \u00c5ngstr\u00f6m, with a precomposed and a combining accent
+		String name = " R\u00e9sum\u00e9 \u00c5ngstr\u00f6m #2 \u0107\u0301 ";
+		assertEquals(Validator.escapeResourceName(name), Validator.escapeResourceName(name, false));
+		assertEquals("Resume Angstrom _2 c", Validator.escapeResourceName(name, true));
+		assertEquals("e", Validator.escapeResourceName("e\u0301", true));
+		assertEquals("x", Validator.escapeResourceName("\u0301x\u20dd", true));
+		assertEquals("plain", Validator.escapeResourceName("plain", true));
+		assertEquals("", Validator.escapeResourceName(null, true));
+	}
+
+	public void testCharFolding() {
+		CharFolding upper = new CharFolding(new CharFolding.Mapping() {
+			public char map(char c) {
+				return Character.toUpperCase(c);
+			}
+		});
+		String done = "DONE";
+		assertSame(done, upper.fold(done));
+		assertEquals("\u00c9T\u00c9", upper.fold("\u00e9t\u00e9"));
+		assertEquals('\u0419', upper.fold('\u0439'));
+		assertEquals("e", CharFolding.stripMarks("e\u0301"));
+		assertEquals("Ete", CharFolding.stripMarks("\u00c9te\u0301"));
+		assertSame(done, CharFolding.stripMarks(done));
+		assertEquals("\ud55c\uae00", CharFolding.stripMarks("\ud55c\uae00\u0301"));
+		assertNull(CharFolding.stripMarks(null));
+	}
+
+}
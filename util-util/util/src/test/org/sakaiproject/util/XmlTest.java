@@ -0,0 +1,88 @@
+package org.sakaiproject.util;
+
+import java.util.Properties;
+import java.util.Stack;
+
+import junit.framework.TestCase;
+
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+
+public class XmlTest extends TestCase {
+
+	private Properties[] makeProperties(int count) {
+		Properties[] props = new Properties[count];
+		for (int i = 0; i < count; i++) {
+			props[i] = new Properties();
+			props[i].setProperty("DAV:displayname", "resource " + i + ".txt");
+			props[i].setProperty("CHEF:description", "サカイ <&> \"" + i + "\"");
+			if (i % 3 == 0) props[i].setProperty("empty", "");
+		}
+		return props;
+	}
+
+	private String serial(Properties[] props) {
+		Document doc = Xml.createDocument();
+		Element root = doc.createElement("archive");
+		doc.appendChild(root);
+		Stack stack = new Stack();
+		for (int i = 0; i < props.length; i++) {
+			Element resource = doc.createElement("resource");
+			root.appendChild(resource);
+			stack.push(resource);
+			Xml.propertiesToXml(props[i], doc, stack);
+			stack.pop();
+		}
+		return Xml.writeDocumentToString(doc);
+	}
+
+	private String batch(Properties[] props) {
+		Document doc = Xml.createDocument();
+		Element root = doc.createElement("archive");
+		doc.appendChild(root);
+		Element[] containers = new Element[props.length];
+		for (int i = 0; i < props.length; i++) {
+			containers[i] = doc.createElement("resource");
+			root.appendChild(containers[i]);
+		}
+		Element[] added = Xml.propertiesToXml(props, doc, containers);
+		assertEquals(props.length, added.length);
+		return Xml.writeDocumentToString(doc);
+	}
+
+	public void testBatchMatchesSerialSmall() {
+		Properties[] props = makeProperties(5);
+		assertEquals(serial(props), batch(props));
+	}
+
+	public void testBatchMatchesSerialParallel() {
+		Properties[] props = makeProperties(Xml.PARALLEL_THRESHOLD);
+		assertEquals(serial(props), batch(props));
+	}
+
+	public void testBatchRoundTrip() {
+		Properties[] props = makeProperties(Xml.PARALLEL_THRESHOLD);
+		Document doc = Xml.createDocument();
+		Element root = doc.createElement("archive");
+		doc.appendChild(root);
+		Element[] containers = new Element[props.length];
+		for (int i = 0; i < props.length; i++) {
+			containers[i] = doc.createElement("resource");
+			root.appendChild(containers[i]);
+		}
+		Element[] added = Xml.propertiesToXml(props, doc, containers);
+
+		Properties[] read = new Properties[props.length];
+		for (int i = 0; i < read.length; i++) {
+			read[i] = new Properties();
+		}
+		Xml.xmlToProperties(read, added);
+		for (int i = 0; i < read.length; i++) {
+			assertEquals(props[i], read[i]);
+			Properties single = new Properties();
+			Xml.xmlToProperties(single, added[i]);
+			assertEquals(single, read[i]);
+		}
+	}
+
+}
@@ -0,0 +1,267 @@
+package org.sakaiproject.util.commonscodec;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * Compares CommonsCodecBase64 with the codec it replaced (kept below as Baseline) at encoding and decoding, plain and chunked, over a few
+ * sizes of data, and times encoding through a reused ByteBuffer. Run by hand: java
+ * org.sakaiproject.util.commonscodec.CommonsCodecBase64Benchmark [MB per run]
+ */
+public class CommonsCodecBase64Benchmark {
+
+	public static void main(String[] args) {
+		int megabytes = (args.length > 0) ? Integer.parseInt(args[0]) : 64;
+		int[] sizes = { 100, 10 * 1024, 1024 * 1024 };
+		Random random = new Random(2045);
+
+		System.out.println(megabytes + " MB per run");
+		System.out.println("size\toperation\tbaseline ms\tcurrent ms");
+		for (int s = 0; s < sizes.length; s++) {
+			byte[] data = new byte[sizes[s]];
+			random.nextBytes(data);
+			int runs = Math.max(1, megabytes * 1024 * 1024 / data.length);
+
+			byte[] encoded = CommonsCodecBase64.encodeBase64(data, false);
+			byte[] chunked = CommonsCodecBase64.encodeBase64(data, true);
+			check(Arrays.equals(encoded, Baseline.encodeBase64(data, false)), "encode");
+			check(Arrays.equals(chunked, Baseline.encodeBase64(data, true)), "encode chunked");
+			check(Arrays.equals(data, Baseline.decodeBase64(encoded)), "decode");
+			check(Arrays.equals(data, CommonsCodecBase64.decodeBase64(chunked)), "decode chunked");
+
+			for (int op = 0; op < 4; op++) {
+				// warm up both, then time them
+				time(op, false, data, encoded, chunked, runs);
+				time(op, true, data, encoded, chunked, runs);
+				long a = time(op, false, data, encoded, chunked, runs);
+				long b = time(op, true, data, encoded, chunked, runs);
+				System.out.println(data.length + "\t" + OPERATIONS[op] + "\t" + a + "\t" + b);
+			}
+
+			ByteBuffer dst = ByteBuffer.allocate(encoded.length);
+			ByteBuffer direct = ByteBuffer.allocateDirect(encoded.length);
+			ByteBuffer src = ByteBuffer.allocateDirect(data.length);
+			src.put(data);
+			for (int warm = 0; warm < 2; warm++) {
+				long start = System.currentTimeMillis();
+				for (int i = 0; i < runs; i++) {
+					dst.clear();
+					CommonsCodecBase64.encode(ByteBuffer.wrap(data), dst);
+				}
+				long a = System.currentTimeMillis() - start;
+				start = System.currentTimeMillis();
+				for (int i = 0; i < runs; i++) {
+					src.clear();
+					direct.clear();
+					CommonsCodecBase64.encode(src, direct);
+				}
+				long b = System.currentTimeMillis() - start;
+				if (warm == 1) {
+					System.out.println(data.length + "\tencode to a reused buffer: heap " + a + " ms, direct " + b + " ms");
+				}
+			}
+		}
+	}
+
+	private static final String[] OPERATIONS = { "encode", "encode chunked", "decode", "decode chunked" };
+
+	private static long time(int op, boolean current, byte[] data, byte[] encoded, byte[] chunked, int runs) {
+		long start = System.currentTimeMillis();
+		int sum = 0;
+		for (int i = 0; i < runs; i++) {
+			byte[] out;
+			switch (op) {
+			case 0:
+				out = current ? CommonsCodecBase64.encodeBase64(data, false) : Baseline.encodeBase64(data, false);
+				break;
+			case 1:
+				out = current ? CommonsCodecBase64.encodeBase64(data, true) : Baseline.encodeBase64(data, true);
+				break;
+			case 2:
+				out = current ? CommonsCodecBase64.decodeBase64(encoded) : Baseline.decodeBase64(encoded);
+				break;
+			default:
+				out = current ? CommonsCodecBase64.decodeBase64(chunked) : Baseline.decodeBase64(chunked);
+			}
+			sum += out.length;
+		}
+		if (sum == 42) {
+			System.out.println();
+		}
+		return System.currentTimeMillis() - start;
+	}
+
+	private static void check(boolean same, String what) {
+		if (!same) {
+			throw new IllegalStateException(what + " differs from the baseline");
+		}
+	}
+
+	/**
+	 * The encode and decode of CommonsCodecBase64 as they were before the codec was reworked, for comparison.
+	 */
+	static class Baseline {
+
+		private static final byte PAD = (byte) '=';
+
+		private static final int SIGN = -128;
+
+		private static final byte[] base64Alphabet = new byte[255];
+
+		private static final byte[] lookUpBase64Alphabet = new byte[64];
+
+		static {
+			Arrays.fill(base64Alphabet, (byte) -1);
+			for (int i = 'Z'; i >= 'A'; i--) {
+				base64Alphabet[i] = (byte) (i - 'A');
+			}
+			for (int i = 'z'; i >= 'a'; i--) {
+				base64Alphabet[i] = (byte) (i - 'a' + 26);
+			}
+			for (int i = '9'; i >= '0'; i--) {
+				base64Alphabet[i] = (byte) (i - '0' + 52);
+			}
+			base64Alphabet['+'] = 62;
+			base64Alphabet['/'] = 63;
+
+			for (int i = 0; i <= 25; i++) {
+				lookUpBase64Alphabet[i] = (byte) ('A' + i);
+			}
+			for (int i = 26, j = 0; i <= 51; i++, j++) {
+				lookUpBase64Alphabet[i] = (byte) ('a' + j);
+			}
+			for (int i = 52, j = 0; i <= 61; i++, j++) {
+				lookUpBase64Alphabet[i] = (byte) ('0' + j);
+			}
+			lookUpBase64Alphabet[62] = (byte) '+';
+			lookUpBase64Alphabet[63] = (byte) '/';
+		}
+
+		static byte[] encodeBase64(byte[] binaryData, boolean isChunked) {
+			int lengthDataBits = binaryData.length * 8;
+			int fewerThan24bits = lengthDataBits % 24;
+			int numberTriplets = lengthDataBits / 24;
+			int encodedDataLength = (fewerThan24bits != 0) ? (numberTriplets + 1) * 4 : numberTriplets * 4;
+			int nbrChunks = 0;
+			byte[] separator = CommonsCodecBase64.CHUNK_SEPARATOR;
+			int chunkSize = CommonsCodecBase64.CHUNK_SIZE;
+			if (isChunked) {
+				nbrChunks = (int) Math.ceil((float) encodedDataLength / chunkSize);
+				encodedDataLength += nbrChunks * separator.length;
+			}
+			byte[] encodedData = new byte[encodedDataLength];
+
+			byte k = 0, l = 0, b1 = 0, b2 = 0, b3 = 0;
+			int encodedIndex = 0;
+			int dataIndex = 0;
+			int i = 0;
+			int nextSeparatorIndex = chunkSize;
+			int chunksSoFar = 0;
+			for (i = 0; i < numberTriplets; i++) {
+				dataIndex = i * 3;
+				b1 = binaryData[dataIndex];
+				b2 = binaryData[dataIndex + 1];
+				b3 = binaryData[dataIndex + 2];
+				l = (byte) (b2 & 0x0f);
+				k = (byte) (b1 & 0x03);
+				byte val1 = ((b1 & SIGN) == 0) ? (byte) (b1 >> 2) : (byte) ((b1) >> 2 ^ 0xc0);
+				byte val2 = ((b2 & SIGN) == 0) ? (byte) (b2 >> 4) : (byte) ((b2) >> 4 ^ 0xf0);
+				byte val3 = ((b3 & SIGN) == 0) ? (byte) (b3 >> 6) : (byte) ((b3) >> 6 ^ 0xfc);
+				encodedData[encodedIndex] = lookUpBase64Alphabet[val1];
+				encodedData[encodedIndex + 1] = lookUpBase64Alphabet[val2 | (k << 4)];
+				encodedData[encodedIndex + 2] = lookUpBase64Alphabet[(l << 2) | val3];
+				encodedData[encodedIndex + 3] = lookUpBase64Alphabet[b3 & 0x3f];
+				encodedIndex += 4;
+				if (isChunked && encodedIndex == nextSeparatorIndex) {
+					System.arraycopy(separator, 0, encodedData, encodedIndex, separator.length);
+					chunksSoFar++;
+					nextSeparatorIndex = (chunkSize * (chunksSoFar + 1)) + (chunksSoFar * separator.length);
+					encodedIndex += separator.length;
+				}
+			}
+
+			dataIndex = i * 3;
+			if (fewerThan24bits == 8) {
+				b1 = binaryData[dataIndex];
+				k = (byte) (b1 & 0x03);
+				byte val1 = ((b1 & SIGN) == 0) ? (byte) (b1 >> 2) : (byte) ((b1) >> 2 ^ 0xc0);
+				encodedData[encodedIndex] = lookUpBase64Alphabet[val1];
+				encodedData[encodedIndex + 1] = lookUpBase64Alphabet[k << 4];
+				encodedData[encodedIndex + 2] = PAD;
+				encodedData[encodedIndex + 3] = PAD;
+			} else if (fewerThan24bits == 16) {
+				b1 = binaryData[dataIndex];
+				b2 = binaryData[dataIndex + 1];
+				l = (byte) (b2 & 0x0f);
+				k = (byte) (b1 & 0x03);
+				byte val1 = ((b1 & SIGN) == 0) ? (byte) (b1 >> 2) : (byte) ((b1) >> 2 ^ 0xc0);
+				byte val2 = ((b2 & SIGN) == 0) ? (byte) (b2 >> 4) : (byte) ((b2) >> 4 ^ 0xf0);
+				encodedData[encodedIndex] = lookUpBase64Alphabet[val1];
+				encodedData[encodedIndex + 1] = lookUpBase64Alphabet[val2 | (k << 4)];
+				encodedData[encodedIndex + 2] = lookUpBase64Alphabet[l << 2];
+				encodedData[encodedIndex + 3] = PAD;
+			}
+
+			if (isChunked && chunksSoFar < nbrChunks) {
+				System.arraycopy(separator, 0, encodedData, encodedDataLength - separator.length, separator.length);
+			}
+			return encodedData;
+		}
+
+		static byte[] decodeBase64(byte[] base64Data) {
+			base64Data = discardNonBase64(base64Data);
+			if (base64Data.length == 0) {
+				return new byte[0];
+			}
+
+			int numberQuadruple = base64Data.length / 4;
+			byte b1 = 0, b2 = 0, b3 = 0, b4 = 0, marker0 = 0, marker1 = 0;
+			int encodedIndex = 0;
+			int dataIndex = 0;
+			int lastData = base64Data.length;
+			while (base64Data[lastData - 1] == PAD) {
+				if (--lastData == 0) {
+					return new byte[0];
+				}
+			}
+			byte[] decodedData = new byte[lastData - numberQuadruple];
+
+			for (int i = 0; i < numberQuadruple; i++) {
+				dataIndex = i * 4;
+				marker0 = base64Data[dataIndex + 2];
+				marker1 = base64Data[dataIndex + 3];
+				b1 = base64Alphabet[base64Data[dataIndex]];
+				b2 = base64Alphabet[base64Data[dataIndex + 1]];
+				if (marker0 != PAD && marker1 != PAD) {
+					b3 = base64Alphabet[marker0];
+					b4 = base64Alphabet[marker1];
+					decodedData[encodedIndex] = (byte) (b1 << 2 | b2 >> 4);
+					decodedData[encodedIndex + 1] = (byte) (((b2 & 0xf) << 4) | ((b3 >> 2) & 0xf));
+					decodedData[encodedIndex + 2] = (byte) (b3 << 6 | b4);
+				} else if (marker0 == PAD) {
+					decodedData[encodedIndex] = (byte) (b1 << 2 | b2 >> 4);
+				} else if (marker1 == PAD) {
+					b3 = base64Alphabet[marker0];
+					decodedData[encodedIndex] = (byte) (b1 << 2 | b2 >> 4);
+					decodedData[encodedIndex + 1] = (byte) (((b2 & 0xf) << 4) | ((b3 >> 2) & 0xf));
+				}
+				encodedIndex += 3;
+			}
+			return decodedData;
+		}
+
+		private static byte[] discardNonBase64(byte[] data) {
+			byte[] groomedData = new byte[data.length];
+			int bytesCopied = 0;
+			for (int i = 0; i < data.length; i++) {
+				if (data[i] == PAD || base64Alphabet[data[i]] != -1) {
+					groomedData[bytesCopied++] = data[i];
+				}
+			}
+			byte[] packedData = new byte[bytesCopied];
+			System.arraycopy(groomedData, 0, packedData, 0, bytesCopied);
+			return packedData;
+		}
+	}
+}
@@ -0,0 +1,128 @@
+package org.sakaiproject.util.commonscodec;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.Random;
+
+import junit.framework.TestCase;
+
+public class CommonsCodecBase64Test extends TestCase {
+
+	private Random random = new Random(2045);
+
+	public void testKnownValues() throws Exception {
+		assertEquals("", new String(CommonsCodecBase64.encodeBase64(new byte[0]), "US-ASCII"));
+		assertEquals("Zg==", new String(CommonsCodecBase64.encodeBase64("f".getBytes("US-ASCII")), "US-ASCII"));
+		assertEquals("Zm8=", new String(CommonsCodecBase64.encodeBase64("fo".getBytes("US-ASCII")), "US-ASCII"));
+		assertEquals("Zm9vYmFy", new String(CommonsCodecBase64.encodeBase64("foobar".getBytes("US-ASCII")), "US-ASCII"));
+		assertEquals("foobar", new String(CommonsCodecBase64.decodeBase64("Zm9vYmFy".getBytes("US-ASCII")), "US-ASCII"));
+		assertEquals("fo", new String(CommonsCodecBase64.decodeBase64("Zm8=".getBytes("US-ASCII")), "US-ASCII"));
+	}
+
+	public void testDecodeIgnoresNonAlphabet() throws Exception {
+		assertEquals("foobar", new String(CommonsCodecBase64.decodeBase64("Zm9v\r\nYm Fy\r\n".getBytes("US-ASCII")), "US-ASCII"));
+		assertEquals("foob", new String(CommonsCodecBase64.decodeBase64("Zm9v*Yg==\u00ff".getBytes("ISO-8859-1")), "US-ASCII"));
+	}
+
+	public void testChunkedLines() {
+		byte[] data = new byte[57 * 3];
+		random.nextBytes(data);
+		String encoded = new String(CommonsCodecBase64.encodeBase64Chunked(data));
+		String[] lines = encoded.split("\r\n");
+		assertEquals(3, lines.length);
+		for (int i = 0; i < lines.length; i++) {
+			assertEquals(CommonsCodecBase64.CHUNK_SIZE, lines[i].length());
+		}
+		assertTrue(encoded.endsWith("\r\n"));
+	}
+
+	public void testRoundTrip() {
+		for (int length = 0; length < 300; length++) {
+			byte[] data = new byte[length];
+			random.nextBytes(data);
+			assertTrue(Arrays.equals(data, CommonsCodecBase64.decodeBase64(CommonsCodecBase64.encodeBase64(data))));
+			assertTrue(Arrays.equals(data, CommonsCodecBase64.decodeBase64(CommonsCodecBase64.encodeBase64Chunked(data))));
+		}
+	}
+
+	public void testByteBufferMatchesArray() {
+		ByteBuffer dst = ByteBuffer.allocate(1024);
+		for (int length = 0; length < 200; length++) {
+			byte[] data = new byte[length];
+			random.nextBytes(data);
+			dst.clear();
+			int written = CommonsCodecBase64.encode(ByteBuffer.wrap(data), dst);
+			byte[] encoded = new byte[written];
+			dst.flip();
+			dst.get(encoded);
+			assertTrue(Arrays.equals(CommonsCodecBase64.encodeBase64(data), encoded));
+		}
+	}
+
+	public void testDirectByteBufferMatchesArray() {
+		ByteBuffer dst = ByteBuffer.allocateDirect(1024);
+		for (int length = 0; length < 200; length++) {
+			byte[] data = new byte[length];
+			random.nextBytes(data);
+			ByteBuffer src = ByteBuffer.allocateDirect(length);
+			src.put(data);
+			src.flip();
+			dst.clear();
+			int written = CommonsCodecBase64.encode(src, dst);
+			byte[] encoded = new byte[written];
+			dst.flip();
+			dst.get(encoded);
+			assertTrue(Arrays.equals(CommonsCodecBase64.encodeBase64(data), encoded));
+			assertFalse(src.hasRemaining());
+		}
+	}
+
+	public void testByteBufferPiecewise() {
+		byte[] data = new byte[1000];
+		random.nextBytes(data);
+		ByteBuffer src = ByteBuffer.wrap(data);
+		ByteBuffer dst = ByteBuffer.allocate(10);
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		while (src.hasRemaining()) {
+			dst.clear();
+			CommonsCodecBase64.encode(src, dst);
+			out.write(dst.array(), 0, dst.position());
+		}
+		assertTrue(Arrays.equals(CommonsCodecBase64.encodeBase64(data), out.toByteArray()));
+	}
+
+	public void testStreamsMatchArray() throws Exception {
+		for (int length = 0; length < 400; length += 7) {
+			byte[] data = new byte[length];
+			random.nextBytes(data);
+			for (int c = 0; c < 2; c++) {
+				boolean chunked = (c == 1);
+				ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+				OutputStream out = new CommonsCodecBase64OutputStream(bytes, chunked);
+				int pos = 0;
+				while (pos < length) {
+					int count = Math.min(length - pos, random.nextInt(5));
+					out.write(data, pos, count);
+					pos += count;
+				}
+				out.close();
+				byte[] encoded = CommonsCodecBase64.encodeBase64(data, chunked);
+				assertTrue(Arrays.equals(encoded, bytes.toByteArray()));
+
+				InputStream in = new CommonsCodecBase64InputStream(new ByteArrayInputStream(encoded));
+				ByteArrayOutputStream decoded = new ByteArrayOutputStream();
+				byte[] buf = new byte[13];
+				int n;
+				while ((n = in.read(buf)) != -1) {
+					decoded.write(buf, 0, n);
+				}
+				assertTrue(Arrays.equals(data, decoded.toByteArray()));
+			}
+		}
+	}
+
+}